@@ -0,0 +1,116 @@
+package com.mimsswstats;
+
+import com.gmail.goosius.siegewar.enums.SiegeSide;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Damage events per second, before and after batching. {@code direct} is the path from before {@link DamageBatcher}:
+ * every hit applied on its own (both players added as participants, one action recorded). {@code batched} buffers
+ * the hits and flushes once per {@code hitsPerTick}, as the next server tick would. Both apply to the in-memory
+ * siege and player totals the stats manager records into; journaling is left out, so the real saving is larger.
+ * Each benchmark operation is one hit, so the reported throughput is events per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DamageBatcherBenchmark {
+
+    @Param({"64", "512"})
+    public int hitsPerTick;
+
+    @Param({"2"})
+    public int sieges;
+
+    @Param({"20"})
+    public int playersPerSiege;
+
+    private SiegeHandle[] handles;
+    private Player[][] players;
+    private InMemoryTarget target;
+    private DamageBatcher batcher;
+    private int hit;
+
+    @Setup
+    public void setUp() {
+        handles = new SiegeHandle[sieges];
+        players = new Player[sieges][playersPerSiege];
+        for (int s = 0; s < sieges; s++) {
+            handles[s] = new SiegeHandle(new SiegeStats("town" + s, 1, "town" + s + "#1"), null);
+            for (int p = 0; p < playersPerSiege; p++) players[s][p] = player(UUID.randomUUID(), "player" + s + "_" + p);
+        }
+        target = new InMemoryTarget();
+        batcher = new DamageBatcher(new StatsLog(Logger.getLogger("bench")), task -> { }, () -> target);
+    }
+
+    @Benchmark
+    public void direct() {
+        int s = hit % sieges;
+        Player damager = players[s][hit % playersPerSiege];
+        Player victim = players[s][(hit + 1) % playersPerSiege];
+        target.addSiegeParticipant(handles[s], victim);
+        target.addSiegeParticipant(handles[s], damager);
+        target.recordSiegeAction(handles[s], damager.getUniqueId(), 0, 0, 2.5, 0.0, 0);
+        hit++;
+    }
+
+    @Benchmark
+    public void batched() {
+        int s = hit % sieges;
+        batcher.add(handles[s], players[s][hit % playersPerSiege], players[s][(hit + 1) % playersPerSiege], 2.5);
+        if (++hit % hitsPerTick == 0) batcher.flush();
+    }
+
+    /** The in-memory part of what the stats manager does for each call. */
+    private static final class InMemoryTarget implements DamageBatcher.Target {
+        private final Map<UUID, PlayerStats> playerStats = new ConcurrentHashMap<>();
+
+        @Override
+        public void addSiegeParticipant(SiegeHandle siege, Player player) {
+            UUID playerUUID = player.getUniqueId();
+            siege.getStats().recordPlayerAction(playerUUID, 0, 0, 0, 0, 0, SiegeSide.ATTACKERS);
+            playerStats.computeIfAbsent(playerUUID, uuid -> new PlayerStats(uuid, player.getName()))
+                    .addSiegeParticipation(siege.getSiegeId());
+        }
+
+        @Override
+        public void recordSiegeAction(SiegeHandle siege, UUID playerUUID, int kills, int deaths, double damage,
+                                      double controlTimeMinutes, int assists) {
+            siege.getStats().recordPlayerAction(playerUUID, kills, deaths, damage, controlTimeMinutes, assists, SiegeSide.ATTACKERS);
+            playerStats.computeIfAbsent(playerUUID, uuid -> new PlayerStats(uuid, uuid.toString())).addDamage(damage);
+        }
+    }
+
+    /** A player with just a UUID and a name; nothing else is called during a flush. */
+    private static Player player(UUID uuid, String name) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUniqueId": return uuid;
+                case "getName": return name;
+                case "hashCode": return uuid.hashCode();
+                case "equals": return proxy == args[0];
+                default: throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package com.mimsswstats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Player totals as the plugin uses them: the main thread records while web server threads read. Compares the striped
+ * adders behind {@link PlayerStats} (reads through {@link PlayerStats#snapshot()}) with the synchronized and plain
+ * fields they replaced. Each group runs one recording thread against three reading threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class PlayerStatsBenchmark {
+
+    private final PlayerStats adders = new PlayerStats(UUID.randomUUID(), "bench");
+    private final SynchronizedTotals synchronizedTotals = new SynchronizedTotals();
+    private final PlainTotals plainTotals = new PlainTotals();
+
+    @Benchmark
+    @Group("adders")
+    @GroupThreads(1)
+    public void addersRecord() {
+        adders.addKills(1);
+        adders.addDamage(2.5);
+        adders.addAssist(1);
+    }
+
+    @Benchmark
+    @Group("adders")
+    @GroupThreads(3)
+    public PlayerStats.Snapshot addersRead() {
+        return adders.snapshot();
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(1)
+    public void synchronizedRecord() {
+        synchronizedTotals.record(1, 2.5, 1);
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(3)
+    public double synchronizedRead() {
+        return synchronizedTotals.read();
+    }
+
+    @Benchmark
+    @Group("plain")
+    @GroupThreads(1)
+    public void plainRecord() {
+        plainTotals.record(1, 2.5, 1);
+    }
+
+    @Benchmark
+    @Group("plain")
+    @GroupThreads(3)
+    public double plainRead() {
+        return plainTotals.read(); // Baseline only: may mix values from different writes
+    }
+
+    /** The totals as a lock-guarded object: consistent reads, but readers and the writer take turns. */
+    private static final class SynchronizedTotals {
+        private int kills;
+        private double damage;
+        private int assists;
+
+        synchronized void record(int kills, double damage, int assists) {
+            this.kills += kills;
+            this.damage += damage;
+            this.assists += assists;
+        }
+
+        synchronized double read() {
+            return kills + damage + assists;
+        }
+    }
+
+    /** The totals as the original plain fields: no consistency, torn doubles possible. */
+    private static final class PlainTotals {
+        private int kills;
+        private double damage;
+        private int assists;
+
+        void record(int kills, double damage, int assists) {
+            this.kills += kills;
+            this.damage += damage;
+            this.assists += assists;
+        }
+
+        double read() {
+            return kills + damage + assists;
+        }
+    }
+}
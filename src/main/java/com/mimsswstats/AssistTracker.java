@@ -0,0 +1,152 @@
+package com.mimsswstats;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent damage per victim for the assist rule, as a ring of one-second buckets covering
+ * {@link SiegeStatsManager#ASSIST_WINDOW_MS}. Each bucket sums damage per attacker in primitive arrays, so a hit
+ * only adds to a slot; the ring is allocated once per victim life and dropped when they die.
+ * <p>
+ * Window edges are exact to one bucket. Rings of victims who stop taking damage without dying (logged out, left
+ * the zone) are dropped by a {@link TimerWheel} timeout once their newest hit is out of the window.
+ * Main thread only, except the size gauge.
+ */
+public class AssistTracker {
+    static final long BUCKET_MS = 1000;
+    private static final int BUCKETS = (int) (SiegeStatsManager.ASSIST_WINDOW_MS / BUCKET_MS) + 1;
+    private static final int SLOTS_PER_BUCKET = 8; // Distinct attackers on one victim within one second
+
+    private final ConcurrentHashMap<UUID, DamageRing> rings = new ConcurrentHashMap<>();
+    private final TimerWheel timerWheel;
+    private long droppedHits;
+    private long expiredRings;
+
+    public AssistTracker(TimerWheel timerWheel) {
+        this.timerWheel = timerWheel;
+    }
+
+    /** Damage received by one victim: BUCKETS x SLOTS_PER_BUCKET attacker sums. */
+    static final class DamageRing {
+        private final long[] bucketNumber = new long[BUCKETS]; // Absolute bucket held by each ring position
+        private final int[] slotsUsed = new int[BUCKETS];
+        private final long[] attackerMost = new long[BUCKETS * SLOTS_PER_BUCKET];
+        private final long[] attackerLeast = new long[BUCKETS * SLOTS_PER_BUCKET];
+        private final double[] damage = new double[BUCKETS * SLOTS_PER_BUCKET];
+        long lastHitMillis;
+
+        DamageRing() {
+            Arrays.fill(bucketNumber, Long.MIN_VALUE);
+        }
+
+        /** @return false if this second already has SLOTS_PER_BUCKET other attackers. */
+        boolean add(UUID attacker, double amount, long nowMillis) {
+            long bucket = nowMillis / BUCKET_MS;
+            int position = (int) (bucket % BUCKETS);
+            if (bucketNumber[position] != bucket) {
+                bucketNumber[position] = bucket; // Reuse the expired bucket
+                slotsUsed[position] = 0;
+            }
+            lastHitMillis = nowMillis;
+            long most = attacker.getMostSignificantBits();
+            long least = attacker.getLeastSignificantBits();
+            int base = position * SLOTS_PER_BUCKET;
+            int used = slotsUsed[position];
+            for (int i = base; i < base + used; i++) {
+                if (attackerMost[i] == most && attackerLeast[i] == least) {
+                    damage[i] += amount;
+                    return true;
+                }
+            }
+            if (used == SLOTS_PER_BUCKET) return false;
+            int slot = base + used;
+            attackerMost[slot] = most;
+            attackerLeast[slot] = least;
+            damage[slot] = amount;
+            slotsUsed[position] = used + 1;
+            return true;
+        }
+
+        double damageBy(UUID attacker, long nowMillis) {
+            long most = attacker.getMostSignificantBits();
+            long least = attacker.getLeastSignificantBits();
+            long oldest = oldestBucket(nowMillis);
+            double total = 0;
+            for (int position = 0; position < BUCKETS; position++) {
+                if (bucketNumber[position] < oldest) continue;
+                int base = position * SLOTS_PER_BUCKET;
+                for (int i = base; i < base + slotsUsed[position]; i++) {
+                    if (attackerMost[i] == most && attackerLeast[i] == least) total += damage[i];
+                }
+            }
+            return total;
+        }
+
+        void sumByAttacker(long nowMillis, Map<UUID, Double> into) {
+            long oldest = oldestBucket(nowMillis);
+            for (int position = 0; position < BUCKETS; position++) {
+                if (bucketNumber[position] < oldest) continue;
+                int base = position * SLOTS_PER_BUCKET;
+                for (int i = base; i < base + slotsUsed[position]; i++) {
+                    into.merge(new UUID(attackerMost[i], attackerLeast[i]), damage[i], Double::sum);
+                }
+            }
+        }
+
+        private static long oldestBucket(long nowMillis) {
+            return (nowMillis - SiegeStatsManager.ASSIST_WINDOW_MS) / BUCKET_MS;
+        }
+    }
+
+    public void recordHit(UUID victimUUID, UUID attackerUUID, double amount, long nowMillis) {
+        DamageRing ring = rings.get(victimUUID);
+        if (ring == null) {
+            ring = new DamageRing();
+            rings.put(victimUUID, ring);
+            DamageRing created = ring;
+            // One timeout per ring, re-armed while hits keep arriving, rather than one per hit
+            timerWheel.schedule(SiegeStatsManager.ASSIST_WINDOW_MS, now -> expire(victimUUID, created, now));
+        }
+        if (!ring.add(attackerUUID, amount, nowMillis)) {
+            droppedHits++;
+        }
+    }
+
+    /** @return damage dealt to the victim by the attacker within the assist window. */
+    public double damageBy(UUID victimUUID, UUID attackerUUID, long nowMillis) {
+        DamageRing ring = rings.get(victimUUID);
+        return ring != null ? ring.damageBy(attackerUUID, nowMillis) : 0;
+    }
+
+    /** @return damage per attacker within the assist window, in no particular order. Allocates; call on death only. */
+    public Map<UUID, Double> damageInWindow(UUID victimUUID, long nowMillis) {
+        Map<UUID, Double> totals = new LinkedHashMap<>();
+        DamageRing ring = rings.get(victimUUID);
+        if (ring != null) ring.sumByAttacker(nowMillis, totals);
+        return totals;
+    }
+
+    private long expire(UUID victimUUID, DamageRing ring, long nowMillis) {
+        if (rings.get(victimUUID) != ring) return -1; // Cleared on death; a newer ring has its own timeout
+        long idle = nowMillis - ring.lastHitMillis;
+        if (idle < SiegeStatsManager.ASSIST_WINDOW_MS) return SiegeStatsManager.ASSIST_WINDOW_MS - idle;
+        rings.remove(victimUUID, ring);
+        expiredRings++;
+        return -1;
+    }
+
+    public void clear(UUID victimUUID) {
+        rings.remove(victimUUID);
+    }
+
+    public void clearAll() {
+        rings.clear();
+    }
+
+    public int getTrackedVictims() { return rings.size(); }
+    public long getDroppedHits() { return droppedHits; }
+    public long getExpiredRings() { return expiredRings; }
+}
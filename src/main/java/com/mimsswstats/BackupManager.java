@@ -0,0 +1,391 @@
+package com.mimsswstats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Rotating compressed backups of the saved stats under backups/.
+ *
+ * A backup is taken in two steps: the save thread stages a consistent image of the store (hard links to the
+ * immutable files, a VACUUM INTO copy for sqlite) between two writes, then the backup thread zips the staged
+ * files and prunes old generations. Neither step runs on the main thread.
+ *
+ * Scheduled backups keep the newest one of each of the last {@code backup-keep-hourly} hours and
+ * {@code backup-keep-daily} days. Tagged backups (manual, pre-reset, pre-restore) are kept separately,
+ * the newest {@code backup-keep-manual} of them.
+ */
+public class BackupManager {
+    private static final String PREFIX = "backup-";
+    private static final String SUFFIX = ".zip";
+    private static final String STAGING_PREFIX = ".staging-";
+    private static final Pattern NAME = Pattern.compile("backup-(\\d{8}-\\d{6})(?:-([a-z-]+))?\\.zip");
+    private static final String TIMESTAMP_FORMAT = "yyyyMMdd-HHmmss";
+
+    /** Everything a backup can hold, relative to the data folder. Replaced as a whole on restore. */
+    static final String[] DATA_PATHS = {"stats.json", "stats.bin", "segments", "sieges", "stats.db", "stats.db-wal", "stats.db-shm", "windows.bin", "groups", "seasons"};
+
+    /** Copies a consistent image of the saved data into a folder. */
+    @FunctionalInterface
+    public interface Stager {
+        void stage(File targetDir) throws IOException;
+    }
+
+    /** One backup file. */
+    public static final class Backup {
+        public final String name;
+        public final File file;
+        public final long createdMillis;
+        public final String tag; // null for scheduled backups
+        public final long sizeBytes;
+
+        Backup(String name, File file, long createdMillis, String tag, long sizeBytes) {
+            this.name = name;
+            this.file = file;
+            this.createdMillis = createdMillis;
+            this.tag = tag;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    /** A backup in progress: {@code staged} completes once the data has been copied, {@code completed} once it is zipped. */
+    public static final class Job {
+        public final CompletableFuture<Void> staged;
+        public final CompletableFuture<Backup> completed;
+
+        Job(CompletableFuture<Void> staged, CompletableFuture<Backup> completed) {
+            this.staged = staged;
+            this.completed = completed;
+        }
+    }
+
+    private final File dataFolder;
+    private final File backupDir;
+    private final Logger logger;
+    private final int keepHourly;
+    private final int keepDaily;
+    private final int keepTagged;
+
+    private final ExecutorService backupExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "SiegeStats-Backup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // --- Metrics ---
+    private final AtomicLong backupsCreated = new AtomicLong();
+    private final AtomicLong backupsFailed = new AtomicLong();
+    private final AtomicLong backupsPruned = new AtomicLong();
+    private volatile long lastBackupAtMillis = 0;
+    private volatile long lastStageMillis = 0;
+    private volatile long lastCompressMillis = 0;
+    private volatile long lastBackupBytes = 0;
+    private volatile long lastSourceBytes = 0;
+
+    public BackupManager(File dataFolder, Logger logger, int keepHourly, int keepDaily, int keepTagged) {
+        this.dataFolder = dataFolder;
+        this.backupDir = new File(dataFolder, "backups");
+        this.logger = logger;
+        this.keepHourly = Math.max(0, keepHourly);
+        this.keepDaily = Math.max(0, keepDaily);
+        this.keepTagged = Math.max(1, keepTagged);
+    }
+
+    // --- Creating ---
+
+    /**
+     * Starts a backup. The stager runs on {@code stagingExecutor} (the save thread), compression on the backup thread.
+     * @param tag null for a scheduled backup, otherwise a lowercase label such as "manual" or "pre-reset".
+     */
+    public Job create(String tag, Executor stagingExecutor, Stager stager) {
+        long startedAt = System.currentTimeMillis();
+        String name = PREFIX + new SimpleDateFormat(TIMESTAMP_FORMAT).format(new Date(startedAt))
+                + (tag != null ? "-" + tag : "") + SUFFIX;
+        File stagingDir = new File(backupDir, STAGING_PREFIX + name);
+
+        Runnable stageTask = () -> {
+            long stageStart = System.nanoTime();
+            try {
+                deleteRecursively(stagingDir);
+                if (!stagingDir.mkdirs()) {
+                    throw new IOException("Could not create backup staging folder: " + stagingDir.getPath());
+                }
+                stager.stage(stagingDir);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            lastStageMillis = (System.nanoTime() - stageStart) / 1_000_000L;
+        };
+        CompletableFuture<Void> staged;
+        try {
+            staged = CompletableFuture.runAsync(stageTask, stagingExecutor);
+        } catch (RejectedExecutionException e) {
+            staged = CompletableFuture.runAsync(stageTask, Runnable::run); // Save thread already stopped (disabling)
+        }
+
+        CompletableFuture<Backup> completed = staged.thenApplyAsync(ignored -> {
+            try {
+                return compress(stagingDir, name, startedAt, tag);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                deleteRecursively(stagingDir);
+            }
+        }, backupExecutor);
+
+        completed.whenComplete((backup, error) -> {
+            if (error != null) {
+                backupsFailed.incrementAndGet();
+                deleteRecursively(stagingDir);
+                logger.severe("Stats backup " + name + " failed: " + rootMessage(error));
+                return;
+            }
+            backupsCreated.incrementAndGet();
+            logger.info(String.format("Stats backup %s created (%d KB from %d KB, stage %d ms, compress %d ms).",
+                    name, backup.sizeBytes / 1024, lastSourceBytes / 1024, lastStageMillis, lastCompressMillis));
+            prune();
+        });
+        return new Job(staged, completed);
+    }
+
+    private Backup compress(File stagingDir, String name, long createdMillis, String tag) throws IOException {
+        long compressStart = System.nanoTime();
+        File target = new File(backupDir, name);
+        if (target.exists()) {
+            throw new IOException("A backup named " + name + " already exists");
+        }
+        File tempFile = new File(backupDir, name + ".tmp");
+        long sourceBytes = 0;
+        Path root = stagingDir.toPath();
+        try (FileOutputStream fos = new FileOutputStream(tempFile);
+             ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+             Stream<Path> files = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                zip.putNextEntry(new ZipEntry(root.relativize(path).toString().replace(File.separatorChar, '/')));
+                sourceBytes += Files.copy(path, zip);
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+            fos.getFD().sync();
+        }
+        moveAtomically(tempFile, target);
+
+        lastCompressMillis = (System.nanoTime() - compressStart) / 1_000_000L;
+        lastSourceBytes = sourceBytes;
+        lastBackupBytes = target.length();
+        lastBackupAtMillis = createdMillis;
+        return new Backup(name, target, createdMillis, tag, target.length());
+    }
+
+    // --- Listing and rotation ---
+
+    /** @return every backup, newest first. */
+    public List<Backup> list() {
+        List<Backup> backups = new ArrayList<>();
+        File[] files = backupDir.listFiles((dir, fileName) -> fileName.startsWith(PREFIX) && fileName.endsWith(SUFFIX));
+        if (files == null) return backups;
+        SimpleDateFormat format = new SimpleDateFormat(TIMESTAMP_FORMAT);
+        for (File file : files) {
+            Matcher matcher = NAME.matcher(file.getName());
+            if (!matcher.matches()) continue;
+            try {
+                long created = format.parse(matcher.group(1)).getTime();
+                backups.add(new Backup(file.getName(), file, created, matcher.group(2), file.length()));
+            } catch (ParseException e) {
+                logger.warning("Ignoring backup with unreadable name: " + file.getName());
+            }
+        }
+        backups.sort(Comparator.comparingLong((Backup b) -> b.createdMillis).reversed());
+        return backups;
+    }
+
+    public Backup find(String name) {
+        for (Backup backup : list()) {
+            if (backup.name.equalsIgnoreCase(name) || backup.name.equalsIgnoreCase(PREFIX + name + SUFFIX)) return backup;
+        }
+        return null;
+    }
+
+    /** Deletes scheduled backups outside the hourly/daily windows and tagged backups beyond the newest few. */
+    private void prune() {
+        List<Backup> scheduled = new ArrayList<>();
+        List<Backup> tagged = new ArrayList<>();
+        for (Backup backup : list()) {
+            (backup.tag == null ? scheduled : tagged).add(backup);
+        }
+
+        Set<String> keep = new HashSet<>();
+        tagged.stream().limit(keepTagged).forEach(backup -> keep.add(backup.name));
+        keepNewestPerBucket(scheduled, TimeUnit.HOURS.toMillis(1), keepHourly, keep);
+        keepNewestPerBucket(scheduled, TimeUnit.DAYS.toMillis(1), keepDaily, keep);
+
+        List<Backup> all = new ArrayList<>(scheduled);
+        all.addAll(tagged);
+        for (Backup backup : all) {
+            if (keep.contains(backup.name)) continue;
+            if (backup.file.delete()) {
+                backupsPruned.incrementAndGet();
+            } else {
+                logger.warning("Could not delete old backup: " + backup.file.getPath());
+            }
+        }
+    }
+
+    /** Backups are newest first, so the first one seen in each bucket is that bucket's newest. */
+    private static void keepNewestPerBucket(List<Backup> backups, long bucketMillis, int buckets, Set<String> keep) {
+        long lastBucket = Long.MIN_VALUE;
+        int kept = 0;
+        for (Backup backup : backups) {
+            if (kept >= buckets) return;
+            long bucket = Math.floorDiv(backup.createdMillis, bucketMillis);
+            if (bucket == lastBucket) continue;
+            lastBucket = bucket;
+            keep.add(backup.name);
+            kept++;
+        }
+    }
+
+    // --- Restoring ---
+
+    /**
+     * Unzips a backup into a staging folder on the backup thread. The caller swaps it in with
+     * {@link #replaceDataWith(File)} once nothing else is writing.
+     */
+    public CompletableFuture<File> extract(Backup backup) {
+        return CompletableFuture.supplyAsync(() -> {
+            File stagingDir = new File(backupDir, ".restore-" + backup.name);
+            try {
+                deleteRecursively(stagingDir);
+                Path root = stagingDir.toPath().normalize();
+                try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(backup.file), 64 * 1024))) {
+                    ZipEntry entry;
+                    while ((entry = zip.getNextEntry()) != null) {
+                        Path target = root.resolve(entry.getName()).normalize();
+                        if (!target.startsWith(root)) {
+                            throw new IOException("Backup entry escapes the data folder: " + entry.getName());
+                        }
+                        if (entry.isDirectory()) continue;
+                        Files.createDirectories(target.getParent());
+                        Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                return stagingDir;
+            } catch (IOException e) {
+                deleteRecursively(stagingDir);
+                throw new UncheckedIOException(e);
+            }
+        }, backupExecutor);
+    }
+
+    /**
+     * Removes the current data files and moves the extracted ones into the data folder.
+     * The caller must make sure no save is running and reload afterwards.
+     */
+    public void replaceDataWith(File extractedDir) throws IOException {
+        for (String path : DATA_PATHS) {
+            deleteRecursively(new File(dataFolder, path));
+        }
+        File[] entries = extractedDir.listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                moveAtomically(entry, new File(dataFolder, entry.getName()));
+            }
+        }
+        deleteRecursively(extractedDir);
+    }
+
+    // --- Shutdown and metrics ---
+
+    /** Lets a running backup finish. Called from onDisable after the final save. */
+    public void shutdown() {
+        backupExecutor.shutdown();
+        try {
+            if (!backupExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warning("Timed out waiting for the stats backup to finish.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getBackupsCreated() { return backupsCreated.get(); }
+    public long getBackupsFailed() { return backupsFailed.get(); }
+    public long getBackupsPruned() { return backupsPruned.get(); }
+    public long getLastBackupAtMillis() { return lastBackupAtMillis; }
+    public long getLastStageMillis() { return lastStageMillis; }
+    public long getLastCompressMillis() { return lastCompressMillis; }
+    public long getLastBackupBytes() { return lastBackupBytes; }
+    public long getLastSourceBytes() { return lastSourceBytes; }
+
+    // --- File helpers (also used by the stores' copyTo) ---
+
+    /** Hard-links {@code source} as {@code target}, falling back to a copy where links are not supported. */
+    static void linkOrCopy(File source, File target) throws IOException {
+        Files.createDirectories(target.toPath().getParent());
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            copy(source, target);
+        }
+    }
+
+    static void copy(File source, File target) throws IOException {
+        Files.createDirectories(target.toPath().getParent());
+        Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursively(child);
+        }
+        if (file.exists() && !file.delete()) {
+            logger.warning("Could not delete " + file.getPath());
+        }
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null) cause = cause.getCause();
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+}
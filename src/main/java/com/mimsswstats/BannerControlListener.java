@@ -8,7 +8,6 @@ import com.gmail.goosius.siegewar.objects.Siege;
 
 import com.palmergames.bukkit.towny.object.Resident;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -22,10 +21,16 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class BannerControlListener implements Listener {
     private final SiegeStatsPlugin plugin;
+    private final StatsLog log;
     private final Map<String, Map<UUID, Long>> controllingPlayersBySiege;
+    private long orphanedSiegesExpired;
+
+    // How often a siege's controller entry is checked against the sieges the manager still tracks
+    private static final long ORPHAN_CHECK_MS = 60_000L;
 
     public BannerControlListener(SiegeStatsPlugin plugin) {
         this.plugin = plugin;
+        this.log = plugin.getStatsLog();
         this.controllingPlayersBySiege = new ConcurrentHashMap<>();
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
@@ -37,12 +42,12 @@ public class BannerControlListener implements Listener {
         long eventTime = System.currentTimeMillis();
 
         if (siegeId == null || siege == null) {
-            plugin.getLogger().warning("[BannerControlListener] BannerControlSessionEndedEvent for non-tracked or null siege?");
+            log.warn(StatsLog.Category.BANNER, "[BannerControlListener] BannerControlSessionEndedEvent for non-tracked or null siege?");
             return;
         }
 
         List<Resident> officialControllers = siege.getBannerControllingResidents();
-        Map<UUID, Long> internalControllers = controllingPlayersBySiege.computeIfAbsent(siegeId, k -> new ConcurrentHashMap<>());
+        Map<UUID, Long> internalControllers = controllersFor(siegeId);
 
         if (officialControllers == null || officialControllers.isEmpty()) {
             // Official list empty - handle as loss of control.
@@ -59,13 +64,12 @@ public class BannerControlListener implements Listener {
         // --- Someone successfully captured ---
         Resident lastControllerData = officialControllers.get(officialControllers.size() - 1);
         UUID newControllerUUID = lastControllerData.getUUID();
-        OfflinePlayer newControllerOffline = Bukkit.getOfflinePlayer(newControllerUUID);
-        String newControllerName = newControllerOffline.getName();
+        String newControllerName = plugin.getNameCache().getName(newControllerUUID, lastControllerData.getName());
         // We need the Player object to check side, even if potentially offline fetching name first
         Player newController = lastControllerData.getPlayer(); // Might be null if offline
 
         if (newControllerName == null) {
-            plugin.getLogger().severe("[BannerControlListener] Could not resolve player name for new controller UUID: " + newControllerUUID + " in siege " + siegeId);
+            log.error(StatsLog.Category.BANNER, "[BannerControlListener] Could not resolve player name for new controller UUID: " + newControllerUUID + " in siege " + siegeId);
             finalizeAndClearSiegeControllers(siegeId, eventTime, null, null);
             return;
         }
@@ -73,33 +77,33 @@ public class BannerControlListener implements Listener {
         // *** Get Side of New Controller ***
         // Ensure player object is available; if offline, cannot determine side easily
         if (newController == null) {
-            plugin.getLogger().warning("[BannerControlListener] New controller " + newControllerName + " is offline. Cannot determine side. Treating as enemy capture for safety.");
+            log.warn(StatsLog.Category.BANNER, "[BannerControlListener] New controller " + newControllerName + " is offline. Cannot determine side. Treating as enemy capture for safety.");
             // Default to clearing previous controllers if side cannot be determined.
             if (!internalControllers.isEmpty() && !internalControllers.containsKey(newControllerUUID)) {
                 finalizeAndClearSiegeControllers(siegeId, eventTime, newControllerUUID, newControllerName);
-                internalControllers = controllingPlayersBySiege.computeIfAbsent(siegeId, k -> new ConcurrentHashMap<>()); // Re-fetch map
+                internalControllers = controllersFor(siegeId); // Re-fetch map
                 internalControllers.put(newControllerUUID, eventTime);
-                plugin.getLogger().info("[DEBUG] Added offline controller " + newControllerName + " after clearing previous.");
+                log.debug(StatsLog.Category.BANNER, () -> "Added offline controller " + newControllerName + " after clearing previous.");
             } else if (internalControllers.isEmpty()) {
                 internalControllers.put(newControllerUUID, eventTime);
-                plugin.getLogger().info("[DEBUG] Added offline controller " + newControllerName + " as first controller.");
+                log.debug(StatsLog.Category.BANNER, () -> "Added offline controller " + newControllerName + " as first controller.");
             }
             return;
         }
         // *** VERIFY *** Correct method to get player's side
-        SiegeSide newControllerSide = SiegeSide.getPlayerSiegeSide(siege, newController);
-        plugin.getLogger().info("[DEBUG] Siege " + siegeId + " official controller: " + newControllerName + " (" + newControllerSide + ")");
+        SiegeSide newControllerSide = plugin.getSideCache().getSide(siege, newController);
+        log.debug(StatsLog.Category.BANNER, () -> "Siege " + siegeId + " official controller: " + newControllerName + " (" + newControllerSide + ")");
 
 
         if (internalControllers.isEmpty()) {
             // First capture for this siege
-            plugin.getLogger().info("[DEBUG] First capture for siege " + siegeId + " by " + newControllerName);
+            log.debug(StatsLog.Category.BANNER, () -> "First capture for siege " + siegeId + " by " + newControllerName);
             internalControllers.put(newControllerUUID, eventTime);
-            plugin.getLogger().info("[DEBUG] Added " + newControllerName + " to controllingPlayers.");
+            log.debug(StatsLog.Category.BANNER, () -> "Added " + newControllerName + " to controllingPlayers.");
         } else {
             // Someone was controlling before. Check if it's the same player or different side.
             if (internalControllers.containsKey(newControllerUUID)) {
-                plugin.getLogger().info("[DEBUG] Player " + newControllerName + " was already tracked. No change.");
+                log.debug(StatsLog.Category.BANNER, () -> "Player " + newControllerName + " was already tracked. No change.");
                 // Optional: Clean up any other entries if somehow multiple were tracked before side check
                 // internalControllers.entrySet().removeIf(entry -> !entry.getKey().equals(newControllerUUID));
                 return; // No change needed
@@ -112,68 +116,100 @@ public class BannerControlListener implements Listener {
             SiegeSide previousControllerSide = SiegeSide.NOBODY;
             if (previousControllerSample != null) {
                 // *** VERIFY *** Correct method to get player's side
-                previousControllerSide = SiegeSide.getPlayerSiegeSide(siege, previousControllerSample);
+                previousControllerSide = plugin.getSideCache().getSide(siege, previousControllerSample);
             } else {
-                plugin.getLogger().warning("[BannerControlListener] Could not get Player object for previous controller " + previousControllerSampleUUID + " to check side. Assuming different sides.");
+                log.warn(StatsLog.Category.BANNER, "[BannerControlListener] Could not get Player object for previous controller " + previousControllerSampleUUID + " to check side. Assuming different sides.");
             }
 
-            plugin.getLogger().info("[DEBUG] Comparing sides: New=" + newControllerSide + ", Previous=" + previousControllerSide);
+            if (log.isDebug(StatsLog.Category.BANNER)) log.debug(StatsLog.Category.BANNER, "Comparing sides: New=" + newControllerSide + ", Previous=" + previousControllerSide);
 
             // If sides are different (and valid), finalize previous, then add new.
             if (newControllerSide != previousControllerSide && newControllerSide != SiegeSide.NOBODY && previousControllerSide != SiegeSide.NOBODY) {
-                plugin.getLogger().info("[DEBUG] Enemy capture detected. Finalizing time for previous side.");
+                log.debug(StatsLog.Category.BANNER, "Enemy capture detected. Finalizing time for previous side.");
                 finalizeAndClearSiegeControllers(siegeId, eventTime, newControllerUUID, newControllerName);
                 // Add the new controller (map was cleared by finalize)
-                controllingPlayersBySiege.computeIfAbsent(siegeId, k -> new ConcurrentHashMap<>())
+                controllersFor(siegeId)
                         .put(newControllerUUID, eventTime);
-                plugin.getLogger().info("[DEBUG] Added enemy controller " + newControllerName);
+                log.debug(StatsLog.Category.BANNER, () -> "Added enemy controller " + newControllerName);
             }
             // If sides are the same, just add the new controller without clearing.
             else if (newControllerSide == previousControllerSide && newControllerSide != SiegeSide.NOBODY) {
-                plugin.getLogger().info("[DEBUG] Ally capture/reinforcement detected. Adding new controller without clearing previous.");
+                log.debug(StatsLog.Category.BANNER, "Ally capture/reinforcement detected. Adding new controller without clearing previous.");
                 internalControllers.put(newControllerUUID, eventTime); // Add to existing map for this siege
-                plugin.getLogger().info("[DEBUG] Added ally controller " + newControllerName);
+                log.debug(StatsLog.Category.BANNER, () -> "Added ally controller " + newControllerName);
             } else {
-                plugin.getLogger().warning("[DEBUG] Side comparison inconclusive (One side might be NOBODY or offline). Treating as enemy capture.");
+                log.warn(StatsLog.Category.BANNER, "Side comparison inconclusive (One side might be NOBODY or offline). Treating as enemy capture.");
                 // Fallback: Finalize previous and add new if sides are uncertain
                 finalizeAndClearSiegeControllers(siegeId, eventTime, newControllerUUID, newControllerName);
-                controllingPlayersBySiege.computeIfAbsent(siegeId, k -> new ConcurrentHashMap<>())
+                controllersFor(siegeId)
                         .put(newControllerUUID, eventTime);
-                plugin.getLogger().info("[DEBUG] Added controller " + newControllerName + " after inconclusive side check.");
+                log.debug(StatsLog.Category.BANNER, () -> "Added controller " + newControllerName + " after inconclusive side check.");
             }
         }
     }
 
+    /** The siege's controller map, created (with an orphan check scheduled) if this is its first capture. */
+    private Map<UUID, Long> controllersFor(String siegeId) {
+        Map<UUID, Long> controllers = controllingPlayersBySiege.get(siegeId);
+        if (controllers == null) {
+            Map<UUID, Long> created = new ConcurrentHashMap<>();
+            controllingPlayersBySiege.put(siegeId, created);
+            plugin.getTimerWheel().schedule(ORPHAN_CHECK_MS, now -> expireIfOrphaned(siegeId, created));
+            controllers = created;
+        }
+        return controllers;
+    }
+
+    /** Drops a siege's controllers once the siege is no longer active, e.g. deleted without a SiegeEndEvent. */
+    private long expireIfOrphaned(String siegeId, Map<UUID, Long> controllers) {
+        if (controllingPlayersBySiege.get(siegeId) != controllers) return -1; // Finalized; a newer map has its own check
+        if (plugin.getStatsManager().getActiveSiegesMap().containsKey(siegeId)) return ORPHAN_CHECK_MS;
+        controllingPlayersBySiege.remove(siegeId, controllers);
+        orphanedSiegesExpired++;
+        log.warn(StatsLog.Category.BANNER, "Dropped " + controllers.size() + " banner controller(s) of siege " + siegeId + ", which is no longer active.");
+        return -1;
+    }
+
+    public int getTrackedControllerCount() {
+        int count = 0;
+        for (Map<UUID, Long> controllers : controllingPlayersBySiege.values()) count += controllers.size();
+        return count;
+    }
+
+    public int getTrackedSiegeCount() { return controllingPlayersBySiege.size(); }
+
+    public long getOrphanedSiegesExpired() { return orphanedSiegesExpired; }
+
     // Renamed for clarity - this finalizes and clears for ONE siege
     private void finalizeAndClearSiegeControllers(String siegeId, long endTime, UUID newControllerUUID, String newControllerName) {
         Map<UUID, Long> previousControllers = controllingPlayersBySiege.remove(siegeId); // Remove the entry for this specific siege
 
         if (previousControllers != null && !previousControllers.isEmpty()) {
             String capturerName = (newControllerName != null) ? newControllerName : "NOBODY (Siege/Battle End or Lost)";
-            plugin.getLogger().info("[DEBUG] Finalizing time for " + previousControllers.size() + " controller(s) in siege " + siegeId + ". Ended by: " + capturerName);
+            log.debug(StatsLog.Category.BANNER, () -> "Finalizing time for " + previousControllers.size() + " controller(s) in siege " + siegeId + ". Ended by: " + capturerName);
 
             for (Map.Entry<UUID, Long> entry : previousControllers.entrySet()) {
                 UUID previousPlayerUUID = entry.getKey();
                 long startTime = entry.getValue();
-                String previousPlayerName = Bukkit.getOfflinePlayer(previousPlayerUUID).getName();
+                String previousPlayerName = plugin.getNameCache().getName(previousPlayerUUID);
 
                 if (newControllerUUID != null && previousPlayerUUID.equals(newControllerUUID)) {
                     continue;
                 }
 
                 double controlTimeMinutes = (endTime - startTime) / 60000.0;
-                plugin.getLogger().info(String.format("[DEBUG] Attempting to record stats: SiegeID=%s, PlayerUUID=%s, PlayerName=%s, ControlTime=%.4f mins",
+                log.debug(StatsLog.Category.BANNER, () -> String.format("Attempting to record stats: SiegeID=%s, PlayerUUID=%s, PlayerName=%s, ControlTime=%.4f mins",
                         siegeId, previousPlayerUUID, previousPlayerName, controlTimeMinutes));
 
                 if (controlTimeMinutes > 0.0001 && previousPlayerName != null) {
-                    plugin.getLogger().info("[DEBUG] Logging " + String.format("%.4f", controlTimeMinutes) + " mins for controller " + previousPlayerName + " in siege " + siegeId);
+                    log.debug(StatsLog.Category.BANNER, () -> "Logging " + String.format("%.4f", controlTimeMinutes) + " mins for controller " + previousPlayerName + " in siege " + siegeId);
                     plugin.getStatsManager().recordSiegeAction(siegeId, previousPlayerUUID, 0, 0, 0, controlTimeMinutes);
                 } else {
-                    plugin.getLogger().warning(String.format("[DEBUG] Skipping stat recording for %s in siege %s: ControlTime=%.4f mins (<= 0.0001) or Name=null",
+                    log.warn(StatsLog.Category.BANNER, String.format("Skipping stat recording for %s in siege %s: ControlTime=%.4f mins (<= 0.0001) or Name=null",
                             previousPlayerName, siegeId, controlTimeMinutes));
                 }
             }
-            plugin.getLogger().info("[DEBUG] Cleared controller entry for siege " + siegeId + " after finalizing times.");
+            log.debug(StatsLog.Category.BANNER, () -> "Cleared controller entry for siege " + siegeId + " after finalizing times.");
         }
     }
 
@@ -186,12 +222,12 @@ public class BannerControlListener implements Listener {
         long siegeEndTime = System.currentTimeMillis();
 
         if (siegeId == null && siege != null) {
-            SiegeStats completedStats = plugin.getStatsManager().findCompletedSiegeStats(siege);
-            if (completedStats != null) { siegeId = completedStats.getSiegeId(); }
+            String completedSiegeId = plugin.getStatsManager().findCompletedSiegeId(siege);
+            if (completedSiegeId != null) { siegeId = completedSiegeId; }
             else { return; }
         } else if (siegeId == null) { return; }
 
-        plugin.getLogger().info("[DEBUG] SiegeEndEvent processing cleanup for specific siege " + siegeId + " (" + townName + ")");
+        if (log.isDebug(StatsLog.Category.BANNER)) log.debug(StatsLog.Category.BANNER, "SiegeEndEvent processing cleanup for specific siege " + siegeId + " (" + townName + ")");
         finalizeAndClearSiegeControllers(siegeId, siegeEndTime, null, null);
     }
 
@@ -199,26 +235,26 @@ public class BannerControlListener implements Listener {
     @EventHandler(priority = EventPriority.HIGH)
     public void onBattleSessionEnd(BattleSessionEndedEvent event) {
         long battleEndTime = System.currentTimeMillis();
-        plugin.getLogger().info("[DEBUG] BattleSessionEndedEvent triggered. Finalizing capture time for ALL tracked sieges.");
+        log.debug(StatsLog.Category.BANNER, "BattleSessionEndedEvent triggered. Finalizing capture time for ALL tracked sieges.");
         if (controllingPlayersBySiege.isEmpty()) {
-            plugin.getLogger().info("[DEBUG] BattleSessionEndedEvent: No sieges currently being tracked.");
+            log.debug(StatsLog.Category.BANNER, "BattleSessionEndedEvent: No sieges currently being tracked.");
             return;
         }
 
         List<String> siegeIdsToProcess = new ArrayList<>(controllingPlayersBySiege.keySet());
-        plugin.getLogger().info("[DEBUG] BattleSessionEndedEvent: Processing " + siegeIdsToProcess.size() + " siege(s).");
+        log.debug(StatsLog.Category.BANNER, () -> "BattleSessionEndedEvent: Processing " + siegeIdsToProcess.size() + " siege(s).");
 
         for (String siegeId : siegeIdsToProcess) {
-            plugin.getLogger().info("[DEBUG] BattleSessionEndedEvent: Finalizing controllers for siege ID: " + siegeId);
+            log.debug(StatsLog.Category.BANNER, () -> "BattleSessionEndedEvent: Finalizing controllers for siege ID: " + siegeId);
             finalizeAndClearSiegeControllers(siegeId, battleEndTime, null, null); // This now removes the entry
         }
 
         // The map should be empty now, but clear just in case.
         if (!controllingPlayersBySiege.isEmpty()) {
-            plugin.getLogger().warning("[DEBUG] BattleSessionEndedEvent: Controller map was not empty after processing all siege IDs! Forcing clear.");
+            log.warn(StatsLog.Category.BANNER, "BattleSessionEndedEvent: Controller map was not empty after processing all siege IDs! Forcing clear.");
             controllingPlayersBySiege.clear();
         } else {
-            plugin.getLogger().info("[DEBUG] BattleSessionEndedEvent: Controller map is now empty.");
+            log.debug(StatsLog.Category.BANNER, "BattleSessionEndedEvent: Controller map is now empty.");
         }
     }
 }
\ No newline at end of file
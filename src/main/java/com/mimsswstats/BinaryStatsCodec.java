@@ -0,0 +1,278 @@
+package com.mimsswstats;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary stats layout ({@code storage.format: binary}).
+ *
+ * Header (fixed, 33 bytes): magic "SSTB", short version, byte flags (bit 0 = full), long segmentSequence,
+ * long journalGeneration, int payloadLength, int crc32(payload).
+ *
+ * Payload: a string table (every town, player name and siege ID once), then the town counters, players,
+ * sieges and removed siege IDs. UUIDs are two longs, strings are int indexes into the table and metrics are
+ * fixed-width ints/doubles, so there are no repeated field names or UUID strings.
+ *
+ * The whole payload is checksummed before anything is applied, so a damaged segment is rejected as a unit.
+ */
+public class BinaryStatsCodec implements StatsCodec {
+    static final int MAGIC = 0x53535442; // "SSTB"
+    static final short VERSION = 1;
+    private static final int NO_STRING = -1;
+
+    private static final byte FLAG_FULL = 1;
+    private static final byte SIEGE_ACTIVE = 1;
+    private static final byte SIEGE_ATTACKERS_WON = 2;
+    private static final byte SIEGE_DEFENDERS_WON = 4;
+
+    @Override
+    public String getName() { return "binary"; }
+
+    @Override
+    public String getExtension() { return ".bin"; }
+
+    // --- Encoding ---
+
+    @Override
+    public void encode(StatsSnapshot snapshot, long segmentSequence, OutputStream out) throws IOException {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        Map<String, Integer> counters = snapshot.getTownSiegeCounter();
+        body.writeInt(counters.size());
+        for (Map.Entry<String, Integer> entry : counters.entrySet()) {
+            body.writeInt(strings.indexOf(entry.getKey()));
+            body.writeInt(entry.getValue());
+        }
+
+        body.writeInt(snapshot.getPlayers().size());
+        for (StatsSnapshot.PlayerRecord record : snapshot.getPlayers()) {
+            writeUUID(body, record.uuid);
+            body.writeInt(strings.indexOf(record.lastKnownName));
+            body.writeInt(record.kills);
+            body.writeInt(record.deaths);
+            body.writeInt(record.assists);
+            body.writeDouble(record.damage);
+            body.writeDouble(record.captureTime);
+            body.writeInt(record.siegesParticipated);
+            body.writeInt(record.wins);
+            body.writeInt(record.losses);
+            body.writeInt(record.siegeParticipations.size());
+            for (String siegeId : record.siegeParticipations) {
+                body.writeInt(strings.indexOf(siegeId));
+            }
+        }
+
+        body.writeInt(snapshot.getActiveSieges().size() + snapshot.getCompletedSieges().size());
+        for (StatsSnapshot.SiegeRecord record : snapshot.getActiveSieges()) writeSiege(body, strings, record);
+        for (StatsSnapshot.SiegeRecord record : snapshot.getCompletedSieges()) writeSiege(body, strings, record);
+
+        body.writeInt(snapshot.getRemovedSiegeIds().size());
+        for (String siegeId : snapshot.getRemovedSiegeIds()) {
+            body.writeInt(strings.indexOf(siegeId));
+        }
+        body.flush();
+
+        // The string table is only complete once the body is built, but it has to come first for decoding.
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(bodyBytes.size() + 16 * strings.size() + 4);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(strings.size());
+        for (String value : strings.values) {
+            payload.writeUTF(value);
+        }
+        bodyBytes.writeTo(payload);
+        payload.flush();
+
+        CRC32 crc = new CRC32();
+        byte[] payloadArray = payloadBytes.toByteArray();
+        crc.update(payloadArray);
+
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeByte(snapshot.isFull() ? FLAG_FULL : 0);
+        header.writeLong(segmentSequence);
+        header.writeLong(snapshot.getJournalGeneration());
+        header.writeInt(payloadArray.length);
+        header.writeInt((int) crc.getValue());
+        header.write(payloadArray);
+        header.flush();
+    }
+
+    private void writeSiege(DataOutputStream body, StringTable strings, StatsSnapshot.SiegeRecord record) throws IOException {
+        body.writeInt(strings.indexOf(record.siegeId));
+        body.writeInt(strings.indexOf(record.townName));
+        body.writeInt(record.siegeNumber);
+        body.writeLong(record.startTimeMillis);
+        body.writeLong(record.endTimeMillis);
+        byte flags = 0;
+        if (record.active) flags |= SIEGE_ACTIVE;
+        if (record.attackersWon) flags |= SIEGE_ATTACKERS_WON;
+        if (record.defendersWon) flags |= SIEGE_DEFENDERS_WON;
+        body.writeByte(flags);
+        body.writeInt(record.participants.size());
+        for (Map.Entry<UUID, StatsSnapshot.ParticipantRecord> entry : record.participants.entrySet()) {
+            StatsSnapshot.ParticipantRecord metrics = entry.getValue();
+            writeUUID(body, entry.getKey());
+            body.writeInt(metrics.kills);
+            body.writeInt(metrics.deaths);
+            body.writeInt(metrics.assists);
+            body.writeDouble(metrics.damage);
+            body.writeDouble(metrics.controlTime);
+            body.writeByte(StatsJournal.sideCode(metrics.side));
+        }
+    }
+
+    // --- Decoding ---
+
+    @Override
+    public long decode(InputStream input, Sink sink) throws IOException {
+        DataInputStream header = new DataInputStream(new BufferedInputStream(input));
+        byte[] payload;
+        long segmentSequence;
+        long journalGeneration;
+        try {
+            if (header.readInt() != MAGIC) {
+                throw new IOException("Not a binary stats file (bad magic)");
+            }
+            short version = header.readShort();
+            if (version > VERSION) {
+                throw new IOException("Binary stats file version " + version + " is newer than this plugin supports (" + VERSION + ")");
+            }
+            header.readByte(); // Flags: informational only
+            segmentSequence = header.readLong();
+            journalGeneration = header.readLong(); // Reported only once the checksum passes
+            int length = header.readInt();
+            int storedCrc = header.readInt();
+            if (length < 0) {
+                throw new IOException("Corrupt binary stats header (negative length)");
+            }
+            payload = new byte[length];
+            header.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != storedCrc) {
+                throw new IOException("Binary stats file failed its checksum");
+            }
+        } catch (EOFException e) {
+            throw new IOException("Binary stats file is truncated", e);
+        }
+        sink.journalGeneration(journalGeneration);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+
+        int counterCount = in.readInt();
+        Map<String, Integer> counters = new HashMap<>(counterCount * 2);
+        for (int i = 0; i < counterCount; i++) {
+            counters.put(lookup(strings, in.readInt()), in.readInt());
+        }
+        sink.townSiegeCounters(counters);
+
+        int playerCount = in.readInt();
+        for (int i = 0; i < playerCount; i++) {
+            UUID uuid = readUUID(in);
+            String name = lookup(strings, in.readInt());
+            PlayerStats stats = new PlayerStats(uuid, name != null ? name : uuid.toString());
+            stats.setTotalKills(in.readInt());
+            stats.setTotalDeaths(in.readInt());
+            stats.setTotalAssists(in.readInt());
+            stats.setTotalDamage(in.readDouble());
+            stats.setTotalCaptureTime(in.readDouble());
+            stats.setTotalSiegesParticipated(in.readInt());
+            stats.setTotalWins(in.readInt());
+            stats.setTotalLosses(in.readInt());
+            int participationCount = in.readInt();
+            List<String> siegeIds = new ArrayList<>(participationCount);
+            for (int j = 0; j < participationCount; j++) {
+                siegeIds.add(lookup(strings, in.readInt()));
+            }
+            stats.setSiegeParticipations(siegeIds);
+            sink.player(stats);
+        }
+
+        int siegeCount = in.readInt();
+        for (int i = 0; i < siegeCount; i++) {
+            String siegeId = lookup(strings, in.readInt());
+            String townName = lookup(strings, in.readInt());
+            SiegeStats stats = new SiegeStats(townName, in.readInt(), siegeId);
+            stats.setStartTime(in.readLong());
+            stats.setEndTime(in.readLong());
+            byte flags = in.readByte();
+            stats.setActive((flags & SIEGE_ACTIVE) != 0);
+            stats.setAttackersWon((flags & SIEGE_ATTACKERS_WON) != 0);
+            stats.setDefendersWon((flags & SIEGE_DEFENDERS_WON) != 0);
+            int participantCount = in.readInt();
+            for (int j = 0; j < participantCount; j++) {
+                UUID uuid = readUUID(in);
+                SiegeStats.ParticipantMetrics metrics = new SiegeStats.ParticipantMetrics();
+                int kills = in.readInt();
+                int deaths = in.readInt();
+                int assists = in.readInt();
+                double damage = in.readDouble();
+                double controlTime = in.readDouble();
+                metrics.restore(kills, deaths, damage, controlTime, assists, StatsJournal.sideFromCode(in.readByte()));
+                stats.getParticipantMetrics().put(uuid, metrics);
+            }
+            sink.siege(stats);
+        }
+
+        int removedCount = in.readInt();
+        for (int i = 0; i < removedCount; i++) {
+            sink.removedSiege(lookup(strings, in.readInt()));
+        }
+        return segmentSequence;
+    }
+
+    // --- Helpers ---
+
+    private static void writeUUID(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUUID(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static String lookup(String[] strings, int index) throws IOException {
+        if (index == NO_STRING) return null;
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Corrupt binary stats file (string index " + index + " out of range)");
+        }
+        return strings[index];
+    }
+
+    /** Interns strings in first-use order. */
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int indexOf(String value) {
+            if (value == null) return NO_STRING;
+            return indexes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        int size() { return values.size(); }
+    }
+}
@@ -0,0 +1,172 @@
+package com.mimsswstats;
+
+import org.bukkit.entity.Player;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Collects siege damage events for the current tick and applies them in one pass on the next one: each
+ * (siege, attacker) pair becomes a single recordSiegeAction and each participant a single addSiegeParticipant,
+ * however many hits landed. Events go into reusable parallel arrays, so buffering a hit does not allocate, and the
+ * per-siege maps and aggregates a flush groups them in are kept for the next flush.
+ * <p>
+ * Main thread only. Flushed early when a siege ends and on shutdown, so no damage is lost or misattributed.
+ */
+public class DamageBatcher {
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** What a flush applies the grouped hits to: the stats manager, or a stand-in for the benchmarks. */
+    interface Target {
+        void addSiegeParticipant(SiegeHandle siege, Player player);
+        void recordSiegeAction(SiegeHandle siege, UUID playerUUID, int kills, int deaths, double damage, double controlTimeMinutes, int assists);
+    }
+
+    private final StatsLog log;
+    private final Consumer<Runnable> nextTick;
+    private final Supplier<? extends Target> target;
+
+    private SiegeHandle[] sieges = new SiegeHandle[INITIAL_CAPACITY];
+    private Player[] damagers = new Player[INITIAL_CAPACITY];
+    private Player[] victims = new Player[INITIAL_CAPACITY];
+    private double[] amounts = new double[INITIAL_CAPACITY];
+    private int size;
+    private boolean flushScheduled;
+
+    // Reused between flushes; insertion order keeps the journal in event order
+    private final Map<SiegeHandle, Map<UUID, Aggregate>> damageBySiege = new LinkedHashMap<>();
+    private final Map<SiegeHandle, Map<UUID, Player>> participantsBySiege = new LinkedHashMap<>();
+    private final ArrayDeque<Map<UUID, Aggregate>> spareDamageMaps = new ArrayDeque<>();
+    private final ArrayDeque<Map<UUID, Player>> spareParticipantMaps = new ArrayDeque<>();
+    private final ArrayDeque<Aggregate> spareAggregates = new ArrayDeque<>();
+
+    // Metrics, for /ss debug
+    private long eventsBuffered;
+    private long actionsApplied;
+    private long flushes;
+    private int maxBatchSize;
+    private long lastFlushMicros;
+
+    private static final class Aggregate {
+        double damage;
+    }
+
+    public DamageBatcher(SiegeStatsPlugin plugin) {
+        this(plugin.getStatsLog(), task -> plugin.getServer().getScheduler().runTask(plugin, task), plugin::getStatsManager);
+    }
+
+    DamageBatcher(StatsLog log, Consumer<Runnable> nextTick, Supplier<? extends Target> target) {
+        this.log = log;
+        this.nextTick = nextTick;
+        this.target = target;
+    }
+
+    /** Buffers one hit between opponents. Applied at the start of the next tick. */
+    public void add(SiegeHandle siege, Player damager, Player victim, double damage) {
+        if (size == sieges.length) grow();
+        sieges[size] = siege;
+        damagers[size] = damager;
+        victims[size] = victim;
+        amounts[size] = damage;
+        size++;
+        eventsBuffered++;
+        if (!flushScheduled) {
+            flushScheduled = true;
+            nextTick.accept(this::flush);
+        }
+    }
+
+    public void flush() {
+        flushScheduled = false;
+        if (size == 0) return;
+        long start = System.nanoTime();
+        int count = size;
+        for (int i = 0; i < count; i++) {
+            SiegeHandle siege = sieges[i];
+            Player damager = damagers[i];
+            Map<UUID, Player> participants = participantsBySiege.computeIfAbsent(siege, id -> spareParticipantMap());
+            participants.putIfAbsent(victims[i].getUniqueId(), victims[i]);
+            participants.putIfAbsent(damager.getUniqueId(), damager);
+            damageBySiege.computeIfAbsent(siege, id -> spareDamageMap())
+                    .computeIfAbsent(damager.getUniqueId(), uuid -> spareAggregate()).damage += amounts[i];
+        }
+        // Release player and siege references before applying, in case applying re-enters add()
+        Arrays.fill(sieges, 0, count, null);
+        Arrays.fill(damagers, 0, count, null);
+        Arrays.fill(victims, 0, count, null);
+        size = 0;
+
+        Target statsManager = target.get();
+        int applied = 0;
+        try {
+            for (Map.Entry<SiegeHandle, Map<UUID, Aggregate>> siegeEntry : damageBySiege.entrySet()) {
+                SiegeHandle siege = siegeEntry.getKey();
+                for (Player participant : participantsBySiege.get(siege).values()) {
+                    statsManager.addSiegeParticipant(siege, participant);
+                }
+                for (Map.Entry<UUID, Aggregate> attacker : siegeEntry.getValue().entrySet()) {
+                    statsManager.recordSiegeAction(siege, attacker.getKey(), 0, 0, attacker.getValue().damage, 0.0, 0);
+                    applied++;
+                }
+            }
+        } finally {
+            recycle();
+        }
+        actionsApplied += applied;
+        flushes++;
+        maxBatchSize = Math.max(maxBatchSize, count);
+        lastFlushMicros = (System.nanoTime() - start) / 1000;
+        if (log.isTrace(StatsLog.Category.COMBAT)) log.trace(StatsLog.Category.COMBAT, "Applied " + count + " buffered damage events as " + applied + " actions.");
+    }
+
+    private Map<UUID, Player> spareParticipantMap() {
+        Map<UUID, Player> map = spareParticipantMaps.poll();
+        return map != null ? map : new LinkedHashMap<>();
+    }
+
+    private Map<UUID, Aggregate> spareDamageMap() {
+        Map<UUID, Aggregate> map = spareDamageMaps.poll();
+        return map != null ? map : new LinkedHashMap<>();
+    }
+
+    private Aggregate spareAggregate() {
+        Aggregate aggregate = spareAggregates.poll();
+        if (aggregate == null) return new Aggregate();
+        aggregate.damage = 0;
+        return aggregate;
+    }
+
+    /** Empties the per-siege maps into the spares, keeping their tables for the next flush. */
+    private void recycle() {
+        for (Map<UUID, Aggregate> damage : damageBySiege.values()) {
+            spareAggregates.addAll(damage.values());
+            damage.clear();
+            spareDamageMaps.push(damage);
+        }
+        for (Map<UUID, Player> participants : participantsBySiege.values()) {
+            participants.clear();
+            spareParticipantMaps.push(participants);
+        }
+        damageBySiege.clear();
+        participantsBySiege.clear();
+    }
+
+    private void grow() {
+        int capacity = sieges.length * 2;
+        sieges = Arrays.copyOf(sieges, capacity);
+        damagers = Arrays.copyOf(damagers, capacity);
+        victims = Arrays.copyOf(victims, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+    }
+
+    public long getEventsBuffered() { return eventsBuffered; }
+    public long getActionsApplied() { return actionsApplied; }
+    public long getFlushes() { return flushes; }
+    public int getMaxBatchSize() { return maxBatchSize; }
+    public long getLastFlushMicros() { return lastFlushMicros; }
+}
@@ -0,0 +1,163 @@
+package com.mimsswstats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Archive storage for the json and binary formats: one immutable codec file per siege under sieges/,
+ * plus an append-only sieges/index.tsv holding each siege's {@link SiegeArchive.Summary}.
+ */
+public class FileSiegeStorage implements SiegeArchive.Storage {
+    private static final String INDEX_FILE = "index.tsv";
+
+    private final File siegeDir;
+    private final File indexFile;
+    private final Logger logger;
+    private final StatsCodec codec;
+    private final StatsCodec fallbackCodec; // Reads files written before storage.format was switched
+
+    public FileSiegeStorage(File dataFolder, Logger logger, StatsCodec codec, StatsCodec fallbackCodec) {
+        this.siegeDir = new File(dataFolder, "sieges");
+        this.indexFile = new File(siegeDir, INDEX_FILE);
+        this.logger = logger;
+        this.codec = codec;
+        this.fallbackCodec = fallbackCodec;
+    }
+
+    /** True if any siege has been archived as files. */
+    public boolean exists() {
+        return indexFile.exists();
+    }
+
+    @Override
+    public void loadSummaries(Consumer<SiegeArchive.Summary> consumer) throws IOException {
+        if (!indexFile.exists()) return;
+        int skipped = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split("\t");
+                if (f.length < 7) {
+                    skipped++; // Torn last line after a crash
+                    continue;
+                }
+                try {
+                    consumer.accept(new SiegeArchive.Summary(f[0], f[1], Integer.parseInt(f[2]), Long.parseLong(f[3]),
+                            Long.parseLong(f[4]), Integer.parseInt(f[5]), Integer.parseInt(f[6])));
+                } catch (NumberFormatException e) {
+                    skipped++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            logger.warning("Skipped " + skipped + " unreadable line(s) in " + indexFile.getPath());
+        }
+    }
+
+    @Override
+    public long write(StatsSnapshot snapshot) throws IOException {
+        if (!siegeDir.exists() && !siegeDir.mkdirs()) {
+            throw new IOException("Could not create siege folder: " + siegeDir.getPath());
+        }
+        StatsSnapshot.SiegeRecord record = snapshot.getCompletedSieges().get(0);
+        File target = siegeFile(record.siegeId, codec);
+        File tempFile = new File(siegeDir, target.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile);
+             OutputStream out = new BufferedOutputStream(fos)) {
+            codec.encode(snapshot, 0, out);
+            out.flush();
+            fos.getFD().sync();
+        }
+        long bytes = tempFile.length();
+        try {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        int winner = record.defendersWon ? 2 : (record.attackersWon ? 1 : 0);
+        String line = String.join("\t", record.siegeId, record.townName, String.valueOf(record.siegeNumber),
+                String.valueOf(record.startTimeMillis), String.valueOf(record.endTimeMillis),
+                String.valueOf(winner), String.valueOf(record.participants.size())) + "\n";
+        try (FileOutputStream fos = new FileOutputStream(indexFile, true)) {
+            fos.write(line.getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        }
+        return bytes;
+    }
+
+    @Override
+    public SiegeStats read(String siegeId) throws IOException {
+        StatsCodec readCodec = codec;
+        File file = siegeFile(siegeId, codec);
+        if (!file.exists() && fallbackCodec != null) {
+            readCodec = fallbackCodec;
+            file = siegeFile(siegeId, fallbackCodec);
+        }
+        if (!file.exists()) return null;
+        List<SiegeStats> found = new ArrayList<>(1);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            readCodec.decode(in, new StatsCodec.Sink() {
+                @Override public void player(PlayerStats stats) { }
+                @Override public void townSiegeCounters(Map<String, Integer> counters) { }
+                @Override public void siege(SiegeStats stats) { found.add(stats); }
+                @Override public void removedSiege(String id) { }
+                @Override public void journalGeneration(long generation) { }
+            });
+        }
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Override
+    public void deleteAll() {
+        File[] files = siegeDir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.delete()) {
+                logger.warning("Could not delete siege file: " + file.getPath());
+            }
+        }
+    }
+
+    /** Siege files are immutable and can be linked; the index is appended to in place, so it is copied. */
+    @Override
+    public void copyTo(File targetDir) throws IOException {
+        File[] files = siegeDir.listFiles((dir, name) -> !name.endsWith(".tmp"));
+        if (files == null) return;
+        File target = new File(targetDir, siegeDir.getName());
+        for (File file : files) {
+            if (file.equals(indexFile)) {
+                BackupManager.copy(file, new File(target, file.getName()));
+            } else {
+                BackupManager.linkOrCopy(file, new File(target, file.getName()));
+            }
+        }
+    }
+
+    @Override
+    public String describe() {
+        return codec.getName() + " (sieges/)";
+    }
+
+    private File siegeFile(String siegeId, StatsCodec fileCodec) {
+        return new File(siegeDir, URLEncoder.encode(siegeId, StandardCharsets.UTF_8) + fileCodec.getExtension());
+    }
+}
@@ -0,0 +1,551 @@
+package com.mimsswstats;
+
+import com.gmail.goosius.siegewar.enums.SiegeSide;
+import com.gmail.goosius.siegewar.objects.Siege;
+import com.palmergames.bukkit.towny.object.Government;
+import com.palmergames.bukkit.towny.object.Nation;
+import com.palmergames.bukkit.towny.object.Town;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Siege records per town and per nation, updated as sieges start, actions are recorded and results come in, so
+ * /ss town, /ss nation and /api/towns, /api/nations are answered from memory without reading siege history.
+ * <p>
+ * The attacking and defending governments of a siege are resolved from Towny once, when tracking starts, and
+ * journaled, so replay attributes actions the same way without Towny. A side led by a town also counts towards that
+ * town's nation at the time. Each active siege keeps what it added, so deleting an unfinished siege takes back
+ * exactly that; the record is dropped when the siege ends.
+ * <p>
+ * Saved to groups/groups-N.bin on the save thread ahead of the stats snapshot of journal generation N; loading uses
+ * the newest file at or below the loaded generation and replays the journal over it. Main thread only, except
+ * {@link Totals#snapshot()} and the lookups, which the web server uses.
+ */
+public class GovernmentStats {
+    private static final int FILE_MAGIC = 0x53534756; // "SSGV"
+    private static final int FILE_VERSION = 1;
+    private static final String FILE_PREFIX = "groups-";
+    private static final String FILE_SUFFIX = ".bin";
+    private static final double EPSILON = 1e-6; // Doubles left below this by subtraction are zero
+
+    public enum Kind { TOWN, NATION }
+
+    /** One town's or nation's siege record. Written on the main thread, snapshotted from any thread. */
+    public static final class Totals {
+        private volatile String name; // As Towny spelled it when last seen
+        private int siegesAttacked;
+        private int siegesDefended;
+        private int wins;
+        private int losses;
+        private int kills;
+        private int deaths;
+        private int assists;
+        private double damage;
+        private double captureTime;
+
+        Totals(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+
+        synchronized void addSieges(int attacked, int defended) {
+            siegesAttacked += attacked;
+            siegesDefended += defended;
+        }
+
+        synchronized void addResult(int wins, int losses) {
+            this.wins += wins;
+            this.losses += losses;
+        }
+
+        synchronized void add(int kills, int deaths, int assists, double damage, double captureTime) {
+            this.kills += kills;
+            this.deaths += deaths;
+            this.assists += assists;
+            this.damage += damage;
+            this.captureTime += captureTime;
+        }
+
+        synchronized void subtract(Snapshot part) {
+            kills -= part.kills;
+            deaths -= part.deaths;
+            assists -= part.assists;
+            damage = damage - part.damage < EPSILON ? 0 : damage - part.damage;
+            captureTime = captureTime - part.captureTime < EPSILON ? 0 : captureTime - part.captureTime;
+        }
+
+        public synchronized Snapshot snapshot() {
+            return new Snapshot(name, siegesAttacked, siegesDefended, wins, losses, kills, deaths, assists, damage, captureTime);
+        }
+    }
+
+    /** Immutable copy of a {@link Totals}. */
+    public static final class Snapshot {
+        public final String name;
+        public final int siegesAttacked;
+        public final int siegesDefended;
+        public final int wins;
+        public final int losses;
+        public final int kills;
+        public final int deaths;
+        public final int assists;
+        public final double damage;
+        public final double captureTime;
+
+        Snapshot(String name, int siegesAttacked, int siegesDefended, int wins, int losses, int kills, int deaths,
+                 int assists, double damage, double captureTime) {
+            this.name = name;
+            this.siegesAttacked = siegesAttacked;
+            this.siegesDefended = siegesDefended;
+            this.wins = wins;
+            this.losses = losses;
+            this.kills = kills;
+            this.deaths = deaths;
+            this.assists = assists;
+            this.damage = damage;
+            this.captureTime = captureTime;
+        }
+
+        public int getSieges() { return siegesAttacked + siegesDefended; }
+        public double getWinRate() { return wins + losses == 0 ? 0.0 : (double) wins / (wins + losses); }
+        public double getKdaRatio() { return PlayerStats.Snapshot.kda(kills, assists, deaths); }
+    }
+
+    /** Who fights an active siege: a town and/or nation name per side (null where a side has none). */
+    static final class Sides {
+        final String attackerTown;
+        final String attackerNation;
+        final String defenderTown;
+        final String defenderNation;
+        Totals attackers = new Totals(null); // What this siege added, taken back if it is deleted
+        Totals defenders = new Totals(null);
+        boolean resultCounted;
+        boolean attackersWon; // Meaningful once resultCounted
+
+        Sides(String attackerTown, String attackerNation, String defenderTown, String defenderNation) {
+            this.attackerTown = attackerTown;
+            this.attackerNation = attackerNation;
+            this.defenderTown = defenderTown;
+            this.defenderNation = defenderNation;
+        }
+
+        /** Main thread only: reads Towny. The besieged town defends if SiegeWar reports no defender. */
+        static Sides of(Siege siege) {
+            Government attacker = siege.getAttacker();
+            Government defender = siege.getDefender() != null ? siege.getDefender() : siege.getTown();
+            return new Sides(townOf(attacker), nationOf(attacker), townOf(defender), nationOf(defender));
+        }
+
+        private static String townOf(Government government) {
+            return government instanceof Town ? government.getName() : null;
+        }
+
+        private static String nationOf(Government government) {
+            if (government instanceof Nation) return government.getName();
+            if (government instanceof Town) {
+                Nation nation = ((Town) government).getNationOrNull();
+                return nation != null ? nation.getName() : null;
+            }
+            return null;
+        }
+    }
+
+    /** Everything as of one save, safe to write from the save thread. */
+    static final class Image {
+        final long journalGeneration;
+        final List<Snapshot> towns;
+        final List<Snapshot> nations;
+        final Map<String, Sides> sieges;
+
+        private Image(long journalGeneration, List<Snapshot> towns, List<Snapshot> nations, Map<String, Sides> sieges) {
+            this.journalGeneration = journalGeneration;
+            this.towns = towns;
+            this.nations = nations;
+            this.sieges = sieges;
+        }
+    }
+
+    private final File groupsDir;
+    private final StatsLog log;
+    private final ConcurrentHashMap<String, Totals> towns = new ConcurrentHashMap<>(); // Keyed by lowercase name
+    private final ConcurrentHashMap<String, Totals> nations = new ConcurrentHashMap<>();
+    private final Map<String, Sides> sieges = new HashMap<>(); // Active sieges by ID
+    private boolean changed;
+
+    public GovernmentStats(File dataFolder, StatsLog log) {
+        this.groupsDir = new File(dataFolder, "groups");
+        this.log = log;
+    }
+
+    // --- Recording (main thread) ---
+
+    public boolean isTracked(String siegeId) { return sieges.containsKey(siegeId); }
+
+    /** Counts a siege for both sides. Does nothing if the siege already has sides (e.g. replayed after a load). */
+    public void startSiege(String siegeId, Sides sides) {
+        if (sieges.putIfAbsent(siegeId, sides) != null) return;
+        countSiege(sides, 1);
+        changed = true;
+    }
+
+    public void recordAction(String siegeId, SiegeSide side, int kills, int deaths, int assists, double damage, double captureTime) {
+        Sides sides = sieges.get(siegeId);
+        if (sides == null || (side != SiegeSide.ATTACKERS && side != SiegeSide.DEFENDERS)) return;
+        boolean attacking = side == SiegeSide.ATTACKERS;
+        (attacking ? sides.attackers : sides.defenders).add(kills, deaths, assists, damage, captureTime);
+        forEachGroup(sides, attacking, group -> group.add(kills, deaths, assists, damage, captureTime));
+        changed = true;
+    }
+
+    /** Counts the winner once per siege. */
+    public void recordResult(String siegeId, boolean attackersWon, boolean defendersWon) {
+        Sides sides = sieges.get(siegeId);
+        if (sides == null || sides.resultCounted || (!attackersWon && !defendersWon)) return;
+        sides.resultCounted = true;
+        sides.attackersWon = attackersWon;
+        countResult(sides, attackersWon, 1);
+        changed = true;
+    }
+
+    /** The siege is complete: what it added stays, its sides are no longer needed. */
+    public void endSiege(String siegeId) {
+        if (sieges.remove(siegeId) != null) changed = true;
+    }
+
+    /** Takes back everything an unfinished siege added. */
+    public void deleteSiege(String siegeId) {
+        Sides sides = sieges.remove(siegeId);
+        if (sides == null) return;
+        countSiege(sides, -1);
+        if (sides.resultCounted) countResult(sides, sides.attackersWon, -1);
+        Snapshot attackers = sides.attackers.snapshot();
+        Snapshot defenders = sides.defenders.snapshot();
+        forEachGroup(sides, true, group -> group.subtract(attackers));
+        forEachGroup(sides, false, group -> group.subtract(defenders));
+        changed = true;
+    }
+
+    /** A new season: every record starts over, and sieges still running count again from now on. */
+    public void startNewSeason() {
+        towns.clear();
+        nations.clear();
+        for (Sides sides : sieges.values()) {
+            sides.attackers = new Totals(null);
+            sides.defenders = new Totals(null);
+            sides.resultCounted = false;
+            countSiege(sides, 1);
+        }
+        changed = true;
+    }
+
+    public void clear() {
+        towns.clear();
+        nations.clear();
+        sieges.clear();
+        changed = true;
+    }
+
+    private void countSiege(Sides sides, int count) {
+        forEachGroup(sides, true, group -> group.addSieges(count, 0));
+        forEachGroup(sides, false, group -> group.addSieges(0, count));
+    }
+
+    private void countResult(Sides sides, boolean attackersWon, int count) {
+        forEachGroup(sides, true, group -> group.addResult(attackersWon ? count : 0, attackersWon ? 0 : count));
+        forEachGroup(sides, false, group -> group.addResult(attackersWon ? 0 : count, attackersWon ? count : 0));
+    }
+
+    private void forEachGroup(Sides sides, boolean attackers, Consumer<Totals> action) {
+        String town = attackers ? sides.attackerTown : sides.defenderTown;
+        String nation = attackers ? sides.attackerNation : sides.defenderNation;
+        if (town != null) action.accept(group(towns, town));
+        if (nation != null) action.accept(group(nations, nation));
+    }
+
+    private static Totals group(Map<String, Totals> groups, String name) {
+        Totals totals = groups.computeIfAbsent(name.toLowerCase(), k -> new Totals(name));
+        if (!name.equals(totals.name)) totals.name = name; // Renamed, or first seen through a lowercase siege record
+        return totals;
+    }
+
+    /**
+     * Seeds the towns' defence records from completed sieges, for data saved before town records existed.
+     * Nations, attacks and per-player totals are not in the archive index, so they start from here.
+     */
+    public void seedTowns(Collection<SiegeArchive.Summary> completed) {
+        for (SiegeArchive.Summary summary : completed) {
+            Totals town = group(towns, summary.townName);
+            town.addSieges(0, 1);
+            if (summary.defendersWon()) town.addResult(1, 0);
+            if (summary.attackersWon()) town.addResult(0, 1);
+        }
+        if (!completed.isEmpty()) changed = true;
+    }
+
+    // --- Lookups (any thread) ---
+
+    public Totals get(Kind kind, String name) {
+        return (kind == Kind.TOWN ? towns : nations).get(name.toLowerCase());
+    }
+
+    public Collection<Totals> getAll(Kind kind) {
+        return Collections.unmodifiableCollection((kind == Kind.TOWN ? towns : nations).values());
+    }
+
+    /** @return up to limit records with the most wins (then most kills). Sorts the towns or nations, never sieges. */
+    public List<Snapshot> top(Kind kind, int limit) {
+        List<Snapshot> all = new ArrayList<>();
+        for (Totals totals : getAll(kind)) all.add(totals.snapshot());
+        all.sort(Comparator.comparingInt((Snapshot s) -> s.wins).thenComparingInt(s -> s.kills).reversed());
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    /** @return up to limit names starting with the prefix, ignoring case. */
+    public List<String> complete(Kind kind, String prefix, int limit) {
+        String lower = prefix.toLowerCase();
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Totals> entry : (kind == Kind.TOWN ? towns : nations).entrySet()) {
+            if (names.size() >= limit) break;
+            if (entry.getKey().startsWith(lower)) names.add(entry.getValue().getName());
+        }
+        return names;
+    }
+
+    // --- Persistence ---
+
+    /** @return everything for the save being captured, or null if nothing changed since the last capture. */
+    public Image capture(long journalGeneration) {
+        if (!changed) return null;
+        changed = false;
+        List<Snapshot> townCopy = new ArrayList<>(towns.size());
+        for (Totals totals : towns.values()) townCopy.add(totals.snapshot());
+        List<Snapshot> nationCopy = new ArrayList<>(nations.size());
+        for (Totals totals : nations.values()) nationCopy.add(totals.snapshot());
+        Map<String, Sides> siegeCopy = new HashMap<>();
+        sieges.forEach((siegeId, sides) -> {
+            Sides copy = new Sides(sides.attackerTown, sides.attackerNation, sides.defenderTown, sides.defenderNation);
+            copy.attackers = copyOf(sides.attackers.snapshot());
+            copy.defenders = copyOf(sides.defenders.snapshot());
+            copy.resultCounted = sides.resultCounted;
+            copy.attackersWon = sides.attackersWon;
+            siegeCopy.put(siegeId, copy);
+        });
+        return new Image(journalGeneration, townCopy, nationCopy, siegeCopy);
+    }
+
+    /** The captured image was not written; capture again next save even if nothing else changes. */
+    public void markUnsaved() {
+        changed = true;
+    }
+
+    /** Runs on the save thread, before the stats snapshot with the same journal generation is written. */
+    public long write(Image image) throws IOException {
+        if (!groupsDir.exists() && !groupsDir.mkdirs()) {
+            throw new IOException("Could not create folder: " + groupsDir.getPath());
+        }
+        File file = fileFor(image.journalGeneration);
+        File tempFile = new File(groupsDir, file.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(image.journalGeneration);
+            writeGroups(out, image.towns);
+            writeGroups(out, image.nations);
+            out.writeInt(image.sieges.size());
+            for (Map.Entry<String, Sides> entry : image.sieges.entrySet()) {
+                Sides sides = entry.getValue();
+                out.writeUTF(entry.getKey());
+                writeName(out, sides.attackerTown);
+                writeName(out, sides.attackerNation);
+                writeName(out, sides.defenderTown);
+                writeName(out, sides.defenderNation);
+                out.writeBoolean(sides.resultCounted);
+                out.writeBoolean(sides.attackersWon);
+                writeTotals(out, sides.attackers.snapshot());
+                writeTotals(out, sides.defenders.snapshot());
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        long bytes = tempFile.length();
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return bytes;
+    }
+
+    /**
+     * Runs on the save thread once the stats snapshot of this generation is on disk: files older than the one it
+     * loads with are no longer needed. Newer files are left for {@link #load} to judge.
+     */
+    public void prune(long savedJournalGeneration) {
+        long kept = newestAtOrBelow(savedJournalGeneration);
+        for (File file : listFiles()) {
+            long generation = generationOf(file);
+            if (generation < kept && !file.delete()) {
+                log.warn(StatsLog.Category.STORAGE, "Could not delete old " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Replaces everything with the newest file at or below the loaded journal generation. Files above it were
+     * written ahead of a stats save that never finished; the journal replayed next covers them, so they are deleted.
+     * @return false if there was no file to load.
+     */
+    public boolean load(long loadedJournalGeneration) {
+        clear();
+        changed = false;
+        for (File file : listFiles()) {
+            if (generationOf(file) > loadedJournalGeneration && !file.delete()) {
+                log.warn(StatsLog.Category.STORAGE, "Could not delete " + file.getName() + " (saved after the loaded stats)");
+            }
+        }
+        long generation = newestAtOrBelow(loadedJournalGeneration);
+        if (generation < 0) return false;
+        File file = fileFor(generation);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("not a version " + FILE_VERSION + " town and nation stats file");
+            }
+            in.readLong(); // Generation, as in the file name
+            readGroups(in, towns);
+            readGroups(in, nations);
+            int siegeCount = in.readInt();
+            for (int i = 0; i < siegeCount; i++) {
+                String siegeId = in.readUTF();
+                Sides sides = new Sides(readName(in), readName(in), readName(in), readName(in));
+                sides.resultCounted = in.readBoolean();
+                sides.attackersWon = in.readBoolean();
+                sides.attackers = readTotals(in, null);
+                sides.defenders = readTotals(in, null);
+                sieges.put(siegeId, sides);
+            }
+        } catch (IOException e) {
+            log.error(StatsLog.Category.STORAGE, "Could not load " + file.getName() + "; town and nation stats start empty: " + e.getMessage());
+            clear();
+            return true;
+        }
+        log.info(StatsLog.Category.STORAGE, "Loaded siege records for " + towns.size() + " town(s) and " + nations.size() + " nation(s).");
+        return true;
+    }
+
+    /** Runs on the save thread, like the other backup staging. */
+    public void copyTo(File targetDir) throws IOException {
+        for (File file : listFiles()) {
+            BackupManager.linkOrCopy(file, new File(targetDir, groupsDir.getName() + File.separator + file.getName()));
+        }
+    }
+
+    private File fileFor(long journalGeneration) {
+        return new File(groupsDir, FILE_PREFIX + journalGeneration + FILE_SUFFIX);
+    }
+
+    private File[] listFiles() {
+        File[] files = groupsDir.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)
+                && generationOf(name) >= 0);
+        return files != null ? files : new File[0];
+    }
+
+    private long newestAtOrBelow(long journalGeneration) {
+        long newest = -1;
+        for (File file : listFiles()) {
+            long generation = generationOf(file);
+            if (generation <= journalGeneration) newest = Math.max(newest, generation);
+        }
+        return newest;
+    }
+
+    private static long generationOf(File file) {
+        return generationOf(file.getName());
+    }
+
+    private static long generationOf(String fileName) {
+        try {
+            return Long.parseLong(fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeGroups(DataOutputStream out, List<Snapshot> groups) throws IOException {
+        out.writeInt(groups.size());
+        for (Snapshot group : groups) {
+            out.writeUTF(group.name);
+            writeTotals(out, group);
+        }
+    }
+
+    private static void readGroups(DataInputStream in, Map<String, Totals> groups) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            groups.put(name.toLowerCase(), readTotals(in, name));
+        }
+    }
+
+    private static void writeTotals(DataOutputStream out, Snapshot totals) throws IOException {
+        out.writeInt(totals.siegesAttacked);
+        out.writeInt(totals.siegesDefended);
+        out.writeInt(totals.wins);
+        out.writeInt(totals.losses);
+        out.writeInt(totals.kills);
+        out.writeInt(totals.deaths);
+        out.writeInt(totals.assists);
+        out.writeDouble(totals.damage);
+        out.writeDouble(totals.captureTime);
+    }
+
+    private static Totals readTotals(DataInputStream in, String name) throws IOException {
+        Totals totals = new Totals(name);
+        totals.addSieges(in.readInt(), in.readInt());
+        totals.addResult(in.readInt(), in.readInt());
+        totals.add(in.readInt(), in.readInt(), in.readInt(), in.readDouble(), in.readDouble());
+        return totals;
+    }
+
+    private static Totals copyOf(Snapshot snapshot) {
+        Totals totals = new Totals(snapshot.name);
+        totals.addSieges(snapshot.siegesAttacked, snapshot.siegesDefended);
+        totals.addResult(snapshot.wins, snapshot.losses);
+        totals.add(snapshot.kills, snapshot.deaths, snapshot.assists, snapshot.damage, snapshot.captureTime);
+        return totals;
+    }
+
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        out.writeUTF(name != null ? name : "");
+    }
+
+    private static String readName(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        return name.isEmpty() ? null : name;
+    }
+
+    // --- Gauges ---
+    public int getTownCount() { return towns.size(); }
+    public int getNationCount() { return nations.size(); }
+    public int getTrackedSiegeCount() { return sieges.size(); }
+}
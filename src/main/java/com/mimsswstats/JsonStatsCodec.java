@@ -0,0 +1,328 @@
+package com.mimsswstats;
+
+import com.gmail.goosius.siegewar.enums.SiegeSide;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * The original human-readable stats.json layout: objects keyed by UUID / siege ID strings.
+ * Decoding is streamed token by token so peak memory stays close to the size of the live data.
+ */
+public class JsonStatsCodec implements StatsCodec {
+    private final Logger logger;
+
+    public JsonStatsCodec(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public String getName() { return "json"; }
+
+    @Override
+    public String getExtension() { return ".json"; }
+
+    // --- Encoding ---
+
+    @Override
+    public void encode(StatsSnapshot snapshot, long segmentSequence, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        toJson(snapshot, segmentSequence).writeJSONString(writer);
+        writer.flush();
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject toJson(StatsSnapshot snapshot, long sequence) {
+        JSONObject root = new JSONObject();
+        root.put("segmentSequence", sequence);
+        root.put("full", snapshot.isFull());
+        root.put("journalGeneration", snapshot.getJournalGeneration());
+
+        JSONObject playersJson = new JSONObject();
+        for (StatsSnapshot.PlayerRecord record : snapshot.getPlayers()) {
+            JSONObject pData = new JSONObject();
+            pData.put("lastKnownName", record.lastKnownName);
+            pData.put("totalKills", record.kills);
+            pData.put("totalDeaths", record.deaths);
+            pData.put("totalAssists", record.assists);
+            pData.put("totalDamage", record.damage);
+            pData.put("totalCaptureTime", record.captureTime);
+            pData.put("totalSiegesParticipated", record.siegesParticipated);
+            pData.put("totalWins", record.wins);
+            pData.put("totalLosses", record.losses);
+            JSONArray participations = new JSONArray();
+            participations.addAll(record.siegeParticipations);
+            pData.put("siegeParticipations", participations);
+            playersJson.put(record.uuid.toString(), pData);
+        }
+        root.put("playerStats", playersJson);
+
+        JSONObject counters = new JSONObject();
+        counters.putAll(snapshot.getTownSiegeCounter());
+        root.put("townSiegeCounter", counters);
+
+        JSONObject activeS = new JSONObject();
+        snapshot.getActiveSieges().forEach(record -> activeS.put(record.siegeId, siegeToJson(record)));
+        root.put("activeSieges", activeS);
+
+        JSONObject completedS = new JSONObject();
+        snapshot.getCompletedSieges().forEach(record -> completedS.put(record.siegeId, siegeToJson(record)));
+        root.put("completedSieges", completedS);
+
+        if (!snapshot.getRemovedSiegeIds().isEmpty()) {
+            JSONArray removed = new JSONArray();
+            removed.addAll(snapshot.getRemovedSiegeIds());
+            root.put("removedSieges", removed);
+        }
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject siegeToJson(StatsSnapshot.SiegeRecord record) {
+        JSONObject sData = new JSONObject();
+        sData.put("townName", record.townName);
+        sData.put("siegeNumber", record.siegeNumber);
+        sData.put("siegeId", record.siegeId);
+        sData.put("startTimeMillis", record.startTimeMillis);
+        sData.put("endTimeMillis", record.endTimeMillis);
+        sData.put("isActive", record.active);
+        sData.put("attackersWon", record.attackersWon);
+        sData.put("defendersWon", record.defendersWon);
+
+        JSONObject participants = new JSONObject();
+        record.participants.forEach((uuid, metrics) -> {
+            JSONObject mData = new JSONObject();
+            mData.put("kills", metrics.kills);
+            mData.put("deaths", metrics.deaths);
+            mData.put("assists", metrics.assists);
+            mData.put("damage", metrics.damage);
+            mData.put("controlTime", metrics.controlTime);
+            mData.put("side", metrics.side.name());
+            participants.put(uuid.toString(), mData);
+        });
+        sData.put("participantMetrics", participants);
+        return sData;
+    }
+
+    // --- Decoding ---
+
+    @Override
+    public long decode(InputStream input, Sink sink) throws IOException {
+        long sequence = 0;
+        JsonReader in = new JsonReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+        try {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "playerStats":
+                        readPlayers(in, sink);
+                        break;
+                    case "townSiegeCounter":
+                        readTownSiegeCounter(in, sink);
+                        break;
+                    case "activeSieges":
+                    case "completedSieges":
+                        readSieges(in, sink);
+                        break;
+                    case "removedSieges":
+                        in.beginArray();
+                        while (in.hasNext()) sink.removedSiege(in.nextString());
+                        in.endArray();
+                        break;
+                    case "journalGeneration":
+                        sink.journalGeneration(in.nextLong());
+                        break;
+                    case "segmentSequence":
+                        sequence = in.nextLong();
+                        break;
+                    default:
+                        in.skipValue(); // "full" and anything from newer versions
+                }
+            }
+            in.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed stats JSON: " + e.getMessage(), e);
+        }
+        return sequence;
+    }
+
+    private void readPlayers(JsonReader in, Sink sink) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String uuidString = in.nextName();
+            UUID playerUUID;
+            try {
+                playerUUID = UUID.fromString(uuidString);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping invalid UUID in playerStats key: " + uuidString + ". Error: " + e.getMessage());
+                in.skipValue();
+                continue;
+            }
+
+            PlayerStats stats = new PlayerStats(playerUUID, uuidString);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "lastKnownName":
+                        String name = nextStringOrNull(in);
+                        if (name != null) stats.updateName(name);
+                        break;
+                    case "totalKills": stats.setTotalKills(in.nextInt()); break;
+                    case "totalDeaths": stats.setTotalDeaths(in.nextInt()); break;
+                    case "totalAssists": stats.setTotalAssists(in.nextInt()); break;
+                    case "totalDamage": stats.setTotalDamage(in.nextDouble()); break;
+                    case "totalCaptureTime": stats.setTotalCaptureTime(in.nextDouble()); break;
+                    case "totalWins": stats.setTotalWins(in.nextInt()); break;
+                    case "totalLosses": stats.setTotalLosses(in.nextInt()); break;
+                    case "totalSiegesParticipated": stats.setTotalSiegesParticipated(in.nextInt()); break;
+                    case "siegeParticipations":
+                        List<String> siegeIds = new ArrayList<>();
+                        in.beginArray();
+                        while (in.hasNext()) siegeIds.add(in.nextString());
+                        in.endArray();
+                        stats.setSiegeParticipations(siegeIds);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            sink.player(stats);
+        }
+        in.endObject();
+    }
+
+    private void readTownSiegeCounter(JsonReader in, Sink sink) throws IOException {
+        Map<String, Integer> counters = new HashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String town = in.nextName();
+            if (in.peek() == JsonToken.NUMBER) {
+                counters.put(town, in.nextInt());
+            } else {
+                logger.warning("Skipping invalid townSiegeCounter entry for " + town);
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        sink.townSiegeCounters(counters);
+    }
+
+    private void readSieges(JsonReader in, Sink sink) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String siegeId = in.nextName();
+            SiegeStats stats = readSiege(in, siegeId);
+            if (stats != null) sink.siege(stats);
+        }
+        in.endObject();
+    }
+
+    private SiegeStats readSiege(JsonReader in, String siegeId) throws IOException {
+        String townName = null;
+        int siegeNumber = 0;
+        long startTime = 0;
+        long endTime = -1;
+        boolean active = true;
+        boolean attackersWon = false;
+        boolean defendersWon = false;
+        Map<UUID, SiegeStats.ParticipantMetrics> participants = new HashMap<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "townName": townName = nextStringOrNull(in); break;
+                case "siegeNumber": siegeNumber = in.nextInt(); break;
+                case "startTimeMillis": startTime = in.nextLong(); break;
+                case "endTimeMillis": endTime = in.nextLong(); break;
+                case "isActive": active = in.nextBoolean(); break;
+                case "attackersWon": attackersWon = in.nextBoolean(); break;
+                case "defendersWon": defendersWon = in.nextBoolean(); break;
+                case "participantMetrics":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String uuidString = in.nextName();
+                        SiegeStats.ParticipantMetrics metrics = readParticipant(in);
+                        try {
+                            participants.put(UUID.fromString(uuidString), metrics);
+                        } catch (IllegalArgumentException e) {
+                            logger.warning("Skipping invalid participant UUID " + uuidString + " in siege " + siegeId);
+                        }
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue(); // "siegeId" duplicates the key
+            }
+        }
+        in.endObject();
+
+        if (townName == null) {
+            logger.warning("Skipping siege " + siegeId + " with no town name.");
+            return null;
+        }
+        SiegeStats stats = new SiegeStats(townName, siegeNumber, siegeId);
+        stats.setStartTime(startTime);
+        stats.setEndTime(endTime);
+        stats.setActive(active);
+        stats.setAttackersWon(attackersWon);
+        stats.setDefendersWon(defendersWon);
+        stats.getParticipantMetrics().putAll(participants);
+        return stats;
+    }
+
+    private SiegeStats.ParticipantMetrics readParticipant(JsonReader in) throws IOException {
+        int kills = 0, deaths = 0, assists = 0;
+        double damage = 0.0, controlTime = 0.0;
+        SiegeSide side = SiegeSide.NOBODY;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "kills": kills = in.nextInt(); break;
+                case "deaths": deaths = in.nextInt(); break;
+                case "assists": assists = in.nextInt(); break;
+                case "damage": damage = in.nextDouble(); break;
+                case "controlTime": controlTime = in.nextDouble(); break;
+                case "side":
+                    String sideName = nextStringOrNull(in);
+                    try {
+                        if (sideName != null) side = SiegeSide.valueOf(sideName);
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Unknown siege side '" + sideName + "' in stats file, using NOBODY.");
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        SiegeStats.ParticipantMetrics metrics = new SiegeStats.ParticipantMetrics();
+        metrics.restore(kills, deaths, damage, controlTime, assists, side);
+        return metrics;
+    }
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
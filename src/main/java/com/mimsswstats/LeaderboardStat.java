@@ -0,0 +1,91 @@
+package com.mimsswstats;
+
+import java.util.Comparator;
+
+/** The player totals that /ss top can rank by. */
+public enum LeaderboardStat {
+    KILLS("Kills"),
+    DAMAGE("Damage"),
+    DEATHS("Deaths"),
+    ASSISTS("Assists"),
+    KDA("KDA"),
+    CAPTIME("CapTime"),
+    WINS("Wins");
+
+    private final String displayName;
+
+    LeaderboardStat(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() { return displayName; }
+
+    /** @return the stat for a command argument ("dmg" is accepted for damage), or null if unknown. */
+    public static LeaderboardStat fromName(String name) {
+        switch (name.toLowerCase()) {
+            case "kills": return KILLS;
+            case "damage": case "dmg": return DAMAGE;
+            case "deaths": return DEATHS;
+            case "assists": return ASSISTS;
+            case "kda": return KDA;
+            case "captime": return CAPTIME;
+            case "wins": return WINS;
+            default: return null;
+        }
+    }
+
+    public double getValue(PlayerStats stats) {
+        switch (this) {
+            case KILLS: return stats.getTotalKills();
+            case DAMAGE: return stats.getTotalDamage();
+            case DEATHS: return stats.getTotalDeaths();
+            case ASSISTS: return stats.getTotalAssists();
+            case KDA: return stats.getKdaRatio();
+            case CAPTIME: return stats.getTotalCaptureTime();
+            case WINS: return stats.getTotalWins();
+            default: throw new IllegalStateException("Unhandled stat " + this);
+        }
+    }
+
+    /** The same stat over a copy of a player's totals, such as an archived season's. */
+    public double getValue(PlayerStats.Snapshot totals) {
+        switch (this) {
+            case KILLS: return totals.kills;
+            case DAMAGE: return totals.damage;
+            case DEATHS: return totals.deaths;
+            case ASSISTS: return totals.assists;
+            case KDA: return totals.getKdaRatio();
+            case CAPTIME: return totals.captureTime;
+            case WINS: return totals.wins;
+            default: throw new IllegalStateException("Unhandled stat " + this);
+        }
+    }
+
+    /** The same stat over a time window's totals. */
+    double getValue(StatWindows.Totals totals) {
+        switch (this) {
+            case KILLS: return totals.kills;
+            case DAMAGE: return totals.damage;
+            case DEATHS: return totals.deaths;
+            case ASSISTS: return totals.assists;
+            case KDA: return PlayerStats.Snapshot.kda(totals.kills, totals.assists, totals.deaths);
+            case CAPTIME: return totals.captureTime;
+            case WINS: return totals.wins;
+            default: throw new IllegalStateException("Unhandled stat " + this);
+        }
+    }
+
+    /** Highest value first. */
+    public Comparator<PlayerStats> descending() {
+        return Comparator.<PlayerStats>comparingDouble(this::getValue).reversed();
+    }
+
+    public String format(double value) {
+        switch (this) {
+            case KILLS: case DEATHS: case ASSISTS: case WINS: return String.valueOf((long) value);
+            case DAMAGE: return String.format("%.1f", value);
+            case CAPTIME: return String.format("%.2f", value) + "m";
+            default: return String.format("%.2f", value);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.mimsswstats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Player rankings for every {@link LeaderboardStat}, kept in order as totals change so /ss top reads the first k
+ * entries instead of sorting every player. Each stat has an order-statistic treap (a randomized balanced tree whose
+ * nodes count their subtree): an update is O(log n), a top-k read O(log n + k), and rank and select are O(log n).
+ * <p>
+ * Updated from {@link SiegeStatsManager#markPlayerDirty}, which every change to a player's totals goes through, and
+ * rebuilt after each load. Only players with at least one siege are ranked, as before. Ties are ordered by UUID so
+ * the order is stable. Reads may come from any thread; each board is locked for one operation at a time.
+ * <p>
+ * {@link StatWindows} keeps one more instance per time window, ranked by that window's totals.
+ */
+public class Leaderboards {
+    private final Board[] boards = new Board[LeaderboardStat.values().length];
+
+    public Leaderboards() {
+        for (LeaderboardStat stat : LeaderboardStat.values()) boards[stat.ordinal()] = new Board();
+    }
+
+    /** Re-ranks one player on every board whose value changed. Main thread. */
+    public void update(PlayerStats stats) {
+        boolean ranked = stats.getTotalSiegesParticipated() > 0;
+        for (LeaderboardStat stat : LeaderboardStat.values()) {
+            if (ranked) {
+                boards[stat.ordinal()].put(stats, stat.getValue(stats));
+            } else {
+                boards[stat.ordinal()].remove(stats.getPlayerUUID());
+            }
+        }
+    }
+
+    /** Ranks one player by a time window's totals instead of their all-time ones; see {@link StatWindows}. */
+    void update(PlayerStats stats, StatWindows.Totals totals) {
+        for (LeaderboardStat stat : LeaderboardStat.values()) {
+            boards[stat.ordinal()].put(stats, stat.getValue(totals));
+        }
+    }
+
+    void remove(UUID playerUUID) {
+        for (Board board : boards) board.remove(playerUUID);
+    }
+
+    /** Replaces every board with the given players: one sort per stat, then a linear-time build. */
+    public void rebuild(Collection<PlayerStats> players) {
+        List<PlayerStats> ranked = new ArrayList<>();
+        for (PlayerStats stats : players) {
+            if (stats.getTotalSiegesParticipated() > 0) ranked.add(stats);
+        }
+        for (LeaderboardStat stat : LeaderboardStat.values()) {
+            boards[stat.ordinal()].load(ranked, stat);
+        }
+    }
+
+    public void clear() {
+        for (Board board : boards) board.clear();
+    }
+
+    /** @return up to limit players, best first. */
+    public List<StatsQueries.RankedPlayer> top(LeaderboardStat stat, int limit) {
+        return boards[stat.ordinal()].top(limit);
+    }
+
+    public int size(LeaderboardStat stat) { return boards[stat.ordinal()].size(); }
+
+    /**
+     * @return the player's standing on one board with up to {@code neighbours} rows either side of them, or null if
+     * they are not ranked. O((neighbours + 1) log n).
+     */
+    public Standing standing(LeaderboardStat stat, UUID playerUUID, int neighbours) {
+        return boards[stat.ordinal()].standing(stat, playerUUID, neighbours);
+    }
+
+    /** One leaderboard row with its rank. */
+    public static final class Row {
+        public final int rank; // 1 + players strictly ahead, so tied players share a rank
+        public final UUID playerUUID;
+        public final String name;
+        public final double value;
+
+        Row(int rank, PlayerStats stats, double value) {
+            this.rank = rank;
+            this.playerUUID = stats.getPlayerUUID();
+            this.name = stats.getLastKnownName();
+            this.value = value;
+        }
+    }
+
+    /** Where a player stands on one board, read under a single lock so the numbers agree. */
+    public static final class Standing {
+        public final LeaderboardStat stat;
+        public final Row player;
+        public final int total;         // Ranked players on this board
+        public final double percentile; // Share of ranked players strictly behind this one, 0-100
+        public final List<Row> rows;    // The player and their neighbours, best first
+
+        Standing(LeaderboardStat stat, Row player, int total, List<Row> rows) {
+            this.stat = stat;
+            this.player = player;
+            this.total = total;
+            this.percentile = total > 0 ? 100.0 * (total - player.rank) / total : 0;
+            this.rows = rows;
+        }
+    }
+
+    private static final class Node {
+        final PlayerStats stats;
+        final double value;
+        final int priority;
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(PlayerStats stats, double value, int priority) {
+            this.stats = stats;
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    /** One stat's treap, plus each ranked player's current node so an update can find and remove it. */
+    private static final class Board {
+        private final Map<UUID, Node> nodes = new HashMap<>();
+        private Node root;
+        private int seed = 0x2545F491;
+
+        synchronized void put(PlayerStats stats, double value) {
+            UUID playerUUID = stats.getPlayerUUID();
+            Node current = nodes.get(playerUUID);
+            if (current != null) {
+                if (Double.compare(current.value, value) == 0) return; // Unchanged on this board
+                root = remove(root, current);
+            }
+            Node node = new Node(stats, value, nextPriority());
+            root = insert(root, node);
+            nodes.put(playerUUID, node);
+        }
+
+        synchronized void remove(UUID playerUUID) {
+            Node current = nodes.remove(playerUUID);
+            if (current != null) root = remove(root, current);
+        }
+
+        /** Builds the treap from scratch: sort once, then a stack-based Cartesian tree build over random priorities. */
+        synchronized void load(List<PlayerStats> players, LeaderboardStat stat) {
+            Node[] sorted = new Node[players.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                PlayerStats stats = players.get(i);
+                sorted[i] = new Node(stats, stat.getValue(stats), nextPriority());
+            }
+            Arrays.sort(sorted, Board::compare);
+            nodes.clear();
+            ArrayDeque<Node> rightSpine = new ArrayDeque<>();
+            for (Node node : sorted) {
+                nodes.put(node.stats.getPlayerUUID(), node);
+                Node lastPopped = null;
+                while (!rightSpine.isEmpty() && rightSpine.peek().priority < node.priority) {
+                    lastPopped = rightSpine.pop();
+                    resize(lastPopped);
+                }
+                node.left = lastPopped;
+                if (!rightSpine.isEmpty()) rightSpine.peek().right = node;
+                rightSpine.push(node);
+            }
+            Node top = null;
+            while (!rightSpine.isEmpty()) {
+                top = rightSpine.pop();
+                resize(top);
+            }
+            root = top;
+        }
+
+        synchronized void clear() {
+            nodes.clear();
+            root = null;
+        }
+
+        synchronized int size() { return nodes.size(); }
+
+        synchronized List<StatsQueries.RankedPlayer> top(int limit) {
+            List<StatsQueries.RankedPlayer> result = new ArrayList<>(Math.min(limit, nodes.size()));
+            ArrayDeque<Node> path = new ArrayDeque<>();
+            Node node = root;
+            while ((node != null || !path.isEmpty()) && result.size() < limit) {
+                while (node != null) {
+                    path.push(node);
+                    node = node.left;
+                }
+                node = path.pop();
+                result.add(new StatsQueries.RankedPlayer(node.stats.getPlayerUUID(), node.stats.getLastKnownName(), node.value));
+                node = node.right;
+            }
+            return result;
+        }
+
+        synchronized Standing standing(LeaderboardStat stat, UUID playerUUID, int neighbours) {
+            Node node = nodes.get(playerUUID);
+            if (node == null) return null;
+            int position = positionOf(node);
+            int first = Math.max(0, position - neighbours);
+            int last = Math.min(nodes.size() - 1, position + neighbours);
+            List<Row> rows = new ArrayList<>(last - first + 1);
+            Row player = null;
+            for (int i = first; i <= last; i++) {
+                Node row = select(i);
+                Row ranked = new Row(countAhead(row.value) + 1, row.stats, row.value);
+                if (row == node) player = ranked;
+                rows.add(ranked);
+            }
+            return new Standing(stat, player, nodes.size(), rows);
+        }
+
+        /** @return the node's 0-based position in board order. */
+        private int positionOf(Node node) {
+            int position = 0;
+            Node current = root;
+            while (current != null) {
+                int order = compare(node, current);
+                if (order == 0) return position + size(current.left);
+                if (order < 0) {
+                    current = current.left;
+                } else {
+                    position += size(current.left) + 1;
+                    current = current.right;
+                }
+            }
+            throw new IllegalStateException("Ranked node missing from its board");
+        }
+
+        /** @return the node at a 0-based position in board order. */
+        private Node select(int position) {
+            Node current = root;
+            while (true) {
+                int leftSize = size(current.left);
+                if (position < leftSize) {
+                    current = current.left;
+                } else if (position == leftSize) {
+                    return current;
+                } else {
+                    position -= leftSize + 1;
+                    current = current.right;
+                }
+            }
+        }
+
+        /** @return how many ranked players have a strictly higher value. */
+        private int countAhead(double value) {
+            int count = 0;
+            Node current = root;
+            while (current != null) {
+                if (Double.compare(current.value, value) > 0) { // It and everything before it are ahead
+                    count += size(current.left) + 1;
+                    current = current.right;
+                } else {
+                    current = current.left;
+                }
+            }
+            return count;
+        }
+
+        private int nextPriority() {
+            seed ^= seed << 13; // xorshift
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            return seed;
+        }
+
+        /** Best first: higher value, then lower UUID. */
+        private static int compare(Node a, Node b) {
+            int byValue = Double.compare(b.value, a.value);
+            return byValue != 0 ? byValue : a.stats.getPlayerUUID().compareTo(b.stats.getPlayerUUID());
+        }
+
+        private static int size(Node node) { return node != null ? node.size : 0; }
+
+        private static void resize(Node node) { node.size = 1 + size(node.left) + size(node.right); }
+
+        private static Node insert(Node root, Node node) {
+            if (root == null) return node;
+            if (compare(node, root) < 0) {
+                root.left = insert(root.left, node);
+                if (root.left.priority > root.priority) root = rotateRight(root);
+            } else {
+                root.right = insert(root.right, node);
+                if (root.right.priority > root.priority) root = rotateLeft(root);
+            }
+            resize(root);
+            return root;
+        }
+
+        private static Node remove(Node root, Node node) {
+            if (root == null) return null;
+            if (root == node) return merge(root.left, root.right);
+            if (compare(node, root) < 0) {
+                root.left = remove(root.left, node);
+            } else {
+                root.right = remove(root.right, node);
+            }
+            resize(root);
+            return root;
+        }
+
+        /** Joins two treaps where everything in a ranks before everything in b. */
+        private static Node merge(Node a, Node b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            if (a.priority > b.priority) {
+                a.right = merge(a.right, b);
+                resize(a);
+                return a;
+            }
+            b.left = merge(a, b.left);
+            resize(b);
+            return b;
+        }
+
+        private static Node rotateRight(Node node) {
+            Node pivot = node.left;
+            node.left = pivot.right;
+            pivot.right = node;
+            resize(node);
+            resize(pivot);
+            return pivot;
+        }
+
+        private static Node rotateLeft(Node node) {
+            Node pivot = node.right;
+            node.right = pivot.left;
+            pivot.left = node;
+            resize(node);
+            resize(pivot);
+            return pivot;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.mimsswstats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/** {@link StatsQueries} for the file formats: scans the live player map and the archive's resident summaries. */
+public class MemoryStatsQueries implements StatsQueries {
+    private static final Comparator<SiegeArchive.Summary> NEWEST_FIRST =
+            Comparator.comparingLong((SiegeArchive.Summary s) -> s.endTimeMillis).reversed();
+
+    private final SiegeStatsManager statsManager;
+
+    public MemoryStatsQueries(SiegeStatsManager statsManager) {
+        this.statsManager = statsManager;
+    }
+
+    @Override
+    public List<RankedPlayer> topPlayers(LeaderboardStat stat, int limit) {
+        return statsManager.getLeaderboards().top(stat, limit);
+    }
+
+    @Override
+    public List<SiegeArchive.Summary> playerSiegeHistory(UUID playerUUID, int limit) {
+        PlayerStats stats = statsManager.getAllPlayerStats().get(playerUUID);
+        if (stats == null) return new ArrayList<>();
+        SiegeArchive archive = statsManager.getSiegeArchive();
+        return stats.getSiegeParticipations().stream()
+                .map(archive::getSummary)
+                .filter(summary -> summary != null) // Still active
+                .sorted(NEWEST_FIRST)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<SiegeArchive.Summary> townSiegeHistory(String townName, int limit) {
+        SiegeArchive archive = statsManager.getSiegeArchive();
+        return statsManager.getSiegeIndex().getTownSieges(townName).values().stream() // Newest siege number first
+                .map(archive::getSummary)
+                .filter(summary -> summary != null) // Still active
+                .sorted(NEWEST_FIRST)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isBlocking() { return false; }
+}
@@ -0,0 +1,66 @@
+package com.mimsswstats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Case-insensitive player name to UUID lookup with prefix completion, kept in a sorted map so a prefix query is a
+ * range scan over the matching names only (O(log n + k)) however many players are indexed.
+ * <p>
+ * Maintained by {@link PlayerStats#updateName} for every record the manager holds. Where two records claim the same
+ * name (one player took a name another gave up), the one indexed last wins. Safe to read from any thread.
+ */
+public class NameIndex {
+    private final ConcurrentSkipListMap<String, Entry> byName = new ConcurrentSkipListMap<>();
+
+    private static final class Entry {
+        final String name; // As last seen, for display
+        final UUID playerUUID;
+
+        Entry(String name, UUID playerUUID) {
+            this.name = name;
+            this.playerUUID = playerUUID;
+        }
+    }
+
+    public void put(String name, UUID playerUUID) {
+        if (name != null) byName.put(name.toLowerCase(), new Entry(name, playerUUID));
+    }
+
+    /** Moves a player from their previous name to their current one. */
+    public void rename(String previousName, String name, UUID playerUUID) {
+        if (previousName != null) {
+            byName.computeIfPresent(previousName.toLowerCase(), (key, entry) -> entry.playerUUID.equals(playerUUID) ? null : entry);
+        }
+        put(name, playerUUID);
+    }
+
+    /** @return the UUID indexed under the name, ignoring case, or null. */
+    public UUID get(String name) {
+        Entry entry = byName.get(name.toLowerCase());
+        return entry != null ? entry.playerUUID : null;
+    }
+
+    /** @return up to limit indexed names starting with the prefix (ignoring case), in alphabetical order. */
+    public List<String> complete(String prefix, int limit) {
+        List<String> names = new ArrayList<>();
+        for (Entry entry : withPrefix(byName, prefix.toLowerCase()).values()) {
+            if (names.size() >= limit) break;
+            names.add(entry.name);
+        }
+        return names;
+    }
+
+    /** @return the entries of a map keyed by lowercase names whose key starts with the (lowercase) prefix. */
+    static <V> NavigableMap<String, V> withPrefix(NavigableMap<String, V> map, String prefix) {
+        if (prefix.isEmpty()) return Collections.unmodifiableNavigableMap(map);
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    public void clear() { byName.clear(); }
+    public int size() { return byName.size(); }
+}
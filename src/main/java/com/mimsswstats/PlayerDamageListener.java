@@ -1,11 +1,9 @@
 package com.mimsswstats;
 
-import com.gmail.goosius.siegewar.SiegeController;
 import com.gmail.goosius.siegewar.enums.SiegeSide;
 // Removed BannerControlSessionStartedEvent import (not used here)
 import com.gmail.goosius.siegewar.objects.BattleSession;
 import com.gmail.goosius.siegewar.objects.Siege;
-import com.gmail.goosius.siegewar.utils.SiegeWarDistanceUtil;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile; // Keep Projectile import
 import org.bukkit.event.EventHandler;
@@ -17,21 +15,11 @@ import org.bukkit.projectiles.ProjectileSource; // Keep ProjectileSource import
 
 public class PlayerDamageListener implements Listener {
     private final SiegeStatsPlugin plugin;
+    private final StatsLog log;
 
     public PlayerDamageListener(SiegeStatsPlugin plugin) {
         this.plugin = plugin;
-    }
-
-    private static Siege findNearbyActiveSiegeWherePlayerIsParticipant(Player player) {
-        // ... (existing helper method) ...
-        for (Siege candidateSiege : SiegeController.getSieges()) {
-            if (candidateSiege != null && candidateSiege.getStatus().isActive() &&
-                    SiegeSide.getPlayerSiegeSide(candidateSiege, player) != SiegeSide.NOBODY &&
-                    SiegeWarDistanceUtil.isInSiegeZone(player, candidateSiege)) {
-                return candidateSiege;
-            }
-        }
-        return null;
+        this.log = plugin.getStatsLog();
     }
 
     // Listen with MONITOR priority to get final damage value
@@ -62,38 +50,28 @@ public class PlayerDamageListener implements Listener {
         }
 
         // Find siege based on the damaged player
-        Siege siege = findNearbyActiveSiegeWherePlayerIsParticipant(damaged);
+        Siege siege = plugin.getSiegeZoneIndex().findActiveSiegeWithParticipant(damaged);
 
         if (siege != null) {
-            String siegeId = plugin.getSiegeListener().getActiveSiegeId(siege);
-            if (siegeId == null) {
-                // Try fallback if ID missing (race condition)
-                SiegeStats completedStats = plugin.getStatsManager().findCompletedSiegeStats(siege);
-                if (completedStats != null) siegeId = completedStats.getSiegeId();
-                else {
-                    plugin.getLogger().warning("[PlayerDamageListener] Damage involving " + damaged.getName() + " in non-tracked siege? Town: " + siege.getTown().getName());
-                    return;
-                }
+            SiegeHandle handle = plugin.getSiegeListener().getActiveSiegeHandle(siege);
+            if (handle == null) {
+                log.warn(StatsLog.Category.COMBAT, "[PlayerDamageListener] Damage involving " + damaged.getName() + " in non-tracked siege? Town: " + siege.getTown().getName());
+                return;
             }
 
             // Check sides
-            SiegeSide damagerSide = SiegeSide.getPlayerSiegeSide(siege, damager);
-            SiegeSide damagedSide = SiegeSide.getPlayerSiegeSide(siege, damaged);
+            SiegeSide damagerSide = plugin.getSideCache().getSide(siege, damager);
+            SiegeSide damagedSide = plugin.getSideCache().getSide(siege, damaged);
 
             // Only record damage and track damagers if they are opponents in the siege
             if (damagerSide != SiegeSide.NOBODY && damagedSide != SiegeSide.NOBODY && damagerSide != damagedSide) {
                 double finalDamage = event.getFinalDamage();
-                plugin.getLogger().fine("[DEBUG] Recording damage in siege " + siegeId + ": " + damager.getName() +
+                if (log.isTrace(StatsLog.Category.COMBAT)) log.trace(StatsLog.Category.COMBAT, "Recording damage in siege " + handle.getSiegeId() + ": " + damager.getName() +
                         " dealt " + finalDamage + " damage to " + damaged.getName());
 
-                // Record the damage action using UUIDs
-                plugin.getStatsManager().recordSiegeAction(siegeId, damager.getUniqueId(), 0, 0, finalDamage, 0.0, 0); // 0 assists here
-
-
-
-                // Ensure both players are marked as participants (manager handles duplicates)
-                plugin.getStatsManager().addSiegeParticipant(siege, damaged);
-                plugin.getStatsManager().addSiegeParticipant(siege, damager);
+                plugin.getStatsManager().addRecentDamager(damaged.getUniqueId(), damager.getUniqueId(), finalDamage); // For assists
+                // Buffered and applied once per (siege, attacker) next tick; also marks both as participants
+                plugin.getDamageBatcher().add(handle, damager, damaged, finalDamage);
             }
         }
     }
@@ -1,43 +1,26 @@
 package com.mimsswstats;
 
-import com.gmail.goosius.siegewar.SiegeController;
 import com.gmail.goosius.siegewar.enums.SiegeSide;
 import com.gmail.goosius.siegewar.objects.BattleSession;
 import com.gmail.goosius.siegewar.objects.Siege;
-import com.gmail.goosius.siegewar.utils.SiegeWarDistanceUtil;
 import com.palmergames.bukkit.towny.TownyUniverse;
-import org.bukkit.Bukkit; // Import Bukkit
-import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 
-import java.util.Map; // Import Map
-import java.util.UUID; // Import UUID
-
 
 public class PlayerDeathListener implements Listener {
     private final SiegeStatsPlugin plugin;
+    private final StatsLog log;
 
     public PlayerDeathListener(SiegeStatsPlugin plugin) {
         this.plugin = plugin;
+        this.log = plugin.getStatsLog();
     }
 
-    private static Siege findNearbyActiveSiegeWherePlayerIsParticipant(Player player) {
-        // ... (existing helper method - ensure null safe) ...
-        for (Siege candidateSiege : SiegeController.getSieges()) {
-            if (candidateSiege != null && candidateSiege.getStatus().isActive() &&
-                    player != null && // Add null check for player
-                    SiegeSide.getPlayerSiegeSide(candidateSiege, player) != SiegeSide.NOBODY &&
-                    SiegeWarDistanceUtil.isInSiegeZone(player, candidateSiege)) {
-                return candidateSiege;
-            }
-        }
-        return null;
-    }
-
-
     @EventHandler
     public void onPlayerDeath(PlayerDeathEvent event) {
         Player victim = event.getEntity();
@@ -47,81 +30,55 @@ public class PlayerDeathListener implements Listener {
             return;
         }
 
-        Siege siege = findNearbyActiveSiegeWherePlayerIsParticipant(victim);
+        Siege siege = plugin.getSiegeZoneIndex().findActiveSiegeWithParticipant(victim);
 
         if (siege != null) {
-            String siegeId = plugin.getSiegeListener().getActiveSiegeId(siege);
-            if (siegeId == null) {
-                SiegeStats completedStats = plugin.getStatsManager().findCompletedSiegeStats(siege);
-                if (completedStats != null) siegeId = completedStats.getSiegeId();
-                else {
-                    plugin.getLogger().warning("[PlayerDeathListener] Death for " + victim.getName() + " in non-tracked siege? Town: " + siege.getTown().getName());
-                    return;
-                }
+            SiegeHandle handle = plugin.getSiegeListener().getActiveSiegeHandle(siege);
+            if (handle == null) {
+                log.warn(StatsLog.Category.COMBAT, "[PlayerDeathListener] Death for " + victim.getName() + " in non-tracked siege? Town: " + siege.getTown().getName());
+                return;
             }
+            String siegeId = handle.getSiegeId();
 
             // --- Record Victim's Death (Always if participating) ---
-            plugin.getStatsManager().addSiegeParticipant(siege, victim); // Ensure participant
-            SiegeSide victimSide = SiegeSide.getPlayerSiegeSide(siege, victim);
+            plugin.getStatsManager().addSiegeParticipant(handle, victim); // Ensure participant
+            SiegeSide victimSide = plugin.getSideCache().getSide(siege, victim);
             if (victimSide != SiegeSide.NOBODY) {
                 String cause = event.getDeathMessage() != null ? event.getDeathMessage() : "Unknown cause";
-                plugin.getLogger().info("[DEBUG] Recording death in siege " + siegeId + ": Victim=" + victim.getName() + ", Side=" + victimSide + ", Cause: " + cause);
-                plugin.getStatsManager().recordSiegeAction(siegeId, victim.getUniqueId(), 0, 1, 0, 0.0, 0); // Record death
+                if (log.isDebug(StatsLog.Category.COMBAT)) log.debug(StatsLog.Category.COMBAT, "Recording death in siege " + siegeId + ": Victim=" + victim.getName() + ", Side=" + victimSide + ", Cause: " + cause);
+                plugin.getStatsManager().recordSiegeAction(handle, victim.getUniqueId(), 0, 1, 0, 0.0, 0); // Record death
             } else {
-                plugin.getLogger().fine("[DEBUG] Player " + victim.getName() + " died near siege " + siegeId + " but was Side.NOBODY. No death recorded.");
+                if (log.isTrace(StatsLog.Category.COMBAT)) log.trace(StatsLog.Category.COMBAT, "Player " + victim.getName() + " died near siege " + siegeId + " but was Side.NOBODY. No death recorded.");
             }
 
             // --- Record Killer's Kill & Potential Assists (Only if valid PvP) ---
             if (killer != null && killer != victim) {
-                plugin.getStatsManager().addSiegeParticipant(siege, killer); // Ensure participant
-                SiegeSide killerSide = SiegeSide.getPlayerSiegeSide(siege, killer);
+                plugin.getStatsManager().addSiegeParticipant(handle, killer); // Ensure participant
+                SiegeSide killerSide = plugin.getSideCache().getSide(siege, killer);
 
                 // Check if valid kill between opponents
                 if (killerSide != SiegeSide.NOBODY && victimSide != SiegeSide.NOBODY && killerSide != victimSide) {
-                    plugin.getLogger().info("[DEBUG] Recording PvP kill in siege " + siegeId + ": Killer=" + killer.getName() + ", Victim=" + victim.getName());
+                    if (log.isDebug(StatsLog.Category.COMBAT)) log.debug(StatsLog.Category.COMBAT, "Recording PvP kill in siege " + siegeId + ": Killer=" + killer.getName() + ", Victim=" + victim.getName());
                     // Record Kill
-                    plugin.getStatsManager().recordSiegeAction(siegeId, killer.getUniqueId(), 1, 0, 0, 0.0, 0);
-
-                    // <<< NEW: Process Assists >>>
-                    long assistTimeThreshold = System.currentTimeMillis() - SiegeStatsManager.ASSIST_WINDOW_MS;
-                    Map<UUID, Long> potentialAssisters = plugin.getStatsManager().getRecentDamagersForAssist(victim.getUniqueId());
-
-                    plugin.getLogger().info("[DEBUG] Checking " + potentialAssisters.size() + " potential assisters for kill on " + victim.getName());
+                    plugin.getStatsManager().recordSiegeAction(handle, killer.getUniqueId(), 1, 0, 0, 0.0, 0);
 
-                    int assistsAwarded = 0;
-                    for (Map.Entry<UUID, Long> entry : potentialAssisters.entrySet()) {
-                        UUID assisterUUID = entry.getKey();
-                        long damageTimestamp = entry.getValue();
-
-                        // Check timestamp and ensure assister is not the killer
-                        if (damageTimestamp >= assistTimeThreshold && !assisterUUID.equals(killer.getUniqueId())) {
-                            // Verify assister is still part of the siege and on the killer's side (or not victim's side)
-                            OfflinePlayer assisterOffline = Bukkit.getOfflinePlayer(assisterUUID);
-                            Player assisterOnline = assisterOffline.getPlayer(); // Check if online
-                            if(assisterOnline != null){
-                                SiegeSide assisterSide = SiegeSide.getPlayerSiegeSide(siege, assisterOnline);
-                                if (assisterSide == killerSide) { // Must be on the same side as the killer
-                                    plugin.getLogger().info("[DEBUG] Awarding assist to " + assisterOffline.getName() + " for kill on " + victim.getName());
-                                    // Record Assist
-                                    plugin.getStatsManager().recordSiegeAction(siegeId, assisterUUID, 0, 0, 0, 0.0, 1);
-                                    assistsAwarded++;
-                                } else {
-                                    plugin.getLogger().fine("[DEBUG] Potential assister " + assisterOffline.getName() + " side ("+assisterSide+") != killer side ("+killerSide+"). No assist.");
-                                }
-                            } else {
-                                plugin.getLogger().fine("[DEBUG] Potential assister " + assisterOffline.getName() + " is offline. Cannot verify side. No assist.");
-                                // Optionally, you could award assist even if offline, but side check is safer.
-                            }
-                        }
-                    }
-                    plugin.getLogger().info("[DEBUG] Awarded " + assistsAwarded + " assists for kill on " + victim.getName());
-                    // Optional: Clear recent damagers for the victim now that they're dead and assists processed
-                    // plugin.getStatsManager().clearRecentDamagers(victim.getUniqueId()); // Need to add this method to manager if desired
+                    // Assists: anyone else whose damage in the assist window is a large enough share of the pool.
+                    // Only opponents of the victim are fed into the tracker, so they are on the killer's side.
+                    EntityDamageEvent killingBlow = victim.getLastDamageCause();
+                    int assistsAwarded = plugin.getStatsManager().processAndRecordAssists(handle, victim.getUniqueId(),
+                            killer.getUniqueId(), killingBlow != null ? killingBlow.getFinalDamage() : 0);
+                    if (log.isDebug(StatsLog.Category.COMBAT)) log.debug(StatsLog.Category.COMBAT, "Awarded " + assistsAwarded + " assists for kill on " + victim.getName());
 
                 } else {
-                    plugin.getLogger().fine("[DEBUG] Kill not recorded for assist check: Killer=" + killer.getName() + "(" + killerSide + "), Victim=" + victim.getName() + "(" + victimSide + ")");
+                    log.trace(StatsLog.Category.COMBAT, () -> "Kill not recorded for assist check: Killer=" + killer.getName() + "(" + killerSide + "), Victim=" + victim.getName() + "(" + victimSide + ")");
                 }
             }
         }
     }
-}
\ No newline at end of file
+
+    // Runs after onPlayerDeath: whatever the outcome, damage taken before this death never counts toward a later one
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void clearRecentDamage(PlayerDeathEvent event) {
+        plugin.getStatsManager().clearRecentDamagers(event.getEntity().getUniqueId());
+    }
+}
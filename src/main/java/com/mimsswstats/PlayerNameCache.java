@@ -0,0 +1,84 @@
+package com.mimsswstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory UUID to name map, so stat recording, commands and the web server never call
+ * {@code Bukkit.getOfflinePlayer(uuid).getName()}, which can hit the usercache or player data on disk.
+ * <p>
+ * Seeded from each {@link PlayerStats#getLastKnownName()} at load and kept current on join and quit. A changed
+ * name is written back to the player's stats, which is how it is persisted. Safe to read from any thread.
+ */
+public class PlayerNameCache implements Listener {
+    private final SiegeStatsPlugin plugin;
+    private final ConcurrentHashMap<UUID, String> names = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PlayerNameCache(SiegeStatsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /** Fills the cache from loaded stats; names of online players (seen live) are kept. */
+    public void seed(Collection<PlayerStats> loaded) {
+        for (PlayerStats stats : loaded) {
+            if (stats.getLastKnownName() != null) names.putIfAbsent(stats.getPlayerUUID(), stats.getLastKnownName());
+        }
+        Collection<? extends Player> online = Bukkit.getOnlinePlayers(); // Populated on /reload
+        for (Player player : online) {
+            names.put(player.getUniqueId(), player.getName());
+        }
+    }
+
+    /** @return the player's name, or null if this server has never seen them. */
+    public String getName(UUID playerUUID) {
+        String name = names.get(playerUUID);
+        if (name != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return name;
+    }
+
+    public String getName(UUID playerUUID, String fallback) {
+        String name = getName(playerUUID);
+        return name != null ? name : fallback;
+    }
+
+    public void put(UUID playerUUID, String name) {
+        if (name != null) names.put(playerUUID, name);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        names.put(player.getUniqueId(), player.getName());
+        // Persist renames through the stats file rather than waiting for the player's next siege action
+        PlayerStats stats = plugin.getStatsManager().getAllPlayerStats().get(player.getUniqueId());
+        if (stats != null && !player.getName().equals(stats.getLastKnownName())) {
+            stats.updateName(player.getName());
+            plugin.getStatsManager().markPlayerDirty(stats);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        names.put(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+    }
+
+    public int size() { return names.size(); }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+}
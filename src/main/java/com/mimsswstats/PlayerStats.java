@@ -1,103 +1,202 @@
 package com.mimsswstats;
 
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 import java.util.UUID; // Import UUID
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * A player's all-time totals. Only the main thread writes them (recording, journal replay and siege deletion); the
+ * counters are striped adders so the web server's threads can read them without locks or torn values, and
+ * {@link #snapshot()} gives a copy whose fields are consistent with each other.
+ */
 public class PlayerStats {
     private final UUID playerUUID; // <<< Use UUID as the identifier
-    private String lastKnownName; // Store for display/logging convenience
+    private volatile String lastKnownName; // Store for display/logging convenience
 
-    private int totalKills;
-    private int totalDeaths;
-    private double totalDamage;
-    private double totalCaptureTime;
-    private int totalSiegesParticipated;
-    private int totalWins;
-    private int totalLosses;
-    private int totalAssists;
+    private final LongAdder totalKills = new LongAdder();
+    private final LongAdder totalDeaths = new LongAdder();
+    private final DoubleAdder totalDamage = new DoubleAdder();
+    private final DoubleAdder totalCaptureTime = new DoubleAdder();
+    private final LongAdder totalSiegesParticipated = new LongAdder();
+    private final LongAdder totalWins = new LongAdder();
+    private final LongAdder totalLosses = new LongAdder();
+    private final LongAdder totalAssists = new LongAdder();
 
     private final Set<String> uniqueSiegeParticipations; // Keep siege IDs as Strings for now
 
+    private boolean dirty; // Changed since the last save; see SiegeStatsManager.markPlayerDirty
+    private NameIndex nameIndex; // Set once the manager holds this record; null while loading
+
     // Constructor now takes UUID and Name
     public PlayerStats(UUID playerUUID, String initialName) {
         this.playerUUID = playerUUID;
         this.lastKnownName = initialName;
-        // ... initialize other stats to 0 ...
-        this.totalKills = 0;
-        this.totalDeaths = 0;
-        this.totalDamage = 0.0;
-        this.totalCaptureTime = 0.0;
-        this.totalSiegesParticipated = 0;
-        this.totalWins = 0;
-        this.totalLosses = 0;
-        this.totalAssists = 0;
-        this.uniqueSiegeParticipations = new HashSet<>();
+        this.uniqueSiegeParticipations = ConcurrentHashMap.newKeySet();
     }
 
     // --- Getters ---
     public UUID getPlayerUUID() { return playerUUID; } // <<< Getter for UUID
 
-    // Update name if needed, e.g., during loading or periodically
-    public void updateName(String name) { this.lastKnownName = name; }
+    // Update name if needed, e.g., during loading or periodically. Keeps the manager's name index in step.
+    public void updateName(String name) {
+        String previous = this.lastKnownName;
+        this.lastKnownName = name;
+        NameIndex index = nameIndex;
+        if (index != null && name != null && !name.equals(previous)) index.rename(previous, name, playerUUID);
+    }
+
+    /** Indexes this record under its current name and keeps it indexed through {@link #updateName}. */
+    void attachNameIndex(NameIndex index) {
+        this.nameIndex = index;
+        index.put(lastKnownName, playerUUID);
+    }
     public String getLastKnownName() { return lastKnownName; } // <<< Getter for Name
 
     // Other getters remain the same...
-    public int getTotalKills() { return totalKills; }
-    public int getTotalDeaths() { return totalDeaths; }
-    public double getTotalDamage() { return totalDamage; }
-    public double getTotalCaptureTime() { return totalCaptureTime; }
-    public int getTotalSiegesParticipated() { return totalSiegesParticipated; }
-    public int getTotalWins() { return totalWins; }
-    public int getTotalLosses() { return totalLosses; }
-    public int getTotalAssists() { return totalAssists; }
+    public int getTotalKills() { return (int) totalKills.sum(); }
+    public int getTotalDeaths() { return (int) totalDeaths.sum(); }
+    public double getTotalDamage() { return totalDamage.sum(); }
+    public double getTotalCaptureTime() { return totalCaptureTime.sum(); }
+    public int getTotalSiegesParticipated() { return (int) totalSiegesParticipated.sum(); }
+    public int getTotalWins() { return (int) totalWins.sum(); }
+    public int getTotalLosses() { return (int) totalLosses.sum(); }
+    public int getTotalAssists() { return (int) totalAssists.sum(); }
+    public Set<String> getSiegeParticipations() { return Collections.unmodifiableSet(uniqueSiegeParticipations); }
 
     // --- Modifiers ---
     // Adders remain the same...
-    public void addKills(int kills) { this.totalKills += kills; }
-    public void addDeaths(int deaths) { this.totalDeaths += deaths; }
-    public void addDamage(double damage) { this.totalDamage += damage; }
-    public void addCaptureTime(double capTimeMinutes) { this.totalCaptureTime += capTimeMinutes; }
-    public void addWin() { this.totalWins++; }
-    public void addLoss() { this.totalLosses++; }
-    public void addAssist(int amount) { this.totalAssists += amount; }
+    public void addKills(int kills) { this.totalKills.add(kills); }
+    public void addDeaths(int deaths) { this.totalDeaths.add(deaths); }
+    public void addDamage(double damage) { this.totalDamage.add(damage); }
+    public void addCaptureTime(double capTimeMinutes) { this.totalCaptureTime.add(capTimeMinutes); }
+    public void addWin() { this.totalWins.increment(); }
+    public void addLoss() { this.totalLosses.increment(); }
+    public void addAssist(int amount) { this.totalAssists.add(amount); }
     public void addSiegeParticipation(String siegeId) {
         if (uniqueSiegeParticipations.add(siegeId)) {
-            this.totalSiegesParticipated++;
+            this.totalSiegesParticipated.increment();
         }
     }
 
+    // --- Dirty Tracking (main thread only) ---
+    /** @return true if this call flipped the record from clean to dirty. */
+    boolean markDirty() {
+        if (dirty) return false;
+        dirty = true;
+        return true;
+    }
+    boolean isDirty() { return dirty; }
+    void clearDirty() { dirty = false; }
+
     // --- Calculated Getters ---
-    // (No changes needed here)
-    public double getKillDeathRatio() { /* ... */ return (totalDeaths==0)?totalKills:((double)totalKills/totalDeaths); }
-    public double getKdaRatio() { /* ... */ return (totalDeaths==0)?(totalKills+totalAssists):((double)(totalKills+totalAssists)/totalDeaths); }
-    public double getWinLossRatio() { /* ... */ int tg = totalWins+totalLosses; return (tg==0)?0.0:((double)totalWins/tg); }
+    public double getKillDeathRatio() { return Snapshot.kdr(getTotalKills(), getTotalDeaths()); }
+    public double getKdaRatio() { return Snapshot.kda(getTotalKills(), getTotalAssists(), getTotalDeaths()); }
+    public double getWinLossRatio() { return Snapshot.winLoss(getTotalWins(), getTotalLosses()); }
+
+    // --- Consistent Reads ---
+    /**
+     * Reads every total until two passes agree. Recording only adds, so two equal passes normally mean nothing changed
+     * between them; the exception is a siege deletion ({@link #subtractStats}) that exactly undoes an add in between,
+     * which can return a copy mixing two instants. Gives up after a few passes under constant writes.
+     */
+    public Snapshot snapshot() {
+        Snapshot previous = new Snapshot(this);
+        for (int attempt = 0; attempt < SiegeStats.SNAPSHOT_ATTEMPTS; attempt++) {
+            Snapshot current = new Snapshot(this);
+            if (current.sameAs(previous)) return current;
+            previous = current;
+        }
+        return previous;
+    }
+
+    /** Immutable copy of a player's totals (siege IDs excluded). */
+    public static final class Snapshot {
+        public final int kills;
+        public final int deaths;
+        public final int assists;
+        public final double damage;
+        public final double captureTime;
+        public final int siegesParticipated;
+        public final int wins;
+        public final int losses;
+
+        private Snapshot(PlayerStats stats) {
+            this.kills = stats.getTotalKills();
+            this.deaths = stats.getTotalDeaths();
+            this.assists = stats.getTotalAssists();
+            this.damage = stats.getTotalDamage();
+            this.captureTime = stats.getTotalCaptureTime();
+            this.siegesParticipated = stats.getTotalSiegesParticipated();
+            this.wins = stats.getTotalWins();
+            this.losses = stats.getTotalLosses();
+        }
+
+        /** For totals read back from an archived season. */
+        Snapshot(int kills, int deaths, int assists, double damage, double captureTime, int siegesParticipated, int wins, int losses) {
+            this.kills = kills;
+            this.deaths = deaths;
+            this.assists = assists;
+            this.damage = damage;
+            this.captureTime = captureTime;
+            this.siegesParticipated = siegesParticipated;
+            this.wins = wins;
+            this.losses = losses;
+        }
+
+        public double getKillDeathRatio() { return kdr(kills, deaths); }
+        public double getKdaRatio() { return kda(kills, assists, deaths); }
+        public double getWinLossRatio() { return winLoss(wins, losses); }
+
+        private boolean sameAs(Snapshot other) {
+            return kills == other.kills && deaths == other.deaths && assists == other.assists
+                    && siegesParticipated == other.siegesParticipated && wins == other.wins && losses == other.losses
+                    && Double.compare(damage, other.damage) == 0 && Double.compare(captureTime, other.captureTime) == 0;
+        }
+
+        static double kdr(int kills, int deaths) { return (deaths==0)?kills:((double)kills/deaths); }
+        static double kda(int kills, int assists, int deaths) { return (deaths==0)?(kills+assists):((double)(kills+assists)/deaths); }
+        static double winLoss(int wins, int losses) { int tg = wins+losses; return (tg==0)?0.0:((double)wins/tg); }
+    }
 
     // --- Setters (for loading) ---
-    // Setters remain the same...
-    public void setTotalKills(int totalKills) { this.totalKills = totalKills; }
-    public void setTotalDeaths(int totalDeaths) { this.totalDeaths = totalDeaths; }
-    public void setTotalDamage(double totalDamage) { this.totalDamage = totalDamage; }
-    public void setTotalCaptureTime(double totalCaptureTime) { this.totalCaptureTime = totalCaptureTime; }
-    public void setTotalSiegesParticipated(int totalSiegesParticipated) { this.totalSiegesParticipated = totalSiegesParticipated; }
-    public void setTotalWins(int totalWins) { this.totalWins = totalWins; }
-    public void setTotalLosses(int totalLosses) { this.totalLosses = totalLosses; }
-    public void setTotalAssists(int totalAssists) { this.totalAssists = totalAssists; }
+    public void setTotalKills(int totalKills) { reset(this.totalKills, totalKills); }
+    public void setTotalDeaths(int totalDeaths) { reset(this.totalDeaths, totalDeaths); }
+    public void setTotalDamage(double totalDamage) { reset(this.totalDamage, totalDamage); }
+    public void setTotalCaptureTime(double totalCaptureTime) { reset(this.totalCaptureTime, totalCaptureTime); }
+    public void setTotalSiegesParticipated(int totalSiegesParticipated) { reset(this.totalSiegesParticipated, totalSiegesParticipated); }
+    public void setTotalWins(int totalWins) { reset(this.totalWins, totalWins); }
+    public void setTotalLosses(int totalLosses) { reset(this.totalLosses, totalLosses); }
+    public void setTotalAssists(int totalAssists) { reset(this.totalAssists, totalAssists); }
+
+    private static void reset(LongAdder adder, long value) { adder.reset(); adder.add(value); }
+    private static void reset(DoubleAdder adder, double value) { adder.reset(); adder.add(value); }
+    // Restores the saved siege IDs without touching totalSiegesParticipated (loaded separately).
+    public void setSiegeParticipations(Collection<String> siegeIds) {
+        uniqueSiegeParticipations.clear();
+        uniqueSiegeParticipations.addAll(siegeIds);
+    }
 
     /**
      * Subtracts stats accrued during a specific siege from this player's global totals.
-     * This is used when a siege is deleted entirely.
+     * This is used when a siege is deleted entirely. Main thread only: reading a total and then subtracting from it is
+     * not atomic, so it relies on being the only writer.
      * @param metricsToSubtract The metrics from the siege that is being deleted.
      */
     public void subtractStats(SiegeStats.ParticipantMetrics metricsToSubtract) {
         if (metricsToSubtract == null) return;
 
-        this.totalKills = Math.max(0, this.totalKills - metricsToSubtract.getKills());
-        this.totalDeaths = Math.max(0, this.totalDeaths - metricsToSubtract.getDeaths());
-        this.totalAssists = Math.max(0, this.totalAssists - metricsToSubtract.getAssists());
-        this.totalDamage = Math.max(0.0, this.totalDamage - metricsToSubtract.getDamage());
+        SiegeStats.ParticipantMetrics.Snapshot siege = metricsToSubtract.snapshot();
+        // Never subtract more than the total holds, so a total can't go negative
+        this.totalKills.add(-Math.min(this.totalKills.sum(), siege.kills));
+        this.totalDeaths.add(-Math.min(this.totalDeaths.sum(), siege.deaths));
+        this.totalAssists.add(-Math.min(this.totalAssists.sum(), siege.assists));
+        this.totalDamage.add(-Math.min(this.totalDamage.sum(), siege.damage));
         // Ensure capture time doesn't go negative if there's a slight precision mismatch, though unlikely here.
-        this.totalCaptureTime = Math.max(0.0, this.totalCaptureTime - metricsToSubtract.getControlTime());
+        this.totalCaptureTime.add(-Math.min(this.totalCaptureTime.sum(), siege.controlTime));
 
         // Note: Wins and Losses are not handled here as this method is called
         // for sieges that are being deleted (typically those with no winner).
@@ -107,12 +206,12 @@ public class PlayerStats {
 
     /**
      * Removes a specific siege from this player's participation record and decrements
-     * the total sieges participated count if the siege was indeed recorded.
+     * the total sieges participated count if the siege was indeed recorded. Main thread only, like {@link #subtractStats}.
      * @param siegeId The ID of the siege to remove participation for.
      */
     public void removeSiegeParticipation(String siegeId) {
         if (siegeId != null && uniqueSiegeParticipations.remove(siegeId)) {
-            this.totalSiegesParticipated = Math.max(0, this.totalSiegesParticipated - 1);
+            if (this.totalSiegesParticipated.sum() > 0) this.totalSiegesParticipated.decrement();
         }
     }
 }
\ No newline at end of file
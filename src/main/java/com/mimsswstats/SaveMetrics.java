@@ -0,0 +1,53 @@
+package com.mimsswstats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing and size figures for the background save pipeline.
+ * Written by the save thread, read by commands and the web server.
+ */
+public class SaveMetrics {
+    private final AtomicLong savesCompleted = new AtomicLong();
+    private final AtomicLong savesFailed = new AtomicLong();
+    private final AtomicLong savesSkipped = new AtomicLong();   // Delta saves with nothing dirty
+    private final AtomicLong fullSaves = new AtomicLong();
+
+    private volatile long lastSnapshotMicros = 0;   // Main-thread cost of capturing the snapshot
+    private volatile long lastWriteMillis = 0;      // Background serialize + write + rename
+    private volatile long lastBytesWritten = 0;
+    private volatile long lastCompletedAtMillis = 0;
+    private volatile long maxWriteMillis = 0;
+    private volatile int lastRecordsWritten = 0;
+    private volatile boolean lastSaveFull = false;
+
+    void recordSnapshot(long snapshotNanos) {
+        this.lastSnapshotMicros = snapshotNanos / 1000L;
+    }
+
+    void recordWrite(long writeNanos, long bytesWritten, int recordsWritten, boolean full) {
+        long millis = writeNanos / 1_000_000L;
+        this.lastRecordsWritten = recordsWritten;
+        this.lastSaveFull = full;
+        if (full) fullSaves.incrementAndGet();
+        this.lastWriteMillis = millis;
+        this.lastBytesWritten = bytesWritten;
+        this.lastCompletedAtMillis = System.currentTimeMillis();
+        if (millis > maxWriteMillis) maxWriteMillis = millis;
+        savesCompleted.incrementAndGet();
+    }
+
+    void recordFailure() { savesFailed.incrementAndGet(); }
+    void recordSkipped() { savesSkipped.incrementAndGet(); }
+
+    public long getSavesCompleted() { return savesCompleted.get(); }
+    public long getSavesFailed() { return savesFailed.get(); }
+    public long getSavesSkipped() { return savesSkipped.get(); }
+    public long getFullSaves() { return fullSaves.get(); }
+    public int getLastRecordsWritten() { return lastRecordsWritten; }
+    public boolean isLastSaveFull() { return lastSaveFull; }
+    public long getLastSnapshotMicros() { return lastSnapshotMicros; }
+    public long getLastWriteMillis() { return lastWriteMillis; }
+    public long getMaxWriteMillis() { return maxWriteMillis; }
+    public long getLastBytesWritten() { return lastBytesWritten; }
+    public long getLastCompletedAtMillis() { return lastCompletedAtMillis; }
+}
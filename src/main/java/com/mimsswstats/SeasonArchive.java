@@ -0,0 +1,507 @@
+package com.mimsswstats;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * Ended seasons, each frozen into one read-only file under seasons/. A rollover hands over the season's player map
+ * and completed-siege summaries as they are (see {@link SiegeStatsManager#endSeason}); the save thread writes them out
+ * before the next snapshot, the same way {@link SiegeArchive} writes completed sieges, and retries until it succeeds.
+ * <p>
+ * File layout: a fixed header, player records of {@link #PLAYER_BYTES} sorted by UUID, one ranking per
+ * {@link LeaderboardStat} (record numbers best first, players with a siege only), record numbers sorted by name,
+ * siege summaries newest first, then the strings. Only each season's header stays on the heap; lookups are
+ * positional reads, so a top list costs O(k) records and a player lookup O(log n).
+ */
+public class SeasonArchive {
+    private static final int FILE_MAGIC = 0x53535353; // "SSSS"
+    private static final int FILE_VERSION = 1;
+    private static final String FILE_SUFFIX = ".season";
+    private static final int HEADER_BYTES = 96;
+    private static final int PLAYER_BYTES = 64; // UUID, six ints, two doubles, name offset and length
+    private static final int SIEGE_BYTES = 44;  // Id and town offsets and lengths, number, start, end, winner, participants
+    private static final int STATS = LeaderboardStat.values().length;
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    /** Resident description of one ended season. */
+    public static final class Season {
+        public final String name;
+        public final long startedAtMillis; // 0 for the first season
+        public final long endedAtMillis;
+        public final int playerCount;
+        public final int siegeCount;
+        final File file;
+        private final int rankedCount;
+        private final long playersOffset;
+        private final long rankingsOffset;
+        private final long byNameOffset;
+        private final long siegesOffset;
+        private final long stringsOffset;
+        private final boolean saved;
+
+        private Season(String name, long startedAtMillis, long endedAtMillis, int playerCount, int siegeCount, File file,
+                       int rankedCount, long playersOffset, long rankingsOffset, long byNameOffset, long siegesOffset,
+                       long stringsOffset, boolean saved) {
+            this.name = name;
+            this.startedAtMillis = startedAtMillis;
+            this.endedAtMillis = endedAtMillis;
+            this.playerCount = playerCount;
+            this.siegeCount = siegeCount;
+            this.file = file;
+            this.rankedCount = rankedCount;
+            this.playersOffset = playersOffset;
+            this.rankingsOffset = rankingsOffset;
+            this.byNameOffset = byNameOffset;
+            this.siegesOffset = siegesOffset;
+            this.stringsOffset = stringsOffset;
+            this.saved = saved;
+        }
+
+        /** False until the save thread has written the file; queries wait for it. */
+        public boolean isSaved() { return saved; }
+    }
+
+    /** One player's totals in an ended season, with their rank on each stat (0 if unranked). */
+    public static final class PlayerRecord {
+        public final UUID playerUUID;
+        public final String name;
+        public final PlayerStats.Snapshot totals;
+        private final int[] ranks;
+        public final int rankedCount;
+
+        private PlayerRecord(UUID playerUUID, String name, PlayerStats.Snapshot totals, int[] ranks, int rankedCount) {
+            this.playerUUID = playerUUID;
+            this.name = name;
+            this.totals = totals;
+            this.ranks = ranks;
+            this.rankedCount = rankedCount;
+        }
+
+        public int getRank(LeaderboardStat stat) { return ranks[stat.ordinal()]; }
+    }
+
+    private static final class Pending {
+        final Season season;
+        final Map<UUID, PlayerStats> players; // No longer recorded into once frozen
+        final Collection<SiegeArchive.Summary> sieges;
+
+        Pending(Season season, Map<UUID, PlayerStats> players, Collection<SiegeArchive.Summary> sieges) {
+            this.season = season;
+            this.players = players;
+            this.sieges = sieges;
+        }
+    }
+
+    private final File seasonDir;
+    private final StatsLog log;
+    private final List<Season> seasons = new CopyOnWriteArrayList<>(); // Oldest first
+    private final ConcurrentLinkedQueue<Pending> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    public SeasonArchive(File dataFolder, StatsLog log) {
+        this.seasonDir = new File(dataFolder, "seasons");
+        this.log = log;
+    }
+
+    /** Reads every season file's header. Drops seasons still waiting to be written (their data was reloaded). */
+    public synchronized void load() {
+        seasons.clear();
+        pendingWrites.clear();
+        File[] files = seasonDir.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) return;
+        List<Season> loaded = new ArrayList<>();
+        for (File file : files) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                loaded.add(readHeader(file, channel));
+            } catch (IOException e) {
+                log.error(StatsLog.Category.STORAGE, "Could not read season file " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        loaded.sort(Comparator.comparingLong(season -> season.endedAtMillis));
+        seasons.addAll(loaded);
+    }
+
+    public static boolean isValidName(String name) { return NAME.matcher(name).matches(); }
+
+    /** @return the season with this name (ignoring case), or null. */
+    public Season get(String name) {
+        for (Season season : seasons) {
+            if (season.name.equalsIgnoreCase(name)) return season;
+        }
+        return null;
+    }
+
+    /** @return every ended season, oldest first. */
+    public List<Season> getSeasons() { return Collections.unmodifiableList(seasons); }
+
+    /** @return when the current season started: the end of the latest archived one, or 0. */
+    public long getCurrentSeasonStart() {
+        return seasons.isEmpty() ? 0 : seasons.get(seasons.size() - 1).endedAtMillis;
+    }
+
+    // --- Freezing (main thread) ---
+
+    /**
+     * Makes an ended season visible and queues it for the save thread. The map and summaries are kept as handed
+     * over, so the caller must have swapped in fresh ones.
+     */
+    public Season freeze(String name, long startedAtMillis, long endedAtMillis, Map<UUID, PlayerStats> players,
+                         Collection<SiegeArchive.Summary> sieges) {
+        Season season = new Season(name, startedAtMillis, endedAtMillis, players.size(), sieges.size(),
+                new File(seasonDir, name + FILE_SUFFIX), 0, 0, 0, 0, 0, 0, false);
+        seasons.add(season);
+        pendingWrites.add(new Pending(season, players, sieges));
+        return season;
+    }
+
+    public boolean hasPendingWrites() { return !pendingWrites.isEmpty(); }
+
+    /**
+     * Writes every frozen season. Runs on the save thread before the stats snapshot, so the snapshot that drops a
+     * season's players never lands without that season's file.
+     * @return bytes written.
+     */
+    public synchronized long writePending() throws IOException {
+        long bytes = 0;
+        Pending pending;
+        while ((pending = pendingWrites.peek()) != null) {
+            long start = System.nanoTime();
+            Season written = write(pending);
+            seasons.set(seasons.indexOf(pending.season), written); // Replaces the unsaved entry added by freeze
+            pendingWrites.poll(); // Only dropped once it is on disk
+            bytes += written.file.length();
+            log.info(StatsLog.Category.STORAGE, String.format("Archived season %s (%d players, %d sieges, %d bytes, %d ms).",
+                    written.name, written.playerCount, written.siegeCount, written.file.length(), (System.nanoTime() - start) / 1_000_000L));
+        }
+        return bytes;
+    }
+
+    private Season write(Pending pending) throws IOException {
+        if (!seasonDir.exists() && !seasonDir.mkdirs()) {
+            throw new IOException("Could not create season folder: " + seasonDir.getPath());
+        }
+        Season season = pending.season;
+        PlayerStats[] players = pending.players.values().toArray(new PlayerStats[0]);
+        Arrays.sort(players, Comparator.comparing(PlayerStats::getPlayerUUID));
+        int count = players.length;
+        PlayerStats.Snapshot[] totals = new PlayerStats.Snapshot[count];
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            totals[i] = players[i].snapshot();
+            String name = players[i].getLastKnownName();
+            names[i] = name != null ? name : players[i].getPlayerUUID().toString();
+        }
+
+        List<Integer> rankedList = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (totals[i].siegesParticipated > 0) rankedList.add(i);
+        }
+        Integer[] ranked = rankedList.toArray(new Integer[0]);
+        int[][] rankings = new int[STATS][];
+        for (LeaderboardStat stat : LeaderboardStat.values()) {
+            Integer[] order = ranked.clone();
+            // Same order as the live boards: higher value first, then lower UUID (records are in UUID order)
+            Arrays.sort(order, (a, b) -> {
+                int byValue = Double.compare(stat.getValue(totals[b]), stat.getValue(totals[a]));
+                return byValue != 0 ? byValue : Integer.compare(a, b);
+            });
+            rankings[stat.ordinal()] = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+        }
+        Integer[] byName = new Integer[count];
+        for (int i = 0; i < count; i++) byName[i] = i;
+        Arrays.sort(byName, Comparator.comparing((Integer i) -> names[i].toLowerCase()));
+
+        List<SiegeArchive.Summary> sieges = new ArrayList<>(pending.sieges);
+        sieges.sort(Comparator.comparingLong((SiegeArchive.Summary s) -> s.endTimeMillis).reversed());
+
+        long playersOffset = HEADER_BYTES;
+        long rankingsOffset = playersOffset + (long) count * PLAYER_BYTES;
+        long byNameOffset = rankingsOffset + (long) STATS * ranked.length * 4;
+        long siegesOffset = byNameOffset + (long) count * 4;
+        long stringsOffset = siegesOffset + (long) sieges.size() * SIEGE_BYTES;
+        Strings strings = new Strings();
+        byte[] seasonName = strings.add(season.name);
+
+        File tempFile = new File(seasonDir, season.file.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(season.startedAtMillis);
+            out.writeLong(season.endedAtMillis);
+            out.writeInt(count);
+            out.writeInt(ranked.length);
+            out.writeInt(sieges.size());
+            out.writeInt(seasonName.length);
+            out.writeLong(playersOffset);
+            out.writeLong(rankingsOffset);
+            out.writeLong(byNameOffset);
+            out.writeLong(siegesOffset);
+            out.writeLong(stringsOffset);
+            out.write(new byte[HEADER_BYTES - out.size()]);
+
+            for (int i = 0; i < count; i++) {
+                PlayerStats.Snapshot player = totals[i];
+                UUID playerUUID = players[i].getPlayerUUID();
+                out.writeLong(playerUUID.getMostSignificantBits());
+                out.writeLong(playerUUID.getLeastSignificantBits());
+                out.writeInt(player.kills);
+                out.writeInt(player.deaths);
+                out.writeInt(player.assists);
+                out.writeInt(player.siegesParticipated);
+                out.writeInt(player.wins);
+                out.writeInt(player.losses);
+                out.writeDouble(player.damage);
+                out.writeDouble(player.captureTime);
+                strings.writeReference(out, names[i]);
+            }
+            for (int[] ranking : rankings) {
+                for (int record : ranking) out.writeInt(record);
+            }
+            for (Integer record : byName) out.writeInt(record);
+            for (SiegeArchive.Summary siege : sieges) {
+                strings.writeReference(out, siege.siegeId);
+                strings.writeReference(out, siege.townName);
+                out.writeInt(siege.siegeNumber);
+                out.writeLong(siege.startTimeMillis);
+                out.writeLong(siege.endTimeMillis);
+                out.writeInt(siege.winner);
+                out.writeInt(siege.participantCount);
+            }
+            strings.writeTo(out);
+            out.flush();
+            fos.getFD().sync();
+        }
+        try {
+            Files.move(tempFile.toPath(), season.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), season.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new Season(season.name, season.startedAtMillis, season.endedAtMillis, count, sieges.size(), season.file,
+                ranked.length, playersOffset, rankingsOffset, byNameOffset, siegesOffset, stringsOffset, true);
+    }
+
+    /** The strings section, built while the records that point into it are written. */
+    private static final class Strings {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        byte[] add(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            bytes.write(encoded, 0, encoded.length);
+            return encoded;
+        }
+
+        void writeReference(DataOutputStream out, String value) throws IOException {
+            int offset = bytes.size();
+            out.writeInt(offset);
+            out.writeInt(add(value).length);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            bytes.writeTo(out);
+        }
+    }
+
+    // --- Queries (any thread; each opens the file for its own reads) ---
+
+    /** @return up to limit players who took part in a siege that season, best first. */
+    public List<StatsQueries.RankedPlayer> top(Season season, LeaderboardStat stat, int limit) throws IOException {
+        int count = Math.min(limit, season.rankedCount);
+        List<StatsQueries.RankedPlayer> result = new ArrayList<>(count);
+        try (FileChannel channel = open(season)) {
+            ByteBuffer order = read(channel, rankingOffset(season, stat, 0), count * 4);
+            for (int i = 0; i < count; i++) {
+                ByteBuffer record = readPlayer(channel, season, order.getInt());
+                UUID playerUUID = new UUID(record.getLong(0), record.getLong(8));
+                result.add(new StatsQueries.RankedPlayer(playerUUID, readName(channel, season, record), stat.getValue(totalsOf(record))));
+            }
+        }
+        return result;
+    }
+
+    /** @return the player's record for the season, or null if they have none. Binary search over the UUID order. */
+    public PlayerRecord findPlayer(Season season, UUID playerUUID) throws IOException {
+        try (FileChannel channel = open(season)) {
+            int low = 0;
+            int high = season.playerCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                ByteBuffer record = readPlayer(channel, season, middle);
+                int order = new UUID(record.getLong(0), record.getLong(8)).compareTo(playerUUID);
+                if (order == 0) return toPlayerRecord(channel, season, record, playerUUID);
+                if (order < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** @return the player's record for the season by name, ignoring case, or null. Binary search over the name order. */
+    public PlayerRecord findPlayer(Season season, String playerName) throws IOException {
+        String wanted = playerName.toLowerCase();
+        try (FileChannel channel = open(season)) {
+            int low = 0;
+            int high = season.playerCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int index = read(channel, season.byNameOffset + (long) middle * 4, 4).getInt();
+                ByteBuffer record = readPlayer(channel, season, index);
+                int order = readName(channel, season, record).toLowerCase().compareTo(wanted);
+                if (order == 0) return toPlayerRecord(channel, season, record, new UUID(record.getLong(0), record.getLong(8)));
+                if (order < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** @return up to limit of the season's completed sieges, newest first. */
+    public List<SiegeArchive.Summary> sieges(Season season, int limit) throws IOException {
+        int count = Math.min(limit, season.siegeCount);
+        List<SiegeArchive.Summary> result = new ArrayList<>(count);
+        try (FileChannel channel = open(season)) {
+            ByteBuffer records = read(channel, season.siegesOffset, count * SIEGE_BYTES);
+            for (int i = 0; i < count; i++) {
+                String siegeId = readString(channel, season, records.getInt(), records.getInt());
+                String townName = readString(channel, season, records.getInt(), records.getInt());
+                result.add(new SiegeArchive.Summary(siegeId, townName, records.getInt(), records.getLong(), records.getLong(),
+                        records.getInt(), records.getInt()));
+            }
+        }
+        return result;
+    }
+
+    private PlayerRecord toPlayerRecord(FileChannel channel, Season season, ByteBuffer record, UUID playerUUID) throws IOException {
+        PlayerStats.Snapshot totals = totalsOf(record);
+        int[] ranks = new int[STATS];
+        if (totals.siegesParticipated > 0) {
+            for (LeaderboardStat stat : LeaderboardStat.values()) {
+                ranks[stat.ordinal()] = countAhead(channel, season, stat, stat.getValue(totals)) + 1;
+            }
+        }
+        return new PlayerRecord(playerUUID, readName(channel, season, record), totals, ranks, season.rankedCount);
+    }
+
+    /** @return how many ranked players have a strictly higher value: a binary search over the stat's ranking. */
+    private int countAhead(FileChannel channel, Season season, LeaderboardStat stat, double value) throws IOException {
+        int low = 0;
+        int high = season.rankedCount; // First position whose value is not higher
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int index = read(channel, rankingOffset(season, stat, middle), 4).getInt();
+            if (Double.compare(stat.getValue(totalsOf(readPlayer(channel, season, index))), value) > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // --- File Helpers ---
+
+    private static FileChannel open(Season season) throws IOException {
+        if (!season.saved) throw new IOException("season " + season.name + " is still being archived");
+        return FileChannel.open(season.file.toPath(), StandardOpenOption.READ);
+    }
+
+    private static Season readHeader(File file, FileChannel channel) throws IOException {
+        ByteBuffer header = read(channel, 0, HEADER_BYTES);
+        if (header.getInt() != FILE_MAGIC || header.getInt() != FILE_VERSION) {
+            throw new IOException("not a version " + FILE_VERSION + " season file");
+        }
+        long startedAt = header.getLong();
+        long endedAt = header.getLong();
+        int playerCount = header.getInt();
+        int rankedCount = header.getInt();
+        int siegeCount = header.getInt();
+        int nameLength = header.getInt();
+        long playersOffset = header.getLong();
+        long rankingsOffset = header.getLong();
+        long byNameOffset = header.getLong();
+        long siegesOffset = header.getLong();
+        long stringsOffset = header.getLong();
+        ByteBuffer name = read(channel, stringsOffset, nameLength);
+        return new Season(StandardCharsets.UTF_8.decode(name).toString(), startedAt, endedAt, playerCount, siegeCount, file,
+                rankedCount, playersOffset, rankingsOffset, byNameOffset, siegesOffset, stringsOffset, true);
+    }
+
+    private static long rankingOffset(Season season, LeaderboardStat stat, int position) {
+        return season.rankingsOffset + ((long) stat.ordinal() * season.rankedCount + position) * 4;
+    }
+
+    private static ByteBuffer readPlayer(FileChannel channel, Season season, int index) throws IOException {
+        return read(channel, season.playersOffset + (long) index * PLAYER_BYTES, PLAYER_BYTES);
+    }
+
+    private static PlayerStats.Snapshot totalsOf(ByteBuffer record) {
+        return new PlayerStats.Snapshot(record.getInt(16), record.getInt(20), record.getInt(24), record.getDouble(40),
+                record.getDouble(48), record.getInt(28), record.getInt(32), record.getInt(36));
+    }
+
+    private static String readName(FileChannel channel, Season season, ByteBuffer record) throws IOException {
+        return readString(channel, season, record.getInt(56), record.getInt(60));
+    }
+
+    private static String readString(FileChannel channel, Season season, int offset, int length) throws IOException {
+        return StandardCharsets.UTF_8.decode(read(channel, season.stringsOffset + offset, length)).toString();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("season file is truncated");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // --- Maintenance ---
+
+    /** Copies every written season into {@code targetDir} for a backup (save thread, between writes). */
+    public void copyTo(File targetDir) throws IOException {
+        for (Season season : seasons) {
+            if (season.saved) BackupManager.linkOrCopy(season.file, new File(targetDir, seasonDir.getName() + File.separator + season.file.getName()));
+        }
+    }
+
+    /** Removes every season and its file (used by a full reset, which also deletes the sieges they list). */
+    public synchronized void deleteAll() {
+        seasons.clear();
+        pendingWrites.clear();
+        File[] files = seasonDir.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.delete()) log.warn(StatsLog.Category.STORAGE, "Could not delete season file " + file.getName());
+        }
+    }
+
+    public int getPendingCount() { return pendingWrites.size(); }
+}
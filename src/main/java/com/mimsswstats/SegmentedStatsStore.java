@@ -0,0 +1,255 @@
+package com.mimsswstats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * On-disk layout for stats: one full base file (stats.json or stats.bin, depending on the codec) plus a
+ * directory of small delta segments, each holding only the records that were dirty when it was captured.
+ *
+ * Load order is base first, then every segment with a sequence number above the one recorded in the base
+ * ("segmentSequence"), oldest first; later records overwrite earlier ones. Once {@code maxSegments} deltas have accumulated the
+ * manager requests a full snapshot, which rewrites the base and deletes the segments it folds in.
+ *
+ * All writes happen on the save thread; every file is written to a temp file and atomically renamed.
+ */
+public class SegmentedStatsStore implements StatsStore {
+    private static final String SEGMENT_PREFIX = "delta-";
+
+    private final StatsCodec codec;
+    private final String segmentSuffix;
+    private final File baseFile;
+    private final File segmentDir;
+    private final Logger logger;
+    private final int maxSegments;
+    private long nextSequence;
+    private volatile int segmentCount; // Read by saveStats on the main thread without waiting for a write in progress
+
+    public SegmentedStatsStore(File dataFolder, Logger logger, int maxSegments, StatsCodec codec) {
+        this.codec = codec;
+        this.segmentSuffix = codec.getExtension();
+        this.baseFile = new File(dataFolder, "stats" + codec.getExtension());
+        this.segmentDir = new File(dataFolder, "segments");
+        this.logger = logger;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.nextSequence = highestSegmentSequence() + 1;
+        this.segmentCount = listSegments().size();
+    }
+
+    public File getBaseFile() { return baseFile; }
+    public StatsCodec getCodec() { return codec; }
+
+    @Override
+    public String describe() {
+        return codec.getName() + " (" + baseFile.getName() + " + " + getSegmentCount() + " segment(s))";
+    }
+
+    @Override
+    public synchronized boolean exists() {
+        return baseFile.exists() || !listSegments().isEmpty();
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        return segmentCount >= maxSegments;
+    }
+
+    @Override
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Writes a snapshot: a full snapshot replaces the base file and removes the segments it covers,
+     * a delta becomes the next numbered segment.
+     * @return number of bytes written.
+     */
+    @Override
+    public synchronized long write(StatsSnapshot snapshot) throws IOException {
+        File parentDir = baseFile.getParentFile();
+        if (!parentDir.exists() && !parentDir.mkdirs()) {
+            throw new IOException("Could not create data folder: " + parentDir.getPath());
+        }
+
+        if (snapshot.isFull()) {
+            // Everything written so far is folded into this base; remember that so a crash between the
+            // rename and the segment cleanup does not replay stale deltas over it.
+            long coveredSequence = nextSequence - 1;
+            long bytes = writeAtomically(baseFile, snapshot, coveredSequence);
+            for (File segment : listSegments()) {
+                if (sequenceOf(segment) <= coveredSequence && !segment.delete()) {
+                    logger.warning("Could not delete compacted stats segment: " + segment.getPath());
+                }
+            }
+            segmentCount = listSegments().size();
+            return bytes;
+        }
+
+        if (!segmentDir.exists() && !segmentDir.mkdirs()) {
+            throw new IOException("Could not create segment folder: " + segmentDir.getPath());
+        }
+        long sequence = nextSequence++;
+        long bytes = writeAtomically(segmentFile(sequence), snapshot, sequence);
+        segmentCount++;
+        return bytes;
+    }
+
+    /**
+     * @return delta segments newer than the given covered sequence (as recorded in the base file), oldest first.
+     */
+    public synchronized List<File> getSegmentsAfter(long coveredSequence) {
+        List<File> segments = listSegments();
+        segments.removeIf(segment -> sequenceOf(segment) <= coveredSequence);
+        return segments;
+    }
+
+    /**
+     * Called by the loader with the sequence stored in the base file, so new segments are always numbered
+     * above it even if the segment directory was emptied.
+     */
+    public synchronized void observeCoveredSequence(long coveredSequence) {
+        if (coveredSequence >= nextSequence) {
+            nextSequence = coveredSequence + 1;
+        }
+    }
+
+    /**
+     * Applies the base file, then every newer segment. A damaged segment is logged and skipped (segments are
+     * written atomically, so that means outside damage); a damaged base file is an error. Each segment is decoded
+     * in full before any of it reaches the sink, so a skipped one leaves nothing behind, not even its journal
+     * generation (the journal it covers is then replayed instead).
+     */
+    @Override
+    public synchronized int load(StatsCodec.Sink sink) throws IOException {
+        long coveredSequence = 0;
+        int filesLoaded = 0;
+        nextSequence = Math.max(nextSequence, highestSegmentSequence() + 1); // Files may have been swapped by a restore
+        segmentCount = listSegments().size();
+        if (baseFile.exists()) {
+            coveredSequence = decodeFile(baseFile, sink);
+            filesLoaded++;
+            observeCoveredSequence(coveredSequence);
+        }
+        for (File segment : getSegmentsAfter(coveredSequence)) {
+            try {
+                BufferedSink buffered = new BufferedSink();
+                decodeFile(segment, buffered);
+                buffered.applyTo(sink);
+                filesLoaded++;
+            } catch (IOException e) {
+                logger.severe("Could not load stats segment " + segment.getName() + ": " + e.getMessage());
+            }
+        }
+        return filesLoaded;
+    }
+
+    /** Holds a segment's records, in file order, until the whole file has decoded. */
+    private static final class BufferedSink implements StatsCodec.Sink {
+        private final List<Consumer<StatsCodec.Sink>> records = new ArrayList<>();
+
+        @Override public void player(PlayerStats stats) { records.add(sink -> sink.player(stats)); }
+        @Override public void townSiegeCounters(Map<String, Integer> counters) { records.add(sink -> sink.townSiegeCounters(counters)); }
+        @Override public void siege(SiegeStats stats) { records.add(sink -> sink.siege(stats)); }
+        @Override public void removedSiege(String siegeId) { records.add(sink -> sink.removedSiege(siegeId)); }
+        @Override public void journalGeneration(long generation) { records.add(sink -> sink.journalGeneration(generation)); }
+
+        void applyTo(StatsCodec.Sink sink) {
+            for (Consumer<StatsCodec.Sink> record : records) record.accept(sink);
+        }
+    }
+
+    private long decodeFile(File file, StatsCodec.Sink sink) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            return codec.decode(in, sink);
+        }
+    }
+
+    @Override
+    public synchronized void deleteAll() {
+        if (baseFile.exists() && !baseFile.delete()) {
+            logger.warning("Could not delete old stats file: " + baseFile.getPath());
+        }
+        for (File segment : listSegments()) {
+            if (!segment.delete()) {
+                logger.warning("Could not delete stats segment: " + segment.getPath());
+            }
+        }
+        segmentCount = listSegments().size();
+    }
+
+    /** Links (or copies) the base file and every segment; both are only ever replaced by rename, never modified. */
+    @Override
+    public synchronized void copyTo(File targetDir) throws IOException {
+        if (baseFile.exists()) {
+            BackupManager.linkOrCopy(baseFile, new File(targetDir, baseFile.getName()));
+        }
+        for (File segment : listSegments()) {
+            BackupManager.linkOrCopy(segment, new File(targetDir, segmentDir.getName() + File.separator + segment.getName()));
+        }
+    }
+
+    // --- File Helpers ---
+
+    private long writeAtomically(File target, StatsSnapshot snapshot, long sequence) throws IOException {
+        File tempFile = new File(target.getParentFile(), target.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile);
+             OutputStream out = new BufferedOutputStream(fos, 64 * 1024)) {
+            codec.encode(snapshot, sequence, out);
+            out.flush();
+            fos.getFD().sync();
+        }
+        long bytesWritten = tempFile.length();
+        try {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return bytesWritten;
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(segmentDir, String.format("%s%012d%s", SEGMENT_PREFIX, sequence, segmentSuffix));
+    }
+
+    private List<File> listSegments() {
+        File[] files = segmentDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(segmentSuffix));
+        if (files == null) return new ArrayList<>();
+        List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.removeIf(f -> sequenceOf(f) < 0);
+        segments.sort(Comparator.comparingLong(this::sequenceOf));
+        return segments;
+    }
+
+    private long highestSegmentSequence() {
+        long highest = 0;
+        for (File segment : listSegments()) {
+            highest = Math.max(highest, sequenceOf(segment));
+        }
+        return highest;
+    }
+
+    private long sequenceOf(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - segmentSuffix.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+}
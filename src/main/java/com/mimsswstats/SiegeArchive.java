@@ -0,0 +1,251 @@
+package com.mimsswstats;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Completed sieges, each written once to its {@link Storage} when it ends: an immutable file under sieges/
+ * ({@link FileSiegeStorage}) or rows in the SQLite database ({@link SqlStatsStore}).
+ *
+ * Only a small {@link Summary} per siege stays on the heap (loaded from the storage's index at startup).
+ * Full participant data is read on demand through a bounded LRU cache, so old sieges cost nothing
+ * until someone looks at them and are never rewritten by regular saves.
+ */
+public class SiegeArchive {
+
+    /** Where archived sieges are kept. Writes happen on the save thread; reads may come from any thread. */
+    public interface Storage {
+        /** Feeds every stored summary to the consumer; a later summary for the same siege replaces an earlier one. */
+        void loadSummaries(Consumer<Summary> consumer) throws IOException;
+
+        /**
+         * Persists one completed siege (the snapshot holds exactly one) together with its summary.
+         * @return number of bytes written, or 0 if the storage cannot tell.
+         */
+        long write(StatsSnapshot snapshot) throws IOException;
+
+        /** @return the stored siege, or null if it is missing. */
+        SiegeStats read(String siegeId) throws IOException;
+
+        /** Removes every archived siege (used by a full reset). */
+        void deleteAll();
+
+        /** Copies everything archived into {@code targetDir} for a backup (save thread, between writes). */
+        void copyTo(File targetDir) throws IOException;
+
+        String describe();
+    }
+
+    /** Resident per-siege index entry. */
+    public static final class Summary {
+        public final String siegeId;
+        public final String townName;
+        public final int siegeNumber;
+        public final long startTimeMillis;
+        public final long endTimeMillis;
+        public final int winner; // Same encoding as SiegeStats.whoWon(): 0 none, 1 attackers, 2 defenders
+        public final int participantCount;
+
+        Summary(String siegeId, String townName, int siegeNumber, long startTimeMillis, long endTimeMillis, int winner, int participantCount) {
+            this.siegeId = siegeId;
+            this.townName = townName;
+            this.siegeNumber = siegeNumber;
+            this.startTimeMillis = startTimeMillis;
+            this.endTimeMillis = endTimeMillis;
+            this.winner = winner;
+            this.participantCount = participantCount;
+        }
+
+        Summary(SiegeStats stats) {
+            this(stats.getSiegeId(), stats.getTownName(), stats.getSiegeNumber(), stats.getStartTime(), stats.getEndTime(),
+                    stats.whoWon(), stats.getParticipantMetrics().size());
+        }
+
+        public boolean attackersWon() { return winner == 1; }
+        public boolean defendersWon() { return winner == 2; }
+        public double getDurationMinutes() { return (endTimeMillis - startTimeMillis) / 60000.0; }
+    }
+
+    private final Storage storage;
+    private final Logger logger;
+
+    private volatile Map<String, Summary> index = new ConcurrentHashMap<>(); // Current season only; see detachIndex
+    private final Map<String, SiegeStats> cache;
+    private final ConcurrentLinkedQueue<StatsSnapshot> pendingWrites = new ConcurrentLinkedQueue<>(); // Written on the save thread; failed writes stay here for retry
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong siegesWritten = new AtomicLong();
+
+    public SiegeArchive(Storage storage, Logger logger, int cacheSize) {
+        this.storage = storage;
+        this.logger = logger;
+        final int maxEntries = Math.max(1, cacheSize);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, SiegeStats>(maxEntries * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SiegeStats> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    // --- Index ---
+
+    /**
+     * Reads the storage's summaries. Later entries for the same siege win (a replayed end rewrites its entry).
+     * Sieges that ended before {@code endedSince} belong to an archived season and stay out of the index.
+     */
+    public synchronized void loadIndex(long endedSince) {
+        index.clear();
+        cache.clear();
+        try {
+            storage.loadSummaries(summary -> {
+                if (summary.endTimeMillis >= endedSince) {
+                    index.put(summary.siegeId, summary);
+                } else {
+                    index.remove(summary.siegeId);
+                }
+            });
+        } catch (IOException e) {
+            logger.severe("Could not read completed siege index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copies every siege from another storage that is not archived here yet, e.g. the sieges/ files when
+     * switching to sqlite. Runs once during load, so it writes directly instead of queueing.
+     * @return number of sieges copied.
+     */
+    public synchronized int importFrom(Storage source) {
+        List<Summary> summaries = new ArrayList<>();
+        try {
+            source.loadSummaries(summaries::add);
+        } catch (IOException e) {
+            logger.severe("Could not read completed sieges from " + source.describe() + ": " + e.getMessage());
+            return 0;
+        }
+        int copied = 0;
+        for (Summary summary : summaries) {
+            if (index.containsKey(summary.siegeId)) continue;
+            try {
+                SiegeStats stats = source.read(summary.siegeId);
+                if (stats == null) continue;
+                storage.write(StatsSnapshot.captureSiege(stats));
+                index.put(summary.siegeId, new Summary(stats));
+                copied++;
+            } catch (IOException e) {
+                logger.severe("Could not copy completed siege " + summary.siegeId + " from " + source.describe() + ": " + e.getMessage());
+            }
+        }
+        return copied;
+    }
+
+    public boolean contains(String siegeId) { return index.containsKey(siegeId); }
+    public int size() { return index.size(); }
+    public Summary getSummary(String siegeId) { return index.get(siegeId); }
+    public Collection<Summary> getSummaries() { return Collections.unmodifiableCollection(index.values()); }
+
+    // --- Adding (main thread) ---
+
+    /**
+     * Makes a just-completed siege visible immediately and queues its file for the save thread.
+     * The stats object is cached, so it stays resident until it ages out of the LRU.
+     */
+    public void add(SiegeStats stats) {
+        index.put(stats.getSiegeId(), new Summary(stats));
+        cache.put(stats.getSiegeId(), stats);
+        pendingWrites.add(StatsSnapshot.captureSiege(stats));
+    }
+
+    public boolean hasPendingWrites() { return !pendingWrites.isEmpty(); }
+
+    /**
+     * Writes every queued siege to the storage. Runs on the save thread before the snapshot
+     * that tombstones those sieges, so a completed siege is never only in memory once a snapshot lands.
+     * @return bytes written.
+     */
+    public synchronized long writePending() throws IOException {
+        long bytes = 0;
+        StatsSnapshot snapshot;
+        while ((snapshot = pendingWrites.peek()) != null) {
+            bytes += storage.write(snapshot);
+            pendingWrites.poll(); // Only dropped once it is on disk
+            siegesWritten.incrementAndGet();
+        }
+        return bytes;
+    }
+
+    // --- Reading ---
+
+    /**
+     * @return the full siege, from the cache or read from storage; null if it is not archived or unreadable.
+     */
+    public SiegeStats get(String siegeId) {
+        SiegeStats cached = cache.get(siegeId);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+        if (!index.containsKey(siegeId)) return null;
+        cacheMisses.incrementAndGet();
+
+        SiegeStats loaded;
+        try {
+            loaded = storage.read(siegeId);
+        } catch (IOException e) {
+            logger.severe("Could not read completed siege " + siegeId + ": " + e.getMessage());
+            return null;
+        }
+        if (loaded == null) {
+            logger.warning("Completed siege " + siegeId + " is indexed but missing from " + storage.describe() + ".");
+            return null;
+        }
+        cache.put(siegeId, loaded);
+        return loaded;
+    }
+
+    // --- Maintenance ---
+
+    /**
+     * Hands over every indexed summary that ended by {@code endedThrough} and starts a new index, for a season
+     * rollover: a swap on the main thread (not synchronized, so it never waits for a write). The sieges stay in
+     * storage and any queued write still lands; they are just no longer listed. Later sieges only exist here when
+     * a rollover is replayed from the journal, and are kept.
+     */
+    public Collection<Summary> detachIndex(long endedThrough) {
+        Map<String, Summary> detached = index;
+        Map<String, Summary> kept = new ConcurrentHashMap<>();
+        for (Summary summary : detached.values()) {
+            if (summary.endTimeMillis > endedThrough) kept.put(summary.siegeId, summary);
+        }
+        detached.keySet().removeAll(kept.keySet());
+        index = kept;
+        cache.clear();
+        return Collections.unmodifiableCollection(detached.values());
+    }
+
+    /** Removes every archived siege and the index (used by a full reset). */
+    public synchronized void deleteAll() {
+        index.clear();
+        cache.clear();
+        pendingWrites.clear();
+        storage.deleteAll();
+    }
+
+    public long getCacheHits() { return cacheHits.get(); }
+    public long getCacheMisses() { return cacheMisses.get(); }
+    public long getSiegesWritten() { return siegesWritten.get(); }
+    public int getCachedCount() { return cache.size(); }
+    public Storage getStorage() { return storage; }
+}
@@ -0,0 +1,46 @@
+package com.mimsswstats;
+
+import com.gmail.goosius.siegewar.enums.SiegeSide;
+import com.gmail.goosius.siegewar.objects.Siege;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * A tracked siege resolved once: its ID, the stats it records into, the live SiegeWar {@link Siege} and the besieged
+ * town's UUID. Registered by {@link SiegeStatsManager#startNewSiege} (or when a siege restored from disk is first seen
+ * again) and dropped when tracking stops, so recording an action never looks the town up by name.
+ */
+public final class SiegeHandle {
+    private final String siegeId;
+    private final SiegeStats stats;
+    private final Siege siege; // Null if the live siege could not be found, e.g. restored after its town was deleted
+    private final UUID townUUID;
+
+    SiegeHandle(SiegeStats stats, Siege siege) {
+        this.siegeId = stats.getSiegeId();
+        this.stats = stats;
+        this.siege = siege;
+        this.townUUID = siege != null && siege.getTown() != null ? siege.getTown().getUUID() : null;
+    }
+
+    public String getSiegeId() { return siegeId; }
+    public SiegeStats getStats() { return stats; }
+    public Siege getSiege() { return siege; }
+    public UUID getTownUUID() { return townUUID; }
+
+    /** @return the side an online player is on (through the side cache), else the side already recorded for them. */
+    SiegeSide resolveSide(UUID playerUUID, SiegeSideCache sideCache) {
+        SiegeSide side = SiegeSide.NOBODY;
+        if (siege != null) {
+            Player onlinePlayer = Bukkit.getPlayer(playerUUID);
+            if (onlinePlayer != null) side = sideCache.getSide(siege, onlinePlayer);
+        }
+        if (side == SiegeSide.NOBODY) {
+            SiegeStats.ParticipantMetrics existingMetrics = stats.getParticipantMetrics().get(playerUUID);
+            if (existingMetrics != null) side = existingMetrics.getSide();
+        }
+        return side;
+    }
+}
@@ -0,0 +1,72 @@
+package com.mimsswstats;
+
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Lookup indexes over tracked sieges, so finding a town's sieges or the siege behind a live SiegeWar {@code Siege}
+ * never scans every siege:
+ * <ul>
+ *   <li>town name to that town's siege IDs ordered by siege number (active and completed), and</li>
+ *   <li>town UUID to the ID of the siege currently active there, which stays valid when SiegeWar replaces its
+ *   Siege object.</li>
+ * </ul>
+ * Siege IDs resolve to stats through the manager's active map and the archive index, both keyed by ID.
+ * Written on the main thread as sieges start, end and are deleted, and rebuilt after every load. Safe to read from any thread.
+ */
+public class SiegeIndex {
+    // Saved sieges only carry the (lowercase) town name, so history is grouped by name
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, String>> siegesByTown = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, String> activeByTownUUID = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, UUID> townUUIDBySiege = new ConcurrentHashMap<>();
+
+    public void addSiege(String townName, int siegeNumber, String siegeId) {
+        siegesByTown.computeIfAbsent(townName.toLowerCase(), k -> new ConcurrentSkipListMap<>()).put(siegeNumber, siegeId);
+    }
+
+    /** Forgets a deleted siege entirely. */
+    public void removeSiege(String townName, int siegeNumber, String siegeId) {
+        siegesByTown.computeIfPresent(townName.toLowerCase(), (town, sieges) -> {
+            sieges.remove(siegeNumber, siegeId);
+            return sieges.isEmpty() ? null : sieges;
+        });
+        unbind(siegeId);
+    }
+
+    /** Points the live siege of a town at its tracked ID. */
+    public void bind(UUID townUUID, String siegeId) {
+        if (townUUID == null) return;
+        String previous = activeByTownUUID.put(townUUID, siegeId);
+        if (previous != null && !previous.equals(siegeId)) townUUIDBySiege.remove(previous);
+        townUUIDBySiege.put(siegeId, townUUID);
+    }
+
+    /** Called when a siege stops being active; its history entry stays. */
+    public void unbind(String siegeId) {
+        UUID townUUID = townUUIDBySiege.remove(siegeId);
+        if (townUUID != null) activeByTownUUID.remove(townUUID, siegeId);
+    }
+
+    /** @return the ID bound to the town's live siege, or null. */
+    public String getActiveSiegeId(UUID townUUID) {
+        return townUUID != null ? activeByTownUUID.get(townUUID) : null;
+    }
+
+    /** @return siege number to siege ID for the town, newest first; empty if none. */
+    public NavigableMap<Integer, String> getTownSieges(String townName) {
+        ConcurrentSkipListMap<Integer, String> sieges = siegesByTown.get(townName.toLowerCase());
+        return sieges != null ? Collections.unmodifiableNavigableMap(sieges.descendingMap()) : Collections.emptyNavigableMap();
+    }
+
+    public void clear() {
+        siegesByTown.clear();
+        activeByTownUUID.clear();
+        townUUIDBySiege.clear();
+    }
+
+    public int getTownCount() { return siegesByTown.size(); }
+    public int getBoundCount() { return activeByTownUUID.size(); }
+}
@@ -12,41 +12,41 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 
-// Java Util Imports
-import java.util.concurrent.ConcurrentHashMap;
-
 public class SiegeListener implements Listener {
     private final SiegeStatsPlugin plugin;
-    // Map: Siege Object -> Unique Siege ID (e.g., "townname_1")
-    private final ConcurrentHashMap<Siege, String> activeSiegeIds;
+    private final StatsLog log;
+    // Live Siege -> unique siege ID (e.g., "townname_1") is kept by the manager's SiegeIndex, keyed by town UUID
     // private SiegeStats siegeStats; // REMOVED - This field was uninitialized and would cause NPEs.
 
     public SiegeListener(SiegeStatsPlugin plugin) {
         this.plugin = plugin;
-        this.activeSiegeIds = new ConcurrentHashMap<>();
-        plugin.getLogger().info("[DEBUG] SiegeListener initialized");
+        this.log = plugin.getStatsLog();
+        log.debug(StatsLog.Category.SIEGE, "SiegeListener initialized");
     }
 
     @EventHandler(priority = EventPriority.MONITOR) // Monitor ensures SiegeWar has set up the siege first
     public void onStartSiege(SiegeWarStartEvent event) {
-        plugin.getLogger().info("[DEBUG] SiegeWarStartEvent triggered");
+        log.debug(StatsLog.Category.SIEGE, "SiegeWarStartEvent triggered");
         if (event == null) {
-            plugin.getLogger().warning("[DEBUG] Event is null!");
+            log.warn(StatsLog.Category.SIEGE, "Event is null!");
             return;
         }
 
         Siege siege = event.getSiege();
         if (siege == null || siege.getTown() == null) {
-            plugin.getLogger().warning("[DEBUG] Siege object or Town is null in start event!");
+            log.warn(StatsLog.Category.SIEGE, "Siege object or Town is null in start event!");
             return;
         }
 
         String townName = siege.getTown().getName();
-        plugin.getLogger().info("[DEBUG] Siege starting for town: " + townName);
+        log.debug(StatsLog.Category.SIEGE, () -> "Siege starting for town: " + townName);
+        plugin.getSiegeZoneIndex().add(siege); // Combat in the zone resolves to this siege from now on
+        plugin.getSideCache().invalidate(siege);
 
         // Check if this siege object is already being tracked (shouldn't happen ideally)
-        if (activeSiegeIds.containsKey(siege)) {
-            plugin.getLogger().warning("[DEBUG] Siege object for town " + townName + " is already being tracked with ID: " + activeSiegeIds.get(siege) + ". Ignoring duplicate start event.");
+        String trackedId = plugin.getStatsManager().getActiveSiegeId(siege);
+        if (trackedId != null) {
+            log.warn(StatsLog.Category.SIEGE, "Siege for town " + townName + " is already being tracked with ID: " + trackedId + ". Ignoring duplicate start event.");
             return;
         }
 
@@ -54,69 +54,74 @@ public class SiegeListener implements Listener {
         String siegeId = plugin.getStatsManager().startNewSiege(siege);
 
         if (siegeId == null || siegeId.isEmpty()) {
-            plugin.getLogger().severe("[DEBUG] Failed to generate or store valid siege ID for town: " + townName + "! Stats may not be recorded.");
+            log.error(StatsLog.Category.SIEGE, "Failed to generate or store valid siege ID for town: " + townName + "! Stats may not be recorded.");
             return;
         }
 
-        // Store the mapping from the Siege object to its unique ID
-        activeSiegeIds.put(siege, siegeId);
-
-        plugin.getLogger().info("[DEBUG] Siege started and now tracking. Town: " + townName + ", Assigned ID: " + siegeId);
+        // The manager has bound the town's UUID to the new ID
+        log.debug(StatsLog.Category.SIEGE, () -> "Siege started and now tracking. Town: " + townName + ", Assigned ID: " + siegeId);
         logActiveSiegesState(); // Log current state
     }
 
     @EventHandler(priority = EventPriority.LOWEST) // PRIORITY CHANGED TO LOWEST
     public void onSiegeEnd(SiegeEndEvent event) {
-        plugin.getLogger().info("[DEBUG] SiegeEndEvent triggered (SiegeListener - LOWEST priority)");
+        log.debug(StatsLog.Category.SIEGE, "SiegeEndEvent triggered (SiegeListener - LOWEST priority)");
         
         if (event == null || event.getSiege() == null) {
-            plugin.getLogger().warning("[DEBUG] SiegeEndEvent (SiegeListener) or its Siege object is null!");
+            log.warn(StatsLog.Category.SIEGE, "SiegeEndEvent (SiegeListener) or its Siege object is null!");
             return;
         }
 
         Siege siege = event.getSiege();
         String townName = (siege.getTown() != null) ? siege.getTown().getName() : "Unknown Town";
+        plugin.getDamageBatcher().flush(); // Buffered hits still belong to the active siege
+        plugin.getSiegeZoneIndex().remove(siege);
+        plugin.getSideCache().invalidate(siege);
 
-        // Attempt to get the siegeId using the Siege object
-        String siegeIdFromMap = activeSiegeIds.get(siege); 
-
-        if (activeSiegeIds.containsKey(siege)) {
-            // Remove the Siege object from the map, effectively stop tracking it by its object reference.
-            String removedId = activeSiegeIds.remove(siege); // removedId should be same as siegeIdFromMap
-            
-            if (removedId != null) {
-                plugin.getLogger().info("[DEBUG] Siege object for town " + townName + " (ID: " + removedId + ") removed from activeSiegeIds map by SiegeListener.");
-                // The broadcast here is optional, as SiegeCompletionListener or other parts might handle user notifications.
-                // Bukkit.broadcastMessage("§e[SiegeStats] Tracking via Siege object concluded for siege in " + townName + " (ID: " + removedId + ")");
-            } else {
-                 // This would be unusual if containsKey was true.
-                plugin.getLogger().warning("[DEBUG] Siege object for " + townName + " was in activeSiegeIds map but remove() returned null ID.");
-            }
-        } else {
-            plugin.getLogger().info("[DEBUG] SiegeEndEvent (SiegeListener - LOWEST): Siege for town " + townName + 
-                                       " (Object Hash: " + siege.hashCode() + ") was not found in (or already removed from) activeSiegeIds map. " +
-                                       "This is expected if it was processed and removed by higher priority listeners (e.g., via deletion logic).");
-        }
+        // The town stays bound to its siege ID until the manager ends or deletes the siege, so the completion,
+        // banner and other SiegeEndEvent listeners that run after this one still resolve it directly.
+        log.debug(StatsLog.Category.SIEGE, () -> "SiegeEndEvent (SiegeListener - LOWEST): siege for town " + townName + " is tracked as " + plugin.getStatsManager().getActiveSiegeId(siege) + ".");
         logActiveSiegesState(); // Log current state of the map
     }
 
     /**
      * Reliably gets the unique ID for an actively tracked siege.
-     * Returns null if the siege is not currently tracked by this listener.
+     * Returns null if the siege is not currently tracked by the stats manager.
      * @param siege The Siege object.
      * @return The unique siege ID (e.g., "townname_1") or null.
      */
     public String getActiveSiegeId(Siege siege) {
         if (siege == null) return null;
-        return activeSiegeIds.get(siege); // Direct lookup using the siege object
+        String siegeId = plugin.getStatsManager().getActiveSiegeId(siege); // By town UUID, so a replaced Siege object still matches
+        if (siegeId == null && siege.getTown() != null && siege.getStatus() != null && siege.getStatus().isActive()) {
+            // Sieges restored from disk after a restart have no town UUID binding yet; re-link by town.
+            SiegeStats restored = plugin.getStatsManager().findActiveSiegeStats(siege.getTown().getName());
+            if (restored != null) {
+                siegeId = restored.getSiegeId();
+                plugin.getStatsManager().linkSiege(siegeId, siege);
+                if (log.isDebug(StatsLog.Category.SIEGE)) log.debug(StatsLog.Category.SIEGE, "Re-linked restored siege " + siegeId + " to its live Siege object.");
+            }
+        }
+        return siegeId;
+    }
+
+    /** @return the handle recording goes through for an actively tracked siege, or null if it is not tracked. */
+    public SiegeHandle getActiveSiegeHandle(Siege siege) {
+        String siegeId = getActiveSiegeId(siege);
+        if (siegeId == null) return null;
+        SiegeHandle handle = plugin.getStatsManager().getSiegeHandle(siegeId);
+        if (handle != null && handle.getSiege() != siege) {
+            handle = plugin.getStatsManager().linkSiege(siegeId, siege); // SiegeWar replaced its Siege object
+        }
+        return handle;
     }
 
     // Helper to log the current state of tracked sieges
     private void logActiveSiegesState() {
-        plugin.getLogger().info("[DEBUG] Current activeSiegeIds map state ("+ activeSiegeIds.size() +" entries):");
-        activeSiegeIds.forEach((s, id) -> {
-            String sTownName = s != null && s.getTown() != null ? s.getTown().getName() : "Unknown/Null Siege";
-            plugin.getLogger().info("  - Siege Town: " + sTownName + " -> ID: " + id);
-        });
+        if (!log.isDebug(StatsLog.Category.SIEGE)) return;
+        log.debug(StatsLog.Category.SIEGE, "Current tracked sieges (" + plugin.getStatsManager().getActiveSiegesMap().size() + " active, "
+                + plugin.getStatsManager().getSiegeIndex().getBoundCount() + " bound to a live town):");
+        plugin.getStatsManager().getActiveSiegesMap().forEach((id, stats) ->
+                log.debug(StatsLog.Category.SIEGE, "  - Siege Town: " + stats.getTownName() + " -> ID: " + id));
     }
 }
\ No newline at end of file
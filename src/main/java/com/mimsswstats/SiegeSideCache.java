@@ -0,0 +1,118 @@
+package com.mimsswstats;
+
+import com.gmail.goosius.siegewar.enums.SiegeSide;
+import com.gmail.goosius.siegewar.objects.Siege;
+import com.palmergames.bukkit.towny.event.NationAddTownEvent;
+import com.palmergames.bukkit.towny.event.NationRemoveTownEvent;
+import com.palmergames.bukkit.towny.event.TownAddResidentEvent;
+import com.palmergames.bukkit.towny.event.TownRemoveResidentEvent;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches {@link SiegeSide#getPlayerSiegeSide} per (siege, player). Resolving a side walks Towny's resident, town,
+ * nation and ally data, and a single hit used to resolve both players' sides several times over.
+ * <p>
+ * Entries are dropped on Towny membership changes, siege start/end and quit, and otherwise live for
+ * performance.side-cache-ticks, which bounds staleness from changes Towny raises no event for (e.g. alliances).
+ * Safe to call from the web server thread.
+ */
+public class SiegeSideCache implements Listener {
+    private static final long NANOS_PER_TICK = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final ConcurrentHashMap<Siege, ConcurrentHashMap<UUID, Entry>> sides = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private static final class Entry {
+        final SiegeSide side;
+        final long expiresAtNanos;
+
+        Entry(SiegeSide side, long expiresAtNanos) {
+            this.side = side;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    public SiegeSideCache(SiegeStatsPlugin plugin) {
+        this.ttlNanos = Math.max(1L, plugin.getConfig().getLong("performance.side-cache-ticks", 20)) * NANOS_PER_TICK;
+    }
+
+    public SiegeSide getSide(Siege siege, Player player) {
+        if (siege == null || player == null) return SiegeSide.NOBODY;
+        long now = System.nanoTime();
+        Map<UUID, Entry> siegeSides = sides.computeIfAbsent(siege, s -> new ConcurrentHashMap<>());
+        Entry entry = siegeSides.get(player.getUniqueId());
+        if (entry != null && now - entry.expiresAtNanos < 0) {
+            hits.increment();
+            return entry.side;
+        }
+        misses.increment();
+        SiegeSide side = SiegeSide.getPlayerSiegeSide(siege, player);
+        siegeSides.put(player.getUniqueId(), new Entry(side, now + ttlNanos));
+        return side;
+    }
+
+    /** Siege started or ended: its attacker/defender governments may differ from what was cached. */
+    public void invalidate(Siege siege) {
+        if (siege != null && sides.remove(siege) != null) invalidations.increment();
+    }
+
+    public void invalidate(UUID playerUUID) {
+        for (Map<UUID, Entry> siegeSides : sides.values()) {
+            if (siegeSides.remove(playerUUID) != null) invalidations.increment();
+        }
+    }
+
+    public void invalidateAll() {
+        sides.clear();
+        invalidations.increment();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTownAddResident(TownAddResidentEvent event) {
+        if (event.getResident() != null) invalidate(event.getResident().getUUID());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTownRemoveResident(TownRemoveResidentEvent event) {
+        if (event.getResident() != null) invalidate(event.getResident().getUUID());
+    }
+
+    // A whole town changing nation moves every resident at once; rare enough to just start over
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNationAddTown(NationAddTownEvent event) {
+        invalidateAll();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onNationRemoveTown(NationRemoveTownEvent event) {
+        invalidateAll();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getInvalidations() { return invalidations.sum(); }
+
+    public int size() {
+        int size = 0;
+        for (Map<UUID, Entry> siegeSides : sides.values()) size += siegeSides.size();
+        return size;
+    }
+}
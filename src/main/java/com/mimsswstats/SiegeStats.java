@@ -3,31 +3,93 @@ package com.mimsswstats;
 import com.gmail.goosius.siegewar.enums.SiegeSide;
 import java.util.UUID; // Import UUID
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SiegeStats {
 
-    // ParticipantMetrics inner class remains the same (with side field added previously)
-    public static class ParticipantMetrics { /* ... */
-        private int kills = 0;
-        private int deaths = 0;
-        private double damage = 0.0;
-        private double controlTime = 0.0;
-        private int assists = 0;
-        private SiegeSide side = SiegeSide.NOBODY;
-        public int getKills() { return kills; }
-        public int getDeaths() { return deaths; }
-        public double getDamage() { return damage; }
-        public double getControlTime() { return controlTime; }
-        public int getAssists() { return assists; }
-        public SiegeSide getSide() { return side; }
-        void addKills(int k) { this.kills += k; }
-        void addDeaths(int d) { this.deaths += d; }
-        void addDamage(double dmg) { this.damage += dmg; }
-        void addControlTime(double time) { this.controlTime += time; }
-        void addAssist(int amount) { this.assists += amount; }
-        void setSide(SiegeSide side) { if (this.side == SiegeSide.NOBODY && side != SiegeSide.NOBODY) this.side = side; }
+    /**
+     * One player's totals within one siege. Counters are striped adders, so recording from several threads does not
+     * contend or lose updates and readers on other threads never see a torn double; use {@link #snapshot()} when
+     * several fields must agree with each other (e.g. for a ratio or a serialized row).
+     */
+    public static class ParticipantMetrics {
+        private final LongAdder kills = new LongAdder();
+        private final LongAdder deaths = new LongAdder();
+        private final DoubleAdder damage = new DoubleAdder();
+        private final DoubleAdder controlTime = new DoubleAdder();
+        private final LongAdder assists = new LongAdder();
+        private final AtomicReference<SiegeSide> side = new AtomicReference<>(SiegeSide.NOBODY);
+        public int getKills() { return (int) kills.sum(); }
+        public int getDeaths() { return (int) deaths.sum(); }
+        public double getDamage() { return damage.sum(); }
+        public double getControlTime() { return controlTime.sum(); }
+        public int getAssists() { return (int) assists.sum(); }
+        public SiegeSide getSide() { return side.get(); }
+        void addKills(int k) { this.kills.add(k); }
+        void addDeaths(int d) { this.deaths.add(d); }
+        void addDamage(double dmg) { this.damage.add(dmg); }
+        void addControlTime(double time) { this.controlTime.add(time); }
+        void addAssist(int amount) { this.assists.add(amount); }
+        void setSide(SiegeSide side) { if (side != SiegeSide.NOBODY) this.side.compareAndSet(SiegeSide.NOBODY, side); }
+        // Loading only: overwrites everything, including an already-set side.
+        void restore(int kills, int deaths, double damage, double controlTime, int assists, SiegeSide side) {
+            this.kills.reset();
+            this.kills.add(kills);
+            this.deaths.reset();
+            this.deaths.add(deaths);
+            this.damage.reset();
+            this.damage.add(damage);
+            this.controlTime.reset();
+            this.controlTime.add(controlTime);
+            this.assists.reset();
+            this.assists.add(assists);
+            this.side.set(side != null ? side : SiegeSide.NOBODY);
+        }
+
+        /**
+         * Reads every field until two passes agree. Recording only adds to these counters (only {@link #restore}
+         * overwrites them, while loading), so two equal passes mean nothing changed between them and the values held
+         * at the same instant. Under constant writes this gives up after a few passes and returns the last one.
+         */
+        public Snapshot snapshot() {
+            Snapshot previous = new Snapshot(this);
+            for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+                Snapshot current = new Snapshot(this);
+                if (current.sameAs(previous)) return current;
+                previous = current;
+            }
+            return previous;
+        }
+
+        /** Immutable copy of a {@link ParticipantMetrics}. */
+        public static final class Snapshot {
+            public final int kills;
+            public final int deaths;
+            public final double damage;
+            public final double controlTime;
+            public final int assists;
+            public final SiegeSide side;
+
+            private Snapshot(ParticipantMetrics metrics) {
+                this.kills = metrics.getKills();
+                this.deaths = metrics.getDeaths();
+                this.damage = metrics.getDamage();
+                this.controlTime = metrics.getControlTime();
+                this.assists = metrics.getAssists();
+                this.side = metrics.getSide();
+            }
+
+            private boolean sameAs(Snapshot other) {
+                return kills == other.kills && deaths == other.deaths && assists == other.assists && side == other.side
+                        && Double.compare(damage, other.damage) == 0 && Double.compare(controlTime, other.controlTime) == 0;
+            }
+        }
     }
 
+    static final int SNAPSHOT_ATTEMPTS = 4;
+
     // ... (SiegeStats fields: townName, siegeNumber, etc.) ...
     private final String townName;
     private final int siegeNumber;
@@ -37,6 +99,7 @@ public class SiegeStats {
     private boolean isActive;
     private boolean attackersWon;
     private boolean defendersWon;
+    private boolean dirty; // Changed since the last save; see SiegeStatsManager.markSiegeDirty
 
     // <<< Change Map Key from String to UUID >>>
     private final ConcurrentHashMap<UUID, ParticipantMetrics> participantMetrics;
@@ -90,5 +153,8 @@ public class SiegeStats {
     public void setDefendersWon(boolean defendersWon) { this.defendersWon = defendersWon; }
     public void setActive(boolean active) { isActive = active; }
     public void endSiege() { this.isActive = false; this.endTimeMillis = System.currentTimeMillis();}
+    boolean markDirty() { if (dirty) return false; dirty = true; return true; }
+    boolean isDirty() { return dirty; }
+    void clearDirty() { dirty = false; }
     public int whoWon(){ return defendersWon ? 2 : (attackersWon ? 1 : 0); }
 }
\ No newline at end of file
@@ -12,15 +12,18 @@ import net.kyori.adventure.text.format.TextDecoration;
 
 // Bukkit API Imports
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
 // Java Util Imports
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 // Towny & SiegeWar Imports
@@ -31,8 +34,9 @@ import com.gmail.goosius.siegewar.SiegeWarAPI;
 import com.gmail.goosius.siegewar.objects.Siege;
 
 
-public class SiegeStatsCommand implements CommandExecutor {
+public class SiegeStatsCommand implements CommandExecutor, TabCompleter {
     private final SiegeStatsPlugin plugin;
+    private final StatsLog log;
     private final SiegeStatsManager statsManager;
     private final BukkitAudiences adventure; // Adventure provider
 
@@ -64,6 +68,7 @@ public class SiegeStatsCommand implements CommandExecutor {
     // Constructor
     public SiegeStatsCommand(SiegeStatsPlugin plugin) {
         this.plugin = plugin;
+        this.log = plugin.getStatsLog();
         this.statsManager = plugin.getStatsManager();
         this.adventure = plugin.adventure(); // Get Adventure provider from main plugin class
     }
@@ -93,12 +98,39 @@ public class SiegeStatsCommand implements CommandExecutor {
             case "s":
                 handleSiegeStats(sender, args); // Initial call for page 1
                 break;
+            case "history":
+                handlePlayerHistory(sender, args);
+                break;
+            case "rank":
+                handleRank(sender, args);
+                break;
+            case "sieges":
+                handleTownHistory(sender, args);
+                break;
+            case "town":
+                handleGovernment(sender, args, GovernmentStats.Kind.TOWN);
+                break;
+            case "nation":
+                handleGovernment(sender, args, GovernmentStats.Kind.NATION);
+                break;
+            case "towns":
+                handleGovernmentTop(sender, args, GovernmentStats.Kind.TOWN);
+                break;
+            case "nations":
+                handleGovernmentTop(sender, args, GovernmentStats.Kind.NATION);
+                break;
             case "move":
                 handleSiegeMove(sender, args); // Handles pagination clicks
                 break;
+            case "season":
+                handleSeason(sender, args);
+                break;
             case "reset":
                 handleReset(sender, args);
                 break;
+            case "backup":
+                handleBackup(sender, args);
+                break;
             case "debug":
                 handleDebug(sender, args);
                 break;
@@ -108,17 +140,103 @@ public class SiegeStatsCommand implements CommandExecutor {
         return true;
     }
 
+    // --- Tab Completion ---
+
+    private static final int MAX_COMPLETIONS = 50;
+    private static final List<String> SUBCOMMANDS = List.of("player", "top", "siege", "history", "sieges", "rank", "season",
+            "town", "nation", "towns", "nations");
+    private static final List<String> ADMIN_SUBCOMMANDS = List.of("reset", "backup", "debug");
+    private static final List<String> TOP_STATS = List.of("kills", "dmg", "deaths", "assists", "kda", "captime", "wins");
+    private static final List<String> TOP_WINDOWS = List.of("all", "day", "week", "month");
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command cmd, String alias, String[] args) {
+        if (args.length == 1) {
+            List<String> options = new ArrayList<>(SUBCOMMANDS);
+            if (sender.hasPermission("siegestats.admin")) options.addAll(ADMIN_SUBCOMMANDS);
+            return startingWith(options, args[0]);
+        }
+        String prefix = args[args.length - 1];
+        switch (args[0].toLowerCase()) {
+            case "player":
+            case "p":
+            case "history":
+                // Names come from the manager's sorted index, so this is a range scan, not a pass over every player
+                return args.length == 2 ? statsManager.completePlayerNames(prefix, MAX_COMPLETIONS) : Collections.emptyList();
+            case "siege":
+            case "s":
+                if (args.length == 2) return statsManager.completeTownNames(prefix, MAX_COMPLETIONS);
+                if (args.length == 3) {
+                    List<String> numbers = new ArrayList<>();
+                    for (Integer number : statsManager.getSiegeIndex().getTownSieges(args[1]).keySet()) { // Newest first
+                        if (numbers.size() >= MAX_COMPLETIONS) break;
+                        if (number.toString().startsWith(prefix)) numbers.add(number.toString());
+                    }
+                    return numbers;
+                }
+                return Collections.emptyList();
+            case "sieges":
+                return args.length == 2 ? statsManager.completeTownNames(prefix, MAX_COMPLETIONS) : Collections.emptyList();
+            case "town":
+                return args.length == 2 ? statsManager.getGovernmentStats().complete(GovernmentStats.Kind.TOWN, prefix, MAX_COMPLETIONS)
+                        : Collections.emptyList();
+            case "nation":
+                return args.length == 2 ? statsManager.getGovernmentStats().complete(GovernmentStats.Kind.NATION, prefix, MAX_COMPLETIONS)
+                        : Collections.emptyList();
+            case "top":
+                if (args.length == 2) return startingWith(TOP_STATS, prefix);
+                return args.length <= 4 ? startingWith(TOP_WINDOWS, prefix) : Collections.emptyList();
+            case "rank":
+                if (args.length == 2) return statsManager.completePlayerNames(prefix, MAX_COMPLETIONS);
+                return args.length == 3 ? startingWith(TOP_STATS, prefix) : Collections.emptyList();
+            case "season":
+                if (args.length == 2) {
+                    return startingWith(sender.hasPermission("siegestats.admin")
+                            ? List.of("list", "top", "player", "end") : List.of("list", "top", "player"), prefix);
+                }
+                if (args.length == 3 && (args[1].equalsIgnoreCase("top") || args[1].equalsIgnoreCase("player"))) {
+                    List<String> names = new ArrayList<>();
+                    for (SeasonArchive.Season season : statsManager.getSeasonArchive().getSeasons()) names.add(season.name);
+                    return names.stream().filter(name -> name.toLowerCase().startsWith(prefix.toLowerCase())).collect(Collectors.toList());
+                }
+                if (args.length == 4 && args[1].equalsIgnoreCase("top")) return startingWith(TOP_STATS, prefix);
+                if (args.length == 4 && args[1].equalsIgnoreCase("player")) return statsManager.completePlayerNames(prefix, MAX_COMPLETIONS);
+                return Collections.emptyList();
+            case "backup":
+                return args.length == 2 && sender.hasPermission("siegestats.admin")
+                        ? startingWith(List.of("list", "now", "restore"), prefix) : Collections.emptyList();
+            case "debug":
+                return args.length == 2 && sender.hasPermission("siegestats.admin")
+                        ? startingWith(List.of("check", "load", "save"), prefix) : Collections.emptyList();
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    private static List<String> startingWith(List<String> options, String prefix) {
+        String lower = prefix.toLowerCase();
+        return options.stream().filter(option -> option.startsWith(lower)).collect(Collectors.toList());
+    }
+
     // --- Command Handlers ---
 
     private void sendHelpMessage(CommandSender sender){
         // Using legacy codes here is acceptable for simple help text
         sender.sendMessage("§6§l══════ SiegeStats Commands (/ss) ══════");
         sender.sendMessage("§e• §f/ss player <name> §7- View player's global stats");
-        sender.sendMessage("§e• §f/ss top <kills|dmg|deaths|assists|kda|captime> [count] §7- Top players");
+        sender.sendMessage("§e• §f/ss top <kills|dmg|deaths|assists|kda|captime|wins> [count] [day|week|month] §7- Top players");
         sender.sendMessage("§e• §f/ss siege <town> [number] §7- View specific siege stats (Paginated)");
+        sender.sendMessage("§e• §f/ss history <player> [count] §7- Player's recent sieges");
+        sender.sendMessage("§e• §f/ss rank <player> [stat] §7- Player's leaderboard rank and neighbours");
+        sender.sendMessage("§e• §f/ss sieges <town> [count] §7- Town's siege history");
+        sender.sendMessage("§e• §f/ss town <town> §7| §f/ss nation <nation> §7- Siege record of a town or nation");
+        sender.sendMessage("§e• §f/ss towns [count] §7| §f/ss nations [count] §7- Towns or nations with the most siege wins");
+        sender.sendMessage("§e• §f/ss season <list|top <season> <stat> [count]|player <season> <name>> §7- Past seasons");
         if (sender.hasPermission("siegestats.admin")) {
             sender.sendMessage("§cAdmin Commands:");
-            sender.sendMessage("§e• §f/ss reset §7- Reset ALL stats");
+            sender.sendMessage("§e• §f/ss reset §7- Reset ALL stats, archived seasons included");
+            sender.sendMessage("§e• §f/ss season end <name> §7- Archive this season and start a new one");
+            sender.sendMessage("§e• §f/ss backup <list|now|restore <name>> §7- Stats backups");
             sender.sendMessage("§e• §f/ss debug <check|load|save> §7- Debug commands");
         }
         sender.sendMessage("§6§l═══════════════════════════════════");
@@ -127,17 +245,17 @@ public class SiegeStatsCommand implements CommandExecutor {
     private void handlePlayerStats(CommandSender sender, String[] args) {
         if (args.length < 2) { sender.sendMessage("§cUsage: /ss player <name>"); return; }
         String playerName = args[1];
-        plugin.getLogger().info("[DEBUG] handlePlayerStats: Looking up stats for '" + playerName + "'");
+        log.debug(StatsLog.Category.COMMAND, () -> "handlePlayerStats: Looking up stats for '" + playerName + "'");
 
         PlayerStats playerStats = statsManager.getPlayerStatsByName(playerName);
         String displayName = (playerStats != null) ? playerStats.getLastKnownName() : playerName;
 
         if (playerStats == null || playerStats.getTotalSiegesParticipated() == 0) {
             sender.sendMessage("§c✖ Player " + displayName + " not found or has no recorded siege participation.");
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Player '" + displayName + "' not found or no participation.");
+            log.debug(StatsLog.Category.COMMAND, () -> "handlePlayerStats: Player '" + displayName + "' not found or no participation.");
             return;
         }
-        plugin.getLogger().info("[DEBUG] handlePlayerStats: Found stats for '" + displayName + "'");
+        log.debug(StatsLog.Category.COMMAND, () -> "handlePlayerStats: Found stats for '" + displayName + "'");
 
         // Calculate stats safely
         double kdRatio = 0, kdaRatio = 0, winRatePercent = 0;
@@ -145,9 +263,9 @@ public class SiegeStatsCommand implements CommandExecutor {
             kdRatio = playerStats.getKillDeathRatio();
             kdaRatio = playerStats.getKdaRatio();
             winRatePercent = playerStats.getWinLossRatio() * 100.0;
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Calculated ratios.");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Calculated ratios.");
         } catch (Exception e) {
-            plugin.getLogger().severe("[DEBUG] handlePlayerStats: Error calculating ratios for " + displayName);
+            log.error(StatsLog.Category.COMMAND, "handlePlayerStats: Error calculating ratios for " + displayName);
             sender.sendMessage("§cError calculating stats for this player.");
             return;
         }
@@ -155,13 +273,13 @@ public class SiegeStatsCommand implements CommandExecutor {
         // Get Audience and send messages
         Audience audience = adventure.sender(sender);
         try {
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending Header...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending Header...");
             audience.sendMessage(Component.text("═ " + displayName + "'s Global Siege Stats ═", NamedTextColor.GOLD, TextDecoration.BOLD));
 
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending Combat Header...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending Combat Header...");
             audience.sendMessage(Component.text(" Combat:", NamedTextColor.YELLOW));
 
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending KDA Line...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending KDA Line...");
             audience.sendMessage(Component.text()
                     .append(Component.text("  • ", NamedTextColor.GRAY))
                     .append(Component.text("K/D/A: ", NamedTextColor.WHITE))
@@ -172,7 +290,7 @@ public class SiegeStatsCommand implements CommandExecutor {
                     .append(Component.text(playerStats.getTotalAssists(), NamedTextColor.AQUA))
             );
 
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending Ratio Line...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending Ratio Line...");
             audience.sendMessage(Component.text()
                     .append(Component.text("  • ", NamedTextColor.GRAY))
                     .append(Component.text("K/D Ratio: ", NamedTextColor.WHITE))
@@ -182,20 +300,20 @@ public class SiegeStatsCommand implements CommandExecutor {
                     .append(Component.text(String.format("%.2f", kdaRatio), NamedTextColor.YELLOW))
             );
 
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending Damage Line...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending Damage Line...");
             audience.sendMessage(Component.text()
                     .append(Component.text("  • ", NamedTextColor.GRAY))
                     .append(Component.text("Damage Dealt: ", NamedTextColor.WHITE))
                     .append(Component.text(String.format("%.1f", playerStats.getTotalDamage()), NamedTextColor.GOLD))
             );
 
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending Spacer...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending Spacer...");
             audience.sendMessage(Component.text(" ")); // Spacer
 
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending Sieges Header...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending Sieges Header...");
             audience.sendMessage(Component.text(" Sieges:", NamedTextColor.YELLOW));
 
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending Participation Line...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending Participation Line...");
             audience.sendMessage(Component.text()
                     .append(Component.text("  • ", NamedTextColor.GRAY))
                     .append(Component.text("Participated: ", NamedTextColor.WHITE))
@@ -209,19 +327,19 @@ public class SiegeStatsCommand implements CommandExecutor {
                     .append(Component.text(String.format(" (Rate: %.1f%%)", winRatePercent), NamedTextColor.YELLOW))
             );
 
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending Capture Time Line...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending Capture Time Line...");
             audience.sendMessage(Component.text()
                     .append(Component.text("  • ", NamedTextColor.GRAY))
                     .append(Component.text("Banner Control Time: ", NamedTextColor.WHITE))
                     .append(Component.text(String.format("%.2fm", playerStats.getTotalCaptureTime()), NamedTextColor.LIGHT_PURPLE))
             );
 
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Sending Footer...");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Sending Footer...");
             audience.sendMessage(Component.text("═══════════════════════════════════════════════", NamedTextColor.GOLD, TextDecoration.BOLD));
-            plugin.getLogger().info("[DEBUG] handlePlayerStats: Finished sending all messages.");
+            log.debug(StatsLog.Category.COMMAND, "handlePlayerStats: Finished sending all messages.");
 
         } catch (Exception e) {
-            plugin.getLogger().severe("[DEBUG] handlePlayerStats: Error sending message components for " + displayName);
+            log.error(StatsLog.Category.COMMAND, "handlePlayerStats: Error sending message components for " + displayName);
             sender.sendMessage("§cAn error occurred while displaying stats.");
         }
     }
@@ -372,7 +490,7 @@ public class SiegeStatsCommand implements CommandExecutor {
                 Map.Entry<UUID, SiegeStats.ParticipantMetrics> entry = view.sortedParticipants.get(i);
                 UUID playerUUID = entry.getKey();
                 SiegeStats.ParticipantMetrics metrics = entry.getValue();
-                String playerName = Bukkit.getOfflinePlayer(playerUUID).getName();
+                String playerName = plugin.getNameCache().getName(playerUUID);
                 if (playerName == null) playerName = "Unknown (" + playerUUID.toString().substring(0, 6) + ")";
 
                 double kda = (metrics.getDeaths() == 0) ? (metrics.getKills() + metrics.getAssists()) : ((double) (metrics.getKills() + metrics.getAssists()) / metrics.getDeaths());
@@ -482,61 +600,391 @@ public class SiegeStatsCommand implements CommandExecutor {
     // Handles /ss top ...
     private void handleTopPlayers(CommandSender sender, String[] args) {
         if (args.length < 2) {
-            sender.sendMessage("§cUsage: /ss top <kills|dmg|deaths|assists|kda|captime> [count]");
+            sender.sendMessage("§cUsage: /ss top <kills|dmg|deaths|assists|kda|captime|wins> [count] [all|day|week|month]");
             return;
         }
-        String statType = args[1].toLowerCase();
+        LeaderboardStat stat = LeaderboardStat.fromName(args[1]);
+        if (stat == null) { sender.sendMessage("§cInvalid stat type."); return; }
         int topCount = 10;
+        StatWindow window = StatWindow.ALL;
+        for (int i = 2; i < args.length && i < 4; i++) { // Count and window, in either order
+            StatWindow named = StatWindow.fromName(args[i]);
+            if (named != null) { window = named; continue; }
+            try { topCount = Integer.parseInt(args[i]); if (topCount < 1 || topCount > 50) topCount = 10; }
+            catch (NumberFormatException e) { sender.sendMessage("§cInvalid count or time window."); return; }
+        }
+        final int count = topCount;
+
+        // Read straight from the live leaderboards: O(k), so no need to go through (or off) the query thread
+        List<StatsQueries.RankedPlayer> ranked = statsManager.getLeaderboards(window).top(stat, count);
+        sender.sendMessage("§6§l═ Top " + count + " Players by " + stat.getDisplayName()
+                + (window == StatWindow.ALL ? "" : " (" + window.getDisplayName() + ")") + " ═");
+        if (ranked.isEmpty()) { sender.sendMessage("§7No players found with recorded stats."); }
+        else {
+            for (int i = 0; i < ranked.size(); i++) {
+                StatsQueries.RankedPlayer entry = ranked.get(i);
+                sender.sendMessage(String.format("§e%d. §f%s §7» §6%s",
+                        i + 1, entry.name, stat.format(entry.value)
+                ));
+            }
+        }
+        sender.sendMessage("§6§l═══════════════════════════");
+    }
+
+    // Handles /ss rank <player> [stat]
+    private static final int RANK_NEIGHBOURS = 3; // Rows shown either side of the player
+
+    /** Rank lookups walk the leaderboards off the main thread, then reply on it. */
+    private void handleRank(CommandSender sender, String[] args) {
+        if (args.length < 2) { sender.sendMessage("§cUsage: /ss rank <player> [kills|dmg|deaths|assists|kda|captime|wins]"); return; }
+        LeaderboardStat stat = null;
         if (args.length >= 3) {
-            try { topCount = Integer.parseInt(args[2]); if (topCount < 1 || topCount > 50) topCount = 10; }
-            catch (NumberFormatException e) { sender.sendMessage("§cInvalid count."); return; }
+            stat = LeaderboardStat.fromName(args[2]);
+            if (stat == null) { sender.sendMessage("§cInvalid stat type."); return; }
         }
+        PlayerStats playerStats = statsManager.getPlayerStatsByName(args[1]);
+        if (playerStats == null || playerStats.getTotalSiegesParticipated() == 0) {
+            sender.sendMessage("§c✖ Player " + args[1] + " not found or has no recorded siege participation.");
+            return;
+        }
+        UUID playerUUID = playerStats.getPlayerUUID();
+        String displayName = playerStats.getLastKnownName();
+        Leaderboards leaderboards = statsManager.getLeaderboards();
+        LeaderboardStat requested = stat;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<Leaderboards.Standing> standings = new ArrayList<>();
+            if (requested != null) {
+                standings.add(leaderboards.standing(requested, playerUUID, RANK_NEIGHBOURS));
+            } else {
+                for (LeaderboardStat each : LeaderboardStat.values()) standings.add(leaderboards.standing(each, playerUUID, 0));
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> sendRank(sender, displayName, requested, standings));
+        });
+    }
 
-        ConcurrentHashMap<UUID, PlayerStats> allPlayerStats = statsManager.getAllPlayerStats();
+    private void sendRank(CommandSender sender, String displayName, LeaderboardStat requested, List<Leaderboards.Standing> standings) {
+        if (requested == null) {
+            sender.sendMessage("§6§l═ " + displayName + "'s Ranks ═");
+            for (Leaderboards.Standing standing : standings) {
+                if (standing == null) continue;
+                sender.sendMessage(String.format("§e%s: §f#%d §7of %d §8(ahead of %.1f%%) §7» §6%s", standing.stat.getDisplayName(),
+                        standing.player.rank, standing.total, standing.percentile, standing.stat.format(standing.player.value)));
+            }
+        } else {
+            Leaderboards.Standing standing = standings.get(0);
+            if (standing == null) { sender.sendMessage("§c✖ " + displayName + " is not ranked."); return; }
+            sender.sendMessage("§6§l═ " + displayName + " by " + requested.getDisplayName() + " ═");
+            sender.sendMessage(String.format("§eRank §f#%d §7of %d §8(ahead of %.1f%% of ranked players)",
+                    standing.player.rank, standing.total, standing.percentile));
+            for (Leaderboards.Row row : standing.rows) {
+                String color = row == standing.player ? "§a" : "§f";
+                sender.sendMessage(String.format("§e%d. %s%s §7» §6%s", row.rank, color, row.name, requested.format(row.value)));
+            }
+        }
+        sender.sendMessage("§6§l═══════════════════════════");
+    }
 
-        Comparator<PlayerStats> comparator;
-        java.util.function.Function<PlayerStats, String> valueExtractor;
-        String headerTitle;
+    // Handles /ss history <player> [count]
+    private void handlePlayerHistory(CommandSender sender, String[] args) {
+        if (args.length < 2) { sender.sendMessage("§cUsage: /ss history <player> [count]"); return; }
+        int count = parseHistoryCount(sender, args);
+        if (count < 0) return;
+        PlayerStats playerStats = statsManager.getPlayerStatsByName(args[1]);
+        if (playerStats == null || playerStats.getTotalSiegesParticipated() == 0) {
+            sender.sendMessage("§c✖ Player " + args[1] + " not found or has no recorded siege participation.");
+            return;
+        }
+        UUID playerUUID = playerStats.getPlayerUUID();
+        String displayName = playerStats.getLastKnownName();
+        runQuery(sender, queries -> queries.playerSiegeHistory(playerUUID, count),
+                sieges -> sendSiegeHistory(sender, "═ " + displayName + "'s Recent Sieges ═", sieges, true));
+    }
+
+    // Handles /ss sieges <town> [count]
+    private void handleTownHistory(CommandSender sender, String[] args) {
+        if (args.length < 2) { sender.sendMessage("§cUsage: /ss sieges <town> [count]"); return; }
+        int count = parseHistoryCount(sender, args);
+        if (count < 0) return;
+        String townName = args[1];
+        runQuery(sender, queries -> queries.townSiegeHistory(townName, count),
+                sieges -> sendSiegeHistory(sender, "═ Siege History of " + townName + " ═", sieges, false));
+    }
 
-        switch (statType) {
-            case "kills": headerTitle = "Kills"; comparator = Comparator.comparingInt(PlayerStats::getTotalKills).reversed(); valueExtractor = stats -> ""+stats.getTotalKills(); break;
-            case "damage": case "dmg": headerTitle = "Damage"; comparator = Comparator.comparingDouble(PlayerStats::getTotalDamage).reversed(); valueExtractor = stats -> String.format("%.1f", stats.getTotalDamage()); break;
-            case "deaths": headerTitle = "Deaths"; comparator = Comparator.comparingInt(PlayerStats::getTotalDeaths).reversed(); valueExtractor = stats -> ""+stats.getTotalDeaths(); break;
-            case "assists": headerTitle = "Assists"; comparator = Comparator.comparingInt(PlayerStats::getTotalAssists).reversed(); valueExtractor = stats -> ""+stats.getTotalAssists(); break;
-            case "kda": headerTitle = "KDA"; comparator = Comparator.comparingDouble(PlayerStats::getKdaRatio).reversed(); valueExtractor = stats -> String.format("%.2f", stats.getKdaRatio()); break;
-            case "captime": headerTitle = "CapTime"; comparator = Comparator.comparingDouble(PlayerStats::getTotalCaptureTime).reversed(); valueExtractor = stats -> String.format("%.2f", stats.getTotalCaptureTime()) + "m"; break;
-            default: sender.sendMessage("§cInvalid stat type."); return;
+    // Handles /ss town <name> and /ss nation <name>, straight from the in-memory records
+    private void handleGovernment(CommandSender sender, String[] args, GovernmentStats.Kind kind) {
+        String label = kind == GovernmentStats.Kind.TOWN ? "town" : "nation";
+        if (args.length < 2) { sender.sendMessage("§cUsage: /ss " + label + " <name>"); return; }
+        GovernmentStats.Totals totals = statsManager.getGovernmentStats().get(kind, args[1]);
+        if (totals == null) {
+            sender.sendMessage("§c✖ No siege record for " + label + " " + args[1] + " this season.");
+            return;
         }
+        GovernmentStats.Snapshot record = totals.snapshot();
+        sender.sendMessage("§6§l═ Siege Record of " + record.name + " ═");
+        sender.sendMessage(String.format("§e Sieges: §f%d attacked, %d defended", record.siegesAttacked, record.siegesDefended));
+        sender.sendMessage(String.format("§e W/L: §f%d/%d §7(%.1f%%)", record.wins, record.losses, record.getWinRate() * 100.0));
+        sender.sendMessage(String.format("§e K/D/A: §f%d/%d/%d §7(KDA %.2f)", record.kills, record.deaths, record.assists, record.getKdaRatio()));
+        sender.sendMessage(String.format("§e Damage: §f%.1f §e Capture time: §f%.2fm", record.damage, record.captureTime));
+        sender.sendMessage("§6§l═══════════════════════════");
+    }
 
-        sender.sendMessage("§6§l═ Top " + topCount + " Players by " + headerTitle + " ═");
+    // Handles /ss towns [count] and /ss nations [count]
+    private void handleGovernmentTop(CommandSender sender, String[] args, GovernmentStats.Kind kind) {
+        int count = 10;
+        if (args.length >= 2) {
+            try { count = Integer.parseInt(args[1]); if (count < 1 || count > 50) count = 10; }
+            catch (NumberFormatException e) { sender.sendMessage("§cInvalid count."); return; }
+        }
+        List<GovernmentStats.Snapshot> top = statsManager.getGovernmentStats().top(kind, count);
+        sender.sendMessage("§6§l═ Top " + count + (kind == GovernmentStats.Kind.TOWN ? " Towns" : " Nations") + " by Siege Wins ═");
+        if (top.isEmpty()) sender.sendMessage("§7No siege records yet.");
+        for (int i = 0; i < top.size(); i++) {
+            GovernmentStats.Snapshot record = top.get(i);
+            sender.sendMessage(String.format("§e%d. §f%s §7» §6%d W §7/ %d L §7(%d sieges, %d kills)",
+                    i + 1, record.name, record.wins, record.losses, record.getSieges(), record.kills));
+        }
+        sender.sendMessage("§6§l═══════════════════════════");
+    }
 
-        List<PlayerStats> sortedStats = allPlayerStats.values().stream()
-                .filter(stats -> stats.getTotalSiegesParticipated() > 0) 
-                .sorted(comparator)
-                .limit(topCount)
-                .collect(Collectors.toList());
+    /** @return the optional count argument (1-50, default 10), or -1 after telling the sender it is invalid. */
+    private int parseHistoryCount(CommandSender sender, String[] args) {
+        if (args.length < 3) return 10;
+        try {
+            int count = Integer.parseInt(args[2]);
+            return (count < 1 || count > 50) ? 10 : count;
+        } catch (NumberFormatException e) {
+            sender.sendMessage("§cInvalid count.");
+            return -1;
+        }
+    }
 
-        if (sortedStats.isEmpty()) { sender.sendMessage("§7No players found with recorded stats."); }
-        else {
-            for (int i = 0; i < sortedStats.size(); i++) {
-                PlayerStats stats = sortedStats.get(i);
-                sender.sendMessage(String.format("§e%d. §f%s §7» §6%s",
-                        i + 1, stats.getLastKnownName(), valueExtractor.apply(stats)
-                ));
+    private void sendSiegeHistory(CommandSender sender, String header, List<SiegeArchive.Summary> sieges, boolean showTown) {
+        sender.sendMessage("§6§l" + header);
+        if (sieges.isEmpty()) {
+            sender.sendMessage("§7No completed sieges found.");
+        }
+        SimpleDateFormat dateFormat = new SimpleDateFormat(plugin.getConfig().getString("formatting.date-format", "MM/dd/yyyy HH:mm:ss"));
+        for (SiegeArchive.Summary siege : sieges) {
+            String result = siege.attackersWon() ? "§cAttackers won" : (siege.defendersWon() ? "§aDefenders won" : "§7No winner");
+            sender.sendMessage(String.format("§e%s#%d §7%s §7» %s §7(%.0f min, %d players)",
+                    showTown ? "§f" + siege.townName + " §e" : "", siege.siegeNumber,
+                    dateFormat.format(new Date(siege.endTimeMillis)), result,
+                    siege.getDurationMinutes(), siege.participantCount));
+        }
+        sender.sendMessage("§6§l═══════════════════════════");
+    }
+
+    @FunctionalInterface
+    private interface Query<T> {
+        T run(StatsQueries queries) throws IOException;
+    }
+
+    /**
+     * Runs a stats lookup and shows its result. Database lookups run off the main thread and report back
+     * on it; in-memory lookups run inline.
+     */
+    private <T> void runQuery(CommandSender sender, Query<T> query, Consumer<T> display) {
+        StatsQueries queries = statsManager.getStatsQueries();
+        if (!queries.isBlocking()) {
+            try {
+                display.accept(query.run(queries));
+            } catch (IOException e) {
+                log.warn(StatsLog.Category.COMMAND, "Stats lookup failed: " + e.getMessage());
+                sender.sendMessage("§cCould not look up stats, see console.");
             }
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                T result = query.run(queries);
+                Bukkit.getScheduler().runTask(plugin, () -> display.accept(result));
+            } catch (IOException e) {
+                log.warn(StatsLog.Category.COMMAND, "Stats lookup failed: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage("§cCould not look up stats, see console."));
+            }
+        });
+    }
+
+    // Handles /ss season list|top <season> <stat> [count]|player <season> <name>|end <name>
+    private void handleSeason(CommandSender sender, String[] args) {
+        if (args.length < 2) { sender.sendMessage("§cUsage: /ss season <list|top|player|end>"); return; }
+        SeasonArchive seasons = statsManager.getSeasonArchive();
+        String action = args[1].toLowerCase();
+        if (action.equals("list")) {
+            sendSeasonList(sender, seasons);
+            return;
+        }
+        if (action.equals("end")) {
+            endSeason(sender, args, seasons);
+            return;
+        }
+        if (!action.equals("top") && !action.equals("player")) {
+            sender.sendMessage("§cUsage: /ss season <list|top|player|end>");
+            return;
+        }
+        if (args.length < 4) {
+            sender.sendMessage(action.equals("top") ? "§cUsage: /ss season top <season> <kills|dmg|deaths|assists|kda|captime|wins> [count]"
+                    : "§cUsage: /ss season player <season> <name>");
+            return;
+        }
+        SeasonArchive.Season season = seasons.get(args[2]);
+        if (season == null) { sender.sendMessage("§c✖ No archived season named " + args[2] + ". See /ss season list."); return; }
+        if (!season.isSaved()) { sender.sendMessage("§eSeason " + season.name + " is still being archived; try again in a moment."); return; }
+
+        if (action.equals("player")) {
+            String playerName = args[3];
+            runSeasonQuery(sender, () -> seasons.findPlayer(season, playerName), record -> sendSeasonPlayer(sender, season, playerName, record));
+            return;
+        }
+        LeaderboardStat stat = LeaderboardStat.fromName(args[3]);
+        if (stat == null) { sender.sendMessage("§cInvalid stat type."); return; }
+        int topCount = 10;
+        if (args.length >= 5) {
+            try { topCount = Integer.parseInt(args[4]); if (topCount < 1 || topCount > 50) topCount = 10; }
+            catch (NumberFormatException e) { sender.sendMessage("§cInvalid count."); return; }
+        }
+        final int count = topCount;
+        runSeasonQuery(sender, () -> seasons.top(season, stat, count), ranked -> {
+            sender.sendMessage("§6§l═ Season " + season.name + ": Top " + count + " by " + stat.getDisplayName() + " ═");
+            if (ranked.isEmpty()) sender.sendMessage("§7No players found with recorded stats.");
+            for (int i = 0; i < ranked.size(); i++) {
+                StatsQueries.RankedPlayer entry = ranked.get(i);
+                sender.sendMessage(String.format("§e%d. §f%s §7» §6%s", i + 1, entry.name, stat.format(entry.value)));
+            }
+            sender.sendMessage("§6§l═══════════════════════════");
+        });
+    }
+
+    private void sendSeasonList(CommandSender sender, SeasonArchive seasons) {
+        List<SeasonArchive.Season> list = seasons.getSeasons();
+        SimpleDateFormat dateFormat = new SimpleDateFormat(plugin.getConfig().getString("formatting.date-format", "MM/dd/yyyy HH:mm:ss"));
+        sender.sendMessage("§6§l═ Seasons (" + list.size() + " archived) ═");
+        if (list.isEmpty()) sender.sendMessage("§7No seasons have ended yet.");
+        for (SeasonArchive.Season season : list) {
+            sender.sendMessage(String.format("§e%s §7%s → %s §f%d players, %d sieges%s", season.name,
+                    season.startedAtMillis == 0 ? "start" : dateFormat.format(new Date(season.startedAtMillis)),
+                    dateFormat.format(new Date(season.endedAtMillis)), season.playerCount, season.siegeCount,
+                    season.isSaved() ? "" : " §7(saving)"));
+        }
+        long currentStart = seasons.getCurrentSeasonStart();
+        sender.sendMessage("§7Current season since " + (currentStart == 0 ? "the start" : dateFormat.format(new Date(currentStart))) + ".");
+    }
+
+    private void endSeason(CommandSender sender, String[] args, SeasonArchive seasons) {
+        if (!sender.hasPermission("siegestats.admin")) {
+            sender.sendMessage("§cYou do not have permission."); return;
+        }
+        if (args.length < 3) { sender.sendMessage("§cUsage: /ss season end <name>"); return; }
+        String name = args[2];
+        if (!SeasonArchive.isValidName(name)) {
+            sender.sendMessage("§cSeason names are 1-32 letters, digits, '-' or '_'."); return;
+        }
+        if (seasons.get(name) != null) { sender.sendMessage("§c✖ A season named " + name + " already exists."); return; }
+        SeasonArchive.Season season = statsManager.endSeason(name);
+        sender.sendMessage("§a✔ Season " + season.name + " archived (" + season.playerCount + " players, "
+                + season.siegeCount + " sieges). A new season has started.");
+        Audience broadcastAudience = adventure.permission("siegestats.admin");
+        broadcastAudience.sendMessage(Component.text("[SiegeStats] Season " + season.name + " was ended by " + sender.getName(), NamedTextColor.YELLOW));
+    }
+
+    private void sendSeasonPlayer(CommandSender sender, SeasonArchive.Season season, String playerName, SeasonArchive.PlayerRecord record) {
+        if (record == null || record.totals.siegesParticipated == 0) {
+            sender.sendMessage("§c✖ Player " + playerName + " has no recorded siege participation in season " + season.name + ".");
+            return;
+        }
+        PlayerStats.Snapshot totals = record.totals;
+        sender.sendMessage("§6§l═ " + record.name + " in Season " + season.name + " ═");
+        sender.sendMessage(String.format("§e K/D/A: §f%d/%d/%d §7(KDR %.2f, KDA %.2f)", totals.kills, totals.deaths, totals.assists,
+                totals.getKillDeathRatio(), totals.getKdaRatio()));
+        sender.sendMessage(String.format("§e Damage: §f%.1f §e Capture time: §f%.2fm", totals.damage, totals.captureTime));
+        sender.sendMessage(String.format("§e Sieges: §f%d §e W/L: §f%d/%d §7(%.1f%%)", totals.siegesParticipated, totals.wins,
+                totals.losses, totals.getWinLossRatio() * 100.0));
+        StringBuilder ranks = new StringBuilder("§e Ranks §7(of " + record.rankedCount + "): ");
+        for (LeaderboardStat stat : LeaderboardStat.values()) {
+            if (stat.ordinal() > 0) ranks.append("§7, ");
+            ranks.append("§f").append(stat.getDisplayName()).append(" #").append(record.getRank(stat));
         }
+        sender.sendMessage(ranks.toString());
         sender.sendMessage("§6§l═══════════════════════════");
     }
 
+    @FunctionalInterface
+    private interface SeasonQuery<T> {
+        T run() throws IOException;
+    }
+
+    /** Season lookups read the season's file, so they always run off the main thread and report back on it. */
+    private <T> void runSeasonQuery(CommandSender sender, SeasonQuery<T> query, Consumer<T> display) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                T result = query.run();
+                Bukkit.getScheduler().runTask(plugin, () -> display.accept(result));
+            } catch (IOException e) {
+                log.warn(StatsLog.Category.COMMAND, "Season lookup failed: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage("§cCould not read the season archive, see console."));
+            }
+        });
+    }
+
     // Handles /ss reset
     private void handleReset(CommandSender sender, String[] args) { 
         if (!sender.hasPermission("siegestats.admin")) {
             sender.sendMessage("§cYou do not have permission."); return;
         }
-        statsManager.resetAllStats();
-        sender.sendMessage("§a✔ All siege stats have been reset.");
-        Audience broadcastAudience = adventure.permission("siegestats.admin");
-        broadcastAudience.sendMessage(Component.text("[SiegeStats] All stats were reset by " + sender.getName(), NamedTextColor.YELLOW));
+        boolean started = statsManager.resetAllStats(reset -> {
+            if (!reset) {
+                sender.sendMessage("§c✖ The pre-reset backup failed, so nothing was reset. See console.");
+                return;
+            }
+            sender.sendMessage("§a✔ All siege stats have been reset.");
+            Audience broadcastAudience = adventure.permission("siegestats.admin");
+            broadcastAudience.sendMessage(Component.text("[SiegeStats] All stats were reset by " + sender.getName(), NamedTextColor.YELLOW));
+        });
+        if (!started) sender.sendMessage("§c✖ Another reset or restore is still in progress.");
+    }
+
+    // Handles /ss backup list|now|restore <name> [confirm]
+    private void handleBackup(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("siegestats.admin")) {
+            sender.sendMessage("§cYou do not have permission."); return;
+        }
+        if (args.length < 2) { sender.sendMessage("§cUsage: /ss backup <list|now|restore <name>>"); return; }
+        BackupManager backups = statsManager.getBackupManager();
+        switch (args[1].toLowerCase()) {
+            case "list": {
+                List<BackupManager.Backup> list = backups.list();
+                sender.sendMessage("§6§l═ Stats Backups (" + list.size() + ") ═");
+                if (list.isEmpty()) sender.sendMessage("§7No backups yet.");
+                SimpleDateFormat dateFormat = new SimpleDateFormat(plugin.getConfig().getString("formatting.date-format", "MM/dd/yyyy HH:mm:ss"));
+                for (BackupManager.Backup backup : list) {
+                    sender.sendMessage(String.format("§e%s §7%s §f%d KB%s", backup.name, dateFormat.format(new Date(backup.createdMillis)),
+                            backup.sizeBytes / 1024, backup.tag != null ? " §7(" + backup.tag + ")" : ""));
+                }
+                break;
+            }
+            case "now":
+                sender.sendMessage("§7Creating backup...");
+                statsManager.createBackup("manual").completed.whenComplete((backup, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (error != null) sender.sendMessage("§c✖ Backup failed, see console.");
+                    else sender.sendMessage("§a✔ Backup " + backup.name + " created (" + backup.sizeBytes / 1024 + " KB).");
+                }));
+                break;
+            case "restore": {
+                if (args.length < 3) { sender.sendMessage("§cUsage: /ss backup restore <name> [confirm]"); return; }
+                BackupManager.Backup backup = backups.find(args[2]);
+                if (backup == null) { sender.sendMessage("§c✖ No backup named " + args[2] + ". Use /ss backup list."); return; }
+                if (args.length < 4 || !args[3].equalsIgnoreCase("confirm")) {
+                    sender.sendMessage("§eThis replaces ALL current stats with " + backup.name + " (a pre-restore backup is taken first).");
+                    sender.sendMessage("§eRun §f/ss backup restore " + backup.name + " confirm §eto continue.");
+                    return;
+                }
+                sender.sendMessage("§7Restoring " + backup.name + "...");
+                statsManager.restoreBackup(backup, sender::sendMessage);
+                break;
+            }
+            default:
+                sender.sendMessage("§cUnknown backup command.");
+        }
     }
 
     // Handles /ss debug ...
@@ -17,9 +17,17 @@ public final class SiegeStatsPlugin extends JavaPlugin {
     private SiegeStatsManager statsManager;
     private SiegeListener siegeListener;
     private BannerControlListener bannerControlListener;
+    private SiegeZoneIndex siegeZoneIndex;
+    private SiegeSideCache sideCache;
+    private DamageBatcher damageBatcher;
+    private PlayerNameCache nameCache;
+    private StatsLog statsLog;
+    private TimerWheel timerWheel;
     private WebServerManager webServerManager; // Added
 
     private BukkitAudiences adventure;
+    private static final long ZONE_INDEX_REBUILD_TICKS = 20L * 60L;
+    private static final long TIMER_WHEEL_TICK_MS = 1000L;
     // private static final long SAVE_INTERVAL_TICKS = 20L * 300L; // Using config value
 
     public BukkitAudiences adventure() {
@@ -37,6 +45,8 @@ public final class SiegeStatsPlugin extends JavaPlugin {
 
         saveDefaultConfig(); // Ensure config.yml exists
         FileConfiguration config = getConfig(); // Load config
+        this.statsLog = new StatsLog(getLogger());
+        this.statsLog.configure(config);
 
         if (!getDataFolder().exists()) {
             if (!getDataFolder().mkdirs()) {
@@ -48,20 +58,45 @@ public final class SiegeStatsPlugin extends JavaPlugin {
         // Copy web resources if they don't exist externally
         copyDefaultWebResources(); // <<< NEW METHOD CALL
 
+        this.timerWheel = new TimerWheel(TIMER_WHEEL_TICK_MS, System.currentTimeMillis());
+        this.nameCache = new PlayerNameCache(this); // Seeded by the manager's first load
         this.statsManager = new SiegeStatsManager(this);
+        this.siegeZoneIndex = new SiegeZoneIndex(this);
+        this.sideCache = new SiegeSideCache(this);
+        this.damageBatcher = new DamageBatcher(this);
         this.siegeListener = new SiegeListener(this);
         this.bannerControlListener = new BannerControlListener(this);
 
         getServer().getPluginManager().registerEvents(siegeListener, this);
         getServer().getPluginManager().registerEvents(bannerControlListener, this);
+        getServer().getPluginManager().registerEvents(sideCache, this);
+        getServer().getPluginManager().registerEvents(nameCache, this);
         getServer().getPluginManager().registerEvents(new PlayerDeathListener(this), this);
         getServer().getPluginManager().registerEvents(new PlayerDamageListener(this), this);
         getServer().getPluginManager().registerEvents(new SiegeCompletionListener(this), this);
 
-        getCommand("siegestats").setExecutor(new SiegeStatsCommand(this));
+        SiegeStatsCommand command = new SiegeStatsCommand(this);
+        getCommand("siegestats").setExecutor(command);
+        getCommand("siegestats").setTabCompleter(command);
+
+        // Sieges already running when we enable never fire a start event; the periodic rebuild also
+        // picks up sieges SiegeWar creates or removes without one.
+        getServer().getScheduler().runTaskTimer(this, this.siegeZoneIndex::rebuild, 1L, ZONE_INDEX_REBUILD_TICKS);
+
+        // Expires combat state (assist damage, banner controllers) that no death or siege end cleaned up
+        getServer().getScheduler().runTaskTimer(this, () -> timerWheel.advance(System.currentTimeMillis()),
+                TIMER_WHEEL_TICK_MS / 50L, TIMER_WHEEL_TICK_MS / 50L);
 
         long saveIntervalFromConfig = config.getLong("storage.save-interval", 300) * 20L;
         getServer().getScheduler().runTaskTimer(this, this.statsManager::saveStats, saveIntervalFromConfig, saveIntervalFromConfig);
+        // Group commit: one fsync per interval covers every journal record appended since the last one.
+        long journalFlushTicks = Math.max(1L, config.getLong("storage.journal-flush-ticks", 20));
+        getServer().getScheduler().runTaskTimerAsynchronously(this, this.statsManager::commitJournal, journalFlushTicks, journalFlushTicks);
+        if (config.getBoolean("storage.backup-enabled", true)) {
+            // Main-thread trigger only captures a save; copying and compression run on background threads.
+            long backupTicks = Math.max(1L, config.getLong("storage.backup-interval-minutes", 60)) * 60L * 20L;
+            getServer().getScheduler().runTaskTimer(this, () -> statsManager.createBackup(null), backupTicks, backupTicks);
+        }
 
         // Start Web Server
         if (config.getBoolean("web-server.enabled", true)) {
@@ -125,7 +160,8 @@ public final class SiegeStatsPlugin extends JavaPlugin {
         }
 
         if (statsManager != null) {
-            statsManager.saveStats();
+            damageBatcher.flush(); // Damage from the last tick is still buffered
+            statsManager.shutdown(); // Final snapshot, then wait for the background writer to finish
             getLogger().info("Final siege stats saved.");
         }
 
@@ -134,10 +170,20 @@ public final class SiegeStatsPlugin extends JavaPlugin {
             this.adventure = null;
         }
 
+        if (statsLog != null) {
+            statsLog.shutdown(); // Flush buffered debug lines
+        }
+
         getLogger().info("SiegeStats has been disabled.");
     }
 
     public SiegeStatsManager getStatsManager() { return statsManager; }
     public SiegeListener getSiegeListener() { return siegeListener; }
     public BannerControlListener getBannerControlListener() { return bannerControlListener; }
+    public SiegeZoneIndex getSiegeZoneIndex() { return siegeZoneIndex; }
+    public SiegeSideCache getSideCache() { return sideCache; }
+    public DamageBatcher getDamageBatcher() { return damageBatcher; }
+    public PlayerNameCache getNameCache() { return nameCache; }
+    public StatsLog getStatsLog() { return statsLog; }
+    public TimerWheel getTimerWheel() { return timerWheel; }
 }
\ No newline at end of file
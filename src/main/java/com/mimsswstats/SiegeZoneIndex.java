@@ -0,0 +1,152 @@
+package com.mimsswstats;
+
+import com.gmail.goosius.siegewar.SiegeController;
+import com.gmail.goosius.siegewar.enums.SiegeSide;
+import com.gmail.goosius.siegewar.objects.Siege;
+import com.gmail.goosius.siegewar.settings.SiegeWarSettings;
+import com.gmail.goosius.siegewar.utils.SiegeWarDistanceUtil;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Grid of active siege zones keyed by world and chunk, so combat listeners resolve a player's siege with one
+ * map lookup instead of scanning every siege on the server. Each siege is registered in every chunk its zone
+ * radius touches; the few candidates in a cell still get SiegeWar's exact zone and side checks.
+ * <p>
+ * Updated on the main thread from siege start/end events and a periodic rebuild; readers see an immutable
+ * snapshot, so lookups never lock.
+ */
+public class SiegeZoneIndex {
+    private static final Siege[] NO_SIEGES = new Siege[0];
+
+    private final SiegeStatsPlugin plugin;
+    private final StatsLog log;
+    private final Map<Siege, Registration> registered = new HashMap<>(); // Main thread only
+    private volatile Map<UUID, Map<Long, Siege[]>> cells = Collections.emptyMap();
+
+    /** Where a siege was registered, so it can be removed even after its flag or world is gone. */
+    private static final class Registration {
+        final UUID worldId;
+        final long[] chunkKeys;
+
+        Registration(UUID worldId, long[] chunkKeys) {
+            this.worldId = worldId;
+            this.chunkKeys = chunkKeys;
+        }
+    }
+
+    public SiegeZoneIndex(SiegeStatsPlugin plugin) {
+        this.plugin = plugin;
+        this.log = plugin.getStatsLog();
+    }
+
+    /** Re-registers every active siege SiegeWar knows about. Covers sieges that started without an event (e.g. on load). */
+    public void rebuild() {
+        registered.clear();
+        Collection<Siege> sieges = SiegeController.getSieges();
+        if (sieges != null) {
+            for (Siege siege : sieges) {
+                if (siege != null && siege.getStatus() != null && siege.getStatus().isActive()) {
+                    Registration registration = register(siege);
+                    if (registration != null) registered.put(siege, registration);
+                }
+            }
+        }
+        publish();
+    }
+
+    public void add(Siege siege) {
+        Registration registration = register(siege);
+        if (registration == null) return;
+        registered.put(siege, registration);
+        publish();
+    }
+
+    public void remove(Siege siege) {
+        if (registered.remove(siege) != null) {
+            publish();
+        }
+    }
+
+    /**
+     * @return the active siege whose zone the player is standing in and in which they have a side, or null.
+     */
+    public Siege findActiveSiegeWithParticipant(Player player) {
+        if (player == null) return null;
+        Location location = player.getLocation();
+        World world = location.getWorld();
+        if (world == null) return null;
+        Map<Long, Siege[]> worldCells = cells.get(world.getUID());
+        if (worldCells == null) return null;
+        Siege[] candidates = worldCells.getOrDefault(chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4), NO_SIEGES);
+        for (Siege candidate : candidates) {
+            if (candidate.getStatus().isActive() &&
+                    plugin.getSideCache().getSide(candidate, player) != SiegeSide.NOBODY &&
+                    SiegeWarDistanceUtil.isInSiegeZone(player, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    public int getIndexedSiegeCount() { return registered.size(); }
+
+    public int getCellCount() {
+        int count = 0;
+        for (Map<Long, Siege[]> worldCells : cells.values()) count += worldCells.size();
+        return count;
+    }
+
+    private Registration register(Siege siege) {
+        if (siege == null) return null;
+        Location flag = siege.getFlagLocation();
+        if (flag == null || flag.getWorld() == null) {
+            log.warn(StatsLog.Category.COMBAT, "Siege has no flag location; it cannot be indexed by zone.");
+            return null;
+        }
+        // Square of chunks around the flag; a superset of the circular zone, trimmed by the exact check at lookup
+        int radius = Math.max(0, SiegeWarSettings.getWarSiegeZoneRadiusBlocks());
+        int minX = (flag.getBlockX() - radius) >> 4, maxX = (flag.getBlockX() + radius) >> 4;
+        int minZ = (flag.getBlockZ() - radius) >> 4, maxZ = (flag.getBlockZ() + radius) >> 4;
+        long[] keys = new long[(maxX - minX + 1) * (maxZ - minZ + 1)];
+        int i = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                keys[i++] = chunkKey(x, z);
+            }
+        }
+        return new Registration(flag.getWorld().getUID(), keys);
+    }
+
+    /** Builds a fresh immutable grid from the registrations and swaps it in. Sieges come and go rarely. */
+    private void publish() {
+        Map<UUID, Map<Long, List<Siege>>> building = new HashMap<>();
+        registered.forEach((siege, registration) -> {
+            Map<Long, List<Siege>> worldCells = building.computeIfAbsent(registration.worldId, id -> new HashMap<>());
+            for (long key : registration.chunkKeys) {
+                worldCells.computeIfAbsent(key, k -> new ArrayList<>(1)).add(siege);
+            }
+        });
+        Map<UUID, Map<Long, Siege[]>> snapshot = new HashMap<>();
+        building.forEach((worldId, worldCells) -> {
+            Map<Long, Siege[]> frozen = new HashMap<>(worldCells.size() * 2);
+            worldCells.forEach((key, sieges) -> frozen.put(key, sieges.toArray(NO_SIEGES)));
+            snapshot.put(worldId, frozen);
+        });
+        cells = snapshot;
+        log.trace(StatsLog.Category.COMBAT, () -> "Siege zone index: " + registered.size() + " siege(s) over " + getCellCount() + " chunk cell(s).");
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,647 @@
+package com.mimsswstats;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Embedded SQLite storage ({@code storage.format: sqlite}) in plugins/SiegeStats/stats.db.
+ *
+ * Each snapshot is written in a single transaction with batched upserts of only the records it holds, so
+ * a delta touches a few rows instead of rewriting a file. Completed sieges live in their own tables and
+ * back the {@link SiegeArchive} through {@link #getArchiveStorage()}; active sieges are kept apart so a
+ * tombstone can never hit an archived siege. Leaderboard and history lookups are indexed queries ({@link StatsQueries}) on a
+ * separate read connection, answered from what was last saved.
+ */
+public class SqlStatsStore implements StatsStore, StatsQueries {
+    private static final String DATABASE_FILE = "stats.db";
+    private static final String SUMMARY_COLUMNS = "siege_id, town, siege_number, start_time, end_time, winner, participant_count";
+    private static final String KDA_EXPRESSION = "(CASE WHEN deaths = 0 THEN kills + assists ELSE CAST(kills + assists AS REAL) / deaths END)";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS meta (key TEXT PRIMARY KEY, value INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS players (uuid TEXT PRIMARY KEY, name TEXT, kills INTEGER NOT NULL, deaths INTEGER NOT NULL,"
+                    + " assists INTEGER NOT NULL, damage REAL NOT NULL, capture_time REAL NOT NULL, sieges INTEGER NOT NULL,"
+                    + " wins INTEGER NOT NULL, losses INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS players_kills ON players (kills)",
+            "CREATE INDEX IF NOT EXISTS players_deaths ON players (deaths)",
+            "CREATE INDEX IF NOT EXISTS players_assists ON players (assists)",
+            "CREATE INDEX IF NOT EXISTS players_damage ON players (damage)",
+            "CREATE INDEX IF NOT EXISTS players_capture_time ON players (capture_time)",
+            "CREATE INDEX IF NOT EXISTS players_wins ON players (wins)",
+            "CREATE INDEX IF NOT EXISTS players_kda ON players " + KDA_EXPRESSION,
+            "CREATE TABLE IF NOT EXISTS player_sieges (uuid TEXT NOT NULL, siege_id TEXT NOT NULL, PRIMARY KEY (uuid, siege_id)) WITHOUT ROWID",
+            "CREATE TABLE IF NOT EXISTS town_counters (town TEXT PRIMARY KEY, counter INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS active_sieges (siege_id TEXT PRIMARY KEY, town TEXT NOT NULL, siege_number INTEGER NOT NULL,"
+                    + " start_time INTEGER NOT NULL, end_time INTEGER NOT NULL, winner INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS active_participants (siege_id TEXT NOT NULL, uuid TEXT NOT NULL, kills INTEGER NOT NULL,"
+                    + " deaths INTEGER NOT NULL, assists INTEGER NOT NULL, damage REAL NOT NULL, control_time REAL NOT NULL,"
+                    + " side INTEGER NOT NULL, PRIMARY KEY (siege_id, uuid)) WITHOUT ROWID",
+            "CREATE TABLE IF NOT EXISTS sieges (siege_id TEXT PRIMARY KEY, town TEXT NOT NULL, town_key TEXT NOT NULL,"
+                    + " siege_number INTEGER NOT NULL, start_time INTEGER NOT NULL, end_time INTEGER NOT NULL,"
+                    + " winner INTEGER NOT NULL, participant_count INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS sieges_town ON sieges (town_key, end_time)",
+            "CREATE TABLE IF NOT EXISTS siege_participants (siege_id TEXT NOT NULL, uuid TEXT NOT NULL, kills INTEGER NOT NULL,"
+                    + " deaths INTEGER NOT NULL, assists INTEGER NOT NULL, damage REAL NOT NULL, control_time REAL NOT NULL,"
+                    + " side INTEGER NOT NULL, PRIMARY KEY (siege_id, uuid)) WITHOUT ROWID",
+            "CREATE INDEX IF NOT EXISTS siege_participants_player ON siege_participants (uuid)"
+    };
+
+    private static final Map<LeaderboardStat, String> STAT_COLUMNS = new EnumMap<>(LeaderboardStat.class);
+    static {
+        STAT_COLUMNS.put(LeaderboardStat.KILLS, "kills");
+        STAT_COLUMNS.put(LeaderboardStat.DAMAGE, "damage");
+        STAT_COLUMNS.put(LeaderboardStat.DEATHS, "deaths");
+        STAT_COLUMNS.put(LeaderboardStat.ASSISTS, "assists");
+        STAT_COLUMNS.put(LeaderboardStat.KDA, KDA_EXPRESSION); // Must match the expression index exactly
+        STAT_COLUMNS.put(LeaderboardStat.CAPTIME, "capture_time");
+        STAT_COLUMNS.put(LeaderboardStat.WINS, "wins");
+    }
+
+    private final File databaseFile;
+    private final Logger logger;
+    private final Object writeLock = new Object(); // Save thread, plus resets from the main thread
+    private final Object readLock = new Object();  // Queries and archive reads from any thread
+    private volatile long historySince = 0; // Start of the current season; see setHistorySince
+    private Connection writeConnection;
+    private Connection readConnection;
+
+    public SqlStatsStore(File dataFolder, Logger logger) {
+        this.databaseFile = new File(dataFolder, DATABASE_FILE);
+        this.logger = logger;
+    }
+
+    // --- Connections ---
+
+    private Connection writeConnection() throws SQLException {
+        if (writeConnection == null || writeConnection.isClosed()) {
+            writeConnection = open();
+            try (Statement statement = writeConnection.createStatement()) {
+                for (String ddl : SCHEMA) statement.execute(ddl);
+            }
+            writeConnection.setAutoCommit(false);
+        }
+        return writeConnection;
+    }
+
+    private Connection readConnection() throws SQLException {
+        if (readConnection == null || readConnection.isClosed()) {
+            synchronized (writeLock) {
+                writeConnection(); // Creates the schema on first use
+            }
+            readConnection = open();
+        }
+        return readConnection;
+    }
+
+    private Connection open() throws SQLException {
+        File folder = databaseFile.getParentFile();
+        if (folder != null && !folder.exists() && !folder.mkdirs()) {
+            throw new SQLException("Could not create data folder: " + folder.getPath());
+        }
+        try {
+            Class.forName("org.sqlite.JDBC"); // Bundled with the server; registering it explicitly works across classloaders
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver not found on this server", e);
+        }
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            // WAL lets queries read while the save thread writes; NORMAL still survives a crash, only not a power loss mid-commit.
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("PRAGMA busy_timeout=5000");
+        }
+        return connection;
+    }
+
+    /** Closes both connections. Called once the save thread has finished. */
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            closeQuietly(writeConnection);
+            writeConnection = null;
+        }
+        synchronized (readLock) {
+            closeQuietly(readConnection);
+            readConnection = null;
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warning("Could not close stats database: " + e.getMessage());
+        }
+    }
+
+    // --- StatsStore: writing ---
+
+    @Override
+    public long write(StatsSnapshot snapshot) throws IOException {
+        synchronized (writeLock) {
+            try {
+                Connection connection = writeConnection();
+                try {
+                    writeSnapshot(connection, snapshot);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not write stats database: " + e.getMessage(), e);
+            }
+        }
+        return 0; // Row-level writes; the file size says nothing about this save
+    }
+
+    private void writeSnapshot(Connection connection, StatsSnapshot snapshot) throws SQLException {
+        if (snapshot.isFull()) {
+            // A full snapshot holds every player and every active siege, so anything else is stale.
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DELETE FROM players"); // Players of an ended season included
+                statement.execute("DELETE FROM player_sieges");
+                statement.execute("DELETE FROM active_participants");
+                statement.execute("DELETE FROM active_sieges");
+            }
+        }
+
+        try (PreparedStatement upsert = connection.prepareStatement(
+                "INSERT OR REPLACE INTO players (uuid, name, kills, deaths, assists, damage, capture_time, sieges, wins, losses)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement clearParticipations = connection.prepareStatement("DELETE FROM player_sieges WHERE uuid = ?");
+             PreparedStatement participation = connection.prepareStatement("INSERT OR IGNORE INTO player_sieges (uuid, siege_id) VALUES (?, ?)")) {
+            for (StatsSnapshot.PlayerRecord record : snapshot.getPlayers()) {
+                String uuid = record.uuid.toString();
+                upsert.setString(1, uuid);
+                upsert.setString(2, record.lastKnownName);
+                upsert.setInt(3, record.kills);
+                upsert.setInt(4, record.deaths);
+                upsert.setInt(5, record.assists);
+                upsert.setDouble(6, record.damage);
+                upsert.setDouble(7, record.captureTime);
+                upsert.setInt(8, record.siegesParticipated);
+                upsert.setInt(9, record.wins);
+                upsert.setInt(10, record.losses);
+                upsert.addBatch();
+                if (!snapshot.isFull()) {
+                    clearParticipations.setString(1, uuid);
+                    clearParticipations.addBatch();
+                }
+                for (String siegeId : record.siegeParticipations) {
+                    participation.setString(1, uuid);
+                    participation.setString(2, siegeId);
+                    participation.addBatch();
+                }
+            }
+            upsert.executeBatch();
+            clearParticipations.executeBatch();
+            participation.executeBatch();
+        }
+
+        // Every snapshot carries the complete counter map.
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM town_counters");
+        }
+        try (PreparedStatement counter = connection.prepareStatement("INSERT INTO town_counters (town, counter) VALUES (?, ?)")) {
+            for (Map.Entry<String, Integer> entry : snapshot.getTownSiegeCounter().entrySet()) {
+                counter.setString(1, entry.getKey());
+                counter.setInt(2, entry.getValue());
+                counter.addBatch();
+            }
+            counter.executeBatch();
+        }
+
+        for (StatsSnapshot.SiegeRecord record : snapshot.getActiveSieges()) {
+            if (record.active) {
+                writeActiveSiege(connection, record);
+            } else {
+                writeArchivedSiege(connection, record);
+            }
+        }
+        for (StatsSnapshot.SiegeRecord record : snapshot.getCompletedSieges()) {
+            writeArchivedSiege(connection, record); // Only from a migration; live completions go through the archive
+        }
+
+        if (!snapshot.getRemovedSiegeIds().isEmpty()) {
+            try (PreparedStatement participants = connection.prepareStatement("DELETE FROM active_participants WHERE siege_id = ?");
+                 PreparedStatement siege = connection.prepareStatement("DELETE FROM active_sieges WHERE siege_id = ?")) {
+                for (String siegeId : snapshot.getRemovedSiegeIds()) {
+                    participants.setString(1, siegeId);
+                    participants.addBatch();
+                    siege.setString(1, siegeId);
+                    siege.addBatch();
+                }
+                participants.executeBatch();
+                siege.executeBatch();
+            }
+        }
+
+        try (PreparedStatement meta = connection.prepareStatement("INSERT OR REPLACE INTO meta (key, value) VALUES ('journal_generation', ?)")) {
+            meta.setLong(1, snapshot.getJournalGeneration());
+            meta.executeUpdate();
+        }
+    }
+
+    private void writeActiveSiege(Connection connection, StatsSnapshot.SiegeRecord record) throws SQLException {
+        try (PreparedStatement siege = connection.prepareStatement(
+                "INSERT OR REPLACE INTO active_sieges (siege_id, town, siege_number, start_time, end_time, winner) VALUES (?, ?, ?, ?, ?, ?)")) {
+            siege.setString(1, record.siegeId);
+            siege.setString(2, record.townName);
+            siege.setInt(3, record.siegeNumber);
+            siege.setLong(4, record.startTimeMillis);
+            siege.setLong(5, record.endTimeMillis);
+            siege.setInt(6, winnerCode(record));
+            siege.executeUpdate();
+        }
+        writeParticipants(connection, "active_participants", record);
+    }
+
+    private void writeArchivedSiege(Connection connection, StatsSnapshot.SiegeRecord record) throws SQLException {
+        try (PreparedStatement siege = connection.prepareStatement(
+                "INSERT OR REPLACE INTO sieges (siege_id, town, town_key, siege_number, start_time, end_time, winner, participant_count)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            siege.setString(1, record.siegeId);
+            siege.setString(2, record.townName);
+            siege.setString(3, record.townName.toLowerCase());
+            siege.setInt(4, record.siegeNumber);
+            siege.setLong(5, record.startTimeMillis);
+            siege.setLong(6, record.endTimeMillis);
+            siege.setInt(7, winnerCode(record));
+            siege.setInt(8, record.participants.size());
+            siege.executeUpdate();
+        }
+        writeParticipants(connection, "siege_participants", record);
+    }
+
+    private void writeParticipants(Connection connection, String table, StatsSnapshot.SiegeRecord record) throws SQLException {
+        try (PreparedStatement clear = connection.prepareStatement("DELETE FROM " + table + " WHERE siege_id = ?")) {
+            clear.setString(1, record.siegeId);
+            clear.executeUpdate();
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table
+                + " (siege_id, uuid, kills, deaths, assists, damage, control_time, side) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (Map.Entry<UUID, StatsSnapshot.ParticipantRecord> entry : record.participants.entrySet()) {
+                StatsSnapshot.ParticipantRecord metrics = entry.getValue();
+                insert.setString(1, record.siegeId);
+                insert.setString(2, entry.getKey().toString());
+                insert.setInt(3, metrics.kills);
+                insert.setInt(4, metrics.deaths);
+                insert.setInt(5, metrics.assists);
+                insert.setDouble(6, metrics.damage);
+                insert.setDouble(7, metrics.controlTime);
+                insert.setInt(8, StatsJournal.sideCode(metrics.side));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private static int winnerCode(StatsSnapshot.SiegeRecord record) {
+        return record.defendersWon ? 2 : (record.attackersWon ? 1 : 0);
+    }
+
+    // --- StatsStore: loading ---
+
+    @Override
+    public int load(StatsCodec.Sink sink) throws IOException {
+        if (!databaseFile.exists()) return 0;
+        synchronized (readLock) {
+            try {
+                Connection connection = readConnection();
+                try (Statement statement = connection.createStatement()) {
+                    try (ResultSet rs = statement.executeQuery("SELECT value FROM meta WHERE key = 'journal_generation'")) {
+                        if (rs.next()) sink.journalGeneration(rs.getLong(1));
+                    }
+
+                    Map<String, Integer> counters = new HashMap<>();
+                    try (ResultSet rs = statement.executeQuery("SELECT town, counter FROM town_counters")) {
+                        while (rs.next()) counters.put(rs.getString(1), rs.getInt(2));
+                    }
+                    sink.townSiegeCounters(counters);
+
+                    loadPlayers(connection, sink);
+
+                    Map<String, SiegeStats> active = new HashMap<>();
+                    try (ResultSet rs = statement.executeQuery(
+                            "SELECT siege_id, town, siege_number, start_time, end_time, winner FROM active_sieges")) {
+                        while (rs.next()) {
+                            SiegeStats stats = new SiegeStats(rs.getString(2), rs.getInt(3), rs.getString(1));
+                            stats.setStartTime(rs.getLong(4));
+                            stats.setEndTime(rs.getLong(5));
+                            applyWinner(stats, rs.getInt(6));
+                            active.put(stats.getSiegeId(), stats);
+                        }
+                    }
+                    try (ResultSet rs = statement.executeQuery(
+                            "SELECT siege_id, uuid, kills, deaths, assists, damage, control_time, side FROM active_participants")) {
+                        while (rs.next()) {
+                            SiegeStats stats = active.get(rs.getString(1));
+                            if (stats != null) readParticipant(rs, stats);
+                        }
+                    }
+                    active.values().forEach(sink::siege);
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not read stats database: " + e.getMessage(), e);
+            }
+        }
+        return 1;
+    }
+
+    /** Streams players and their participations together, both ordered by UUID, so neither is held in full. */
+    private void loadPlayers(Connection connection, StatsCodec.Sink sink) throws SQLException {
+        try (Statement playerQuery = connection.createStatement();
+             Statement participationQuery = connection.createStatement();
+             ResultSet players = playerQuery.executeQuery("SELECT uuid, name, kills, deaths, assists, damage, capture_time, sieges,"
+                     + " wins, losses FROM players ORDER BY uuid");
+             ResultSet participations = participationQuery.executeQuery("SELECT uuid, siege_id FROM player_sieges ORDER BY uuid")) {
+            boolean moreParticipations = participations.next();
+            while (players.next()) {
+                String uuidString = players.getString(1);
+                List<String> siegeIds = new ArrayList<>();
+                while (moreParticipations && participations.getString(1).compareTo(uuidString) <= 0) {
+                    if (participations.getString(1).equals(uuidString)) siegeIds.add(participations.getString(2));
+                    moreParticipations = participations.next();
+                }
+                UUID uuid;
+                try {
+                    uuid = UUID.fromString(uuidString);
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Skipping invalid UUID in stats database: " + uuidString);
+                    continue;
+                }
+                String name = players.getString(2);
+                PlayerStats stats = new PlayerStats(uuid, name != null ? name : uuidString);
+                stats.setTotalKills(players.getInt(3));
+                stats.setTotalDeaths(players.getInt(4));
+                stats.setTotalAssists(players.getInt(5));
+                stats.setTotalDamage(players.getDouble(6));
+                stats.setTotalCaptureTime(players.getDouble(7));
+                stats.setTotalSiegesParticipated(players.getInt(8));
+                stats.setTotalWins(players.getInt(9));
+                stats.setTotalLosses(players.getInt(10));
+                stats.setSiegeParticipations(siegeIds);
+                sink.player(stats);
+            }
+        }
+    }
+
+    private void readParticipant(ResultSet rs, SiegeStats stats) throws SQLException {
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(rs.getString(2));
+        } catch (IllegalArgumentException e) {
+            logger.warning("Skipping invalid participant UUID " + rs.getString(2) + " in siege " + stats.getSiegeId());
+            return;
+        }
+        SiegeStats.ParticipantMetrics metrics = new SiegeStats.ParticipantMetrics();
+        metrics.restore(rs.getInt(3), rs.getInt(4), rs.getDouble(6), rs.getDouble(7), rs.getInt(5),
+                StatsJournal.sideFromCode((byte) rs.getInt(8)));
+        stats.getParticipantMetrics().put(uuid, metrics);
+    }
+
+    private static void applyWinner(SiegeStats stats, int winner) {
+        stats.setAttackersWon(winner == 1);
+        stats.setDefendersWon(winner == 2);
+    }
+
+    // --- StatsStore: housekeeping ---
+
+    @Override
+    public boolean exists() {
+        if (!databaseFile.exists()) return false;
+        synchronized (readLock) {
+            try (Statement statement = readConnection().createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT 1 FROM meta WHERE key = 'journal_generation'")) {
+                return rs.next(); // Written by every snapshot
+            } catch (SQLException e) {
+                logger.severe("Could not open stats database: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /** Rows are updated in place, there is nothing to compact. */
+    @Override
+    public boolean needsCompaction() { return false; }
+
+    @Override
+    public int getSegmentCount() { return 0; }
+
+    /** Clears player, counter and active siege data; the archive storage clears completed sieges. */
+    @Override
+    public void deleteAll() {
+        clearTables("meta", "players", "player_sieges", "town_counters", "active_sieges", "active_participants");
+    }
+
+    @Override
+    public String describe() {
+        return "sqlite (" + DATABASE_FILE + ")";
+    }
+
+    /** Writes a compacted, transactionally consistent copy of the whole database (archived sieges included). */
+    @Override
+    public void copyTo(File targetDir) throws IOException {
+        if (!databaseFile.exists()) return;
+        File target = new File(targetDir, DATABASE_FILE);
+        if (!targetDir.exists() && !targetDir.mkdirs()) {
+            throw new IOException("Could not create folder: " + targetDir.getPath());
+        }
+        synchronized (readLock) {
+            // The read connection is in auto-commit mode; VACUUM cannot run inside the write connection's transaction.
+            try (PreparedStatement vacuum = readConnection().prepareStatement("VACUUM INTO ?")) {
+                vacuum.setString(1, target.getAbsolutePath());
+                vacuum.execute();
+            } catch (SQLException e) {
+                throw new IOException("Could not copy stats database: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void clearTables(String... tables) {
+        synchronized (writeLock) {
+            try {
+                Connection connection = writeConnection();
+                try (Statement statement = connection.createStatement()) {
+                    for (String table : tables) statement.execute("DELETE FROM " + table);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                logger.severe("Could not clear stats database: " + e.getMessage());
+            }
+        }
+    }
+
+    // --- Completed sieges ---
+
+    public SiegeArchive.Storage getArchiveStorage() { return archiveStorage; }
+
+    private final SiegeArchive.Storage archiveStorage = new SiegeArchive.Storage() {
+        @Override
+        public void loadSummaries(Consumer<SiegeArchive.Summary> consumer) throws IOException {
+            if (!databaseFile.exists()) return;
+            synchronized (readLock) {
+                try (Statement statement = readConnection().createStatement();
+                     ResultSet rs = statement.executeQuery("SELECT " + SUMMARY_COLUMNS + " FROM sieges")) {
+                    while (rs.next()) consumer.accept(readSummary(rs));
+                } catch (SQLException e) {
+                    throw new IOException("Could not read completed sieges: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        @Override
+        public long write(StatsSnapshot snapshot) throws IOException {
+            synchronized (writeLock) {
+                try {
+                    Connection connection = writeConnection();
+                    try {
+                        for (StatsSnapshot.SiegeRecord record : snapshot.getCompletedSieges()) {
+                            writeArchivedSiege(connection, record);
+                        }
+                        connection.commit();
+                    } catch (SQLException e) {
+                        connection.rollback();
+                        throw e;
+                    }
+                } catch (SQLException e) {
+                    throw new IOException("Could not archive siege: " + e.getMessage(), e);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public SiegeStats read(String siegeId) throws IOException {
+            synchronized (readLock) {
+                try {
+                    Connection connection = readConnection();
+                    SiegeStats stats;
+                    try (PreparedStatement siege = connection.prepareStatement(
+                            "SELECT siege_id, town, siege_number, start_time, end_time, winner FROM sieges WHERE siege_id = ?")) {
+                        siege.setString(1, siegeId);
+                        try (ResultSet rs = siege.executeQuery()) {
+                            if (!rs.next()) return null;
+                            stats = new SiegeStats(rs.getString(2), rs.getInt(3), rs.getString(1));
+                            stats.setStartTime(rs.getLong(4));
+                            stats.setEndTime(rs.getLong(5));
+                            stats.setActive(false);
+                            applyWinner(stats, rs.getInt(6));
+                        }
+                    }
+                    try (PreparedStatement participants = connection.prepareStatement(
+                            "SELECT siege_id, uuid, kills, deaths, assists, damage, control_time, side FROM siege_participants WHERE siege_id = ?")) {
+                        participants.setString(1, siegeId);
+                        try (ResultSet rs = participants.executeQuery()) {
+                            while (rs.next()) readParticipant(rs, stats);
+                        }
+                    }
+                    return stats;
+                } catch (SQLException e) {
+                    throw new IOException("Could not read siege " + siegeId + ": " + e.getMessage(), e);
+                }
+            }
+        }
+
+        @Override
+        public void deleteAll() {
+            clearTables("sieges", "siege_participants");
+        }
+
+        @Override
+        public void copyTo(File targetDir) {
+            // Part of the database copy made by SqlStatsStore.copyTo
+        }
+
+        @Override
+        public String describe() {
+            return "sqlite (" + DATABASE_FILE + ")";
+        }
+    };
+
+    private static SiegeArchive.Summary readSummary(ResultSet rs) throws SQLException {
+        return new SiegeArchive.Summary(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getLong(4), rs.getLong(5),
+                rs.getInt(6), rs.getInt(7));
+    }
+
+    // --- StatsQueries ---
+
+    @Override
+    public List<RankedPlayer> topPlayers(LeaderboardStat stat, int limit) throws IOException {
+        String expression = STAT_COLUMNS.get(stat);
+        List<RankedPlayer> result = new ArrayList<>(limit);
+        synchronized (readLock) {
+            try (PreparedStatement query = readConnection().prepareStatement("SELECT uuid, name, " + expression + " FROM players"
+                    + " WHERE sieges > 0 ORDER BY " + expression + " DESC LIMIT ?")) {
+                query.setInt(1, limit);
+                try (ResultSet rs = query.executeQuery()) {
+                    while (rs.next()) {
+                        String uuid = rs.getString(1);
+                        String name = rs.getString(2);
+                        result.add(new RankedPlayer(UUID.fromString(uuid), name != null ? name : uuid, rs.getDouble(3)));
+                    }
+                }
+            } catch (SQLException | IllegalArgumentException e) {
+                throw new IOException("Leaderboard query failed: " + e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<SiegeArchive.Summary> playerSiegeHistory(UUID playerUUID, int limit) throws IOException {
+        return querySummaries("SELECT s.siege_id, s.town, s.siege_number, s.start_time, s.end_time, s.winner, s.participant_count"
+                + " FROM siege_participants p JOIN sieges s ON s.siege_id = p.siege_id WHERE p.uuid = ? AND s.end_time >= ?"
+                + " ORDER BY s.end_time DESC LIMIT ?", playerUUID.toString(), limit);
+    }
+
+    @Override
+    public List<SiegeArchive.Summary> townSiegeHistory(String townName, int limit) throws IOException {
+        return querySummaries("SELECT " + SUMMARY_COLUMNS + " FROM sieges WHERE town_key = ? AND end_time >= ? ORDER BY end_time DESC LIMIT ?",
+                townName.toLowerCase(), limit);
+    }
+
+    private List<SiegeArchive.Summary> querySummaries(String sql, String key, int limit) throws IOException {
+        List<SiegeArchive.Summary> result = new ArrayList<>(limit);
+        synchronized (readLock) {
+            try (PreparedStatement query = readConnection().prepareStatement(sql)) {
+                query.setString(1, key);
+                query.setLong(2, historySince);
+                query.setInt(3, limit);
+                try (ResultSet rs = query.executeQuery()) {
+                    while (rs.next()) result.add(readSummary(rs));
+                }
+            } catch (SQLException e) {
+                throw new IOException("Siege history query failed: " + e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+
+    /** Sieges that ended before this belong to an archived season and are left out of the history queries. */
+    public void setHistorySince(long endedSinceMillis) {
+        this.historySince = endedSinceMillis;
+    }
+
+    @Override
+    public boolean isBlocking() { return true; }
+}
@@ -0,0 +1,31 @@
+package com.mimsswstats;
+
+/** The time ranges /ss top and the web API can rank over: all-time totals, or a rolling window of recent hours. */
+public enum StatWindow {
+    ALL("All Time", 0),
+    DAY("Last 24 Hours", 24),
+    WEEK("Last 7 Days", 24 * 7),
+    MONTH("Last 30 Days", 24 * 30);
+
+    private final String displayName;
+    private final int hours; // Hourly buckets covered, counting the current one; 0 for all time
+
+    StatWindow(String displayName, int hours) {
+        this.displayName = displayName;
+        this.hours = hours;
+    }
+
+    public String getDisplayName() { return displayName; }
+    public int getHours() { return hours; }
+
+    /** @return the window for a command or query argument, or null if unknown. */
+    public static StatWindow fromName(String name) {
+        switch (name.toLowerCase()) {
+            case "all": case "alltime": case "all-time": return ALL;
+            case "day": case "daily": case "24h": return DAY;
+            case "week": case "weekly": case "7d": return WEEK;
+            case "month": case "monthly": case "30d": return MONTH;
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.mimsswstats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Rolling day, week and month totals per player, for leaderboards over recent activity. Every recorded change is
+ * added to the current hour's bucket and to each window's running totals; as hours pass, the buckets that fall out
+ * of a window are subtracted from it, so a window is never re-summed and siege history is never rescanned. Each
+ * window ranks its totals in its own {@link Leaderboards}.
+ * <p>
+ * Buckets exist only for hours with activity and are kept as long as the widest window covers them. They are saved
+ * to windows.bin after each stats save, tagged with that save's journal generation; journal records replayed on load
+ * count towards the hour they are replayed in. Main thread only, except leaderboard reads and {@link #write}.
+ */
+public class StatWindows {
+    static final long HOUR_MS = 3_600_000L;
+    private static final StatWindow[] ROLLING = {StatWindow.DAY, StatWindow.WEEK, StatWindow.MONTH};
+    private static final int RETAINED_HOURS = StatWindow.MONTH.getHours();
+    private static final int FILE_MAGIC = 0x53535457; // "SSTW"
+    private static final int FILE_VERSION = 1;
+    private static final double EPSILON = 1e-6; // Doubles left below this by subtraction are zero
+
+    /** One player's sums over an hour or over a window. */
+    static final class Totals {
+        final PlayerStats player;
+        int kills;
+        int deaths;
+        int assists;
+        int wins;
+        int losses;
+        double damage;
+        double captureTime;
+
+        Totals(PlayerStats player) {
+            this.player = player;
+        }
+
+        void add(int kills, int deaths, int assists, double damage, double captureTime, int wins, int losses) {
+            this.kills += kills;
+            this.deaths += deaths;
+            this.assists += assists;
+            this.damage += damage;
+            this.captureTime += captureTime;
+            this.wins += wins;
+            this.losses += losses;
+        }
+
+        void add(Totals other) {
+            add(other.kills, other.deaths, other.assists, other.damage, other.captureTime, other.wins, other.losses);
+        }
+
+        void subtract(Totals other) {
+            kills -= other.kills;
+            deaths -= other.deaths;
+            assists -= other.assists;
+            wins -= other.wins;
+            losses -= other.losses;
+            damage = damage - other.damage < EPSILON ? 0 : damage - other.damage;
+            captureTime = captureTime - other.captureTime < EPSILON ? 0 : captureTime - other.captureTime;
+        }
+
+        /** @return the part of these totals that fits within limit, field by field. */
+        Totals upTo(Totals limit) {
+            Totals part = new Totals(player);
+            part.add(Math.min(kills, limit.kills), Math.min(deaths, limit.deaths), Math.min(assists, limit.assists),
+                    Math.min(damage, limit.damage), Math.min(captureTime, limit.captureTime),
+                    Math.min(wins, limit.wins), Math.min(losses, limit.losses));
+            return part;
+        }
+
+        Totals copy() {
+            Totals copy = new Totals(player);
+            copy.add(this);
+            return copy;
+        }
+
+        boolean isEmpty() {
+            return kills == 0 && deaths == 0 && assists == 0 && wins == 0 && losses == 0
+                    && damage < EPSILON && captureTime < EPSILON;
+        }
+    }
+
+    private static final class HourBucket {
+        final long hour; // Hours since the epoch
+        Map<UUID, Totals> totals; // Only swapped for a changed copy once the hour is over; see capture
+
+        HourBucket(long hour, Map<UUID, Totals> totals) {
+            this.hour = hour;
+            this.totals = totals;
+        }
+    }
+
+    /** One window's running totals and their rankings. */
+    private static final class Rollup {
+        final StatWindow window;
+        final Map<UUID, Totals> totals = new HashMap<>();
+        final Leaderboards leaderboards = new Leaderboards();
+        long firstHour; // Oldest hour still counted
+
+        Rollup(StatWindow window) {
+            this.window = window;
+        }
+
+        void subtract(Map<UUID, Totals> expired) {
+            for (Totals hour : expired.values()) {
+                Totals sum = totals.get(hour.player.getPlayerUUID());
+                if (sum == null) continue;
+                sum.subtract(hour);
+                rank(sum);
+            }
+        }
+
+        void rank(Totals sum) {
+            UUID playerUUID = sum.player.getPlayerUUID();
+            if (sum.isEmpty()) {
+                totals.remove(playerUUID);
+                leaderboards.remove(playerUUID);
+            } else {
+                leaderboards.update(sum.player, sum);
+            }
+        }
+    }
+
+    /** The buckets as of one save, safe to write from the save thread. */
+    static final class Image {
+        final long journalGeneration;
+        private final List<HourBucket> buckets;
+
+        private Image(long journalGeneration, List<HourBucket> buckets) {
+            this.journalGeneration = journalGeneration;
+            this.buckets = buckets;
+        }
+    }
+
+    private final File file;
+    private final StatsLog log;
+    private final ArrayDeque<HourBucket> buckets = new ArrayDeque<>(); // Oldest first
+    private final Map<StatWindow, Rollup> rollups = new EnumMap<>(StatWindow.class);
+    private long currentHour;
+    private volatile boolean changed; // Since the last capture; set again by the save thread if that write failed
+    private long bucketsExpired;
+
+    public StatWindows(File dataFolder, StatsLog log, TimerWheel timerWheel, long nowMillis) {
+        this.file = new File(dataFolder, "windows.bin");
+        this.log = log;
+        this.currentHour = nowMillis / HOUR_MS;
+        for (StatWindow window : ROLLING) rollups.put(window, new Rollup(window));
+        clear();
+        // Expire on the hour even when nothing is recorded; record() also rolls over on its own
+        timerWheel.schedule(untilNextHour(nowMillis), now -> {
+            advance(now);
+            return untilNextHour(now);
+        });
+    }
+
+    private static long untilNextHour(long nowMillis) {
+        return HOUR_MS - nowMillis % HOUR_MS;
+    }
+
+    /** Adds a change to a player's totals to the current hour and every window. */
+    public void record(PlayerStats player, long nowMillis, int kills, int deaths, int assists, double damage,
+                       double captureTime, int wins, int losses) {
+        advance(nowMillis);
+        HourBucket bucket = buckets.peekLast();
+        if (bucket == null || bucket.hour != currentHour) {
+            bucket = new HourBucket(currentHour, new HashMap<>());
+            buckets.addLast(bucket);
+        }
+        UUID playerUUID = player.getPlayerUUID();
+        bucket.totals.computeIfAbsent(playerUUID, k -> new Totals(player))
+                .add(kills, deaths, assists, damage, captureTime, wins, losses);
+        for (Rollup rollup : rollups.values()) {
+            Totals sum = rollup.totals.computeIfAbsent(playerUUID, k -> new Totals(player));
+            sum.add(kills, deaths, assists, damage, captureTime, wins, losses);
+            rollup.rank(sum);
+        }
+        changed = true;
+    }
+
+    /**
+     * Takes back stats of a deleted siege. Buckets don't say which siege they came from, so the amounts come out of
+     * the player's newest hours first, never below zero; wins and losses are left alone, as in
+     * {@link PlayerStats#subtractStats}.
+     */
+    public void retract(PlayerStats player, int kills, int deaths, int assists, double damage, double captureTime) {
+        UUID playerUUID = player.getPlayerUUID();
+        Totals remaining = new Totals(player);
+        remaining.add(kills, deaths, assists, damage, captureTime, 0, 0);
+        Iterator<HourBucket> newestFirst = buckets.descendingIterator();
+        while (!remaining.isEmpty() && newestFirst.hasNext()) {
+            HourBucket bucket = newestFirst.next();
+            Totals recorded = bucket.totals.get(playerUUID);
+            if (recorded == null) continue;
+            Totals taken = recorded.upTo(remaining);
+            remaining.subtract(taken);
+            Totals left = recorded.copy();
+            left.subtract(taken);
+            Map<UUID, Totals> copy = new HashMap<>(bucket.totals); // A captured image may still hold the old map
+            if (left.isEmpty()) {
+                copy.remove(playerUUID);
+            } else {
+                copy.put(playerUUID, left);
+            }
+            bucket.totals = copy;
+            for (Rollup rollup : rollups.values()) {
+                Totals sum = rollup.totals.get(playerUUID);
+                if (sum != null && bucket.hour >= rollup.firstHour) sum.subtract(taken);
+            }
+        }
+        for (Rollup rollup : rollups.values()) {
+            Totals sum = rollup.totals.get(playerUUID);
+            if (sum != null) rollup.rank(sum);
+        }
+        changed = true;
+    }
+
+    /** Moves every window up to the current hour, subtracting the buckets it no longer covers. */
+    public void advance(long nowMillis) {
+        long hour = nowMillis / HOUR_MS;
+        if (hour <= currentHour) return;
+        currentHour = hour;
+        for (Rollup rollup : rollups.values()) {
+            long firstHour = hour - rollup.window.getHours() + 1;
+            for (HourBucket bucket : buckets) { // Oldest first, so stop at the first one still covered
+                if (bucket.hour >= firstHour) break;
+                if (bucket.hour >= rollup.firstHour) rollup.subtract(bucket.totals);
+            }
+            rollup.firstHour = firstHour;
+        }
+        long oldestKept = hour - RETAINED_HOURS + 1;
+        while (!buckets.isEmpty() && buckets.peekFirst().hour < oldestKept) {
+            buckets.pollFirst();
+            bucketsExpired++;
+        }
+    }
+
+    /** @return the rankings for a rolling window; {@link StatWindow#ALL} is kept by the manager. */
+    public Leaderboards getLeaderboards(StatWindow window) {
+        Rollup rollup = rollups.get(window);
+        if (rollup == null) throw new IllegalArgumentException("Not a rolling window: " + window);
+        return rollup.leaderboards;
+    }
+
+    public void clear() {
+        buckets.clear();
+        for (Rollup rollup : rollups.values()) {
+            rollup.totals.clear();
+            rollup.leaderboards.clear();
+            rollup.firstHour = currentHour - rollup.window.getHours() + 1;
+        }
+        changed = true; // So the next save replaces whatever file is on disk
+    }
+
+    // --- Persistence ---
+
+    /**
+     * @return the buckets for the save being captured, or null if nothing changed since the last capture. Finished
+     * hours are shared (they are only ever replaced, see {@link #retract}); the current hour is copied.
+     */
+    public Image capture(long journalGeneration) {
+        if (!changed) return null;
+        changed = false;
+        List<HourBucket> copy = new ArrayList<>(buckets.size());
+        for (HourBucket bucket : buckets) {
+            if (bucket.hour != currentHour) {
+                copy.add(new HourBucket(bucket.hour, bucket.totals));
+                continue;
+            }
+            Map<UUID, Totals> totals = new HashMap<>(bucket.totals.size() * 2);
+            bucket.totals.forEach((playerUUID, hour) -> totals.put(playerUUID, hour.copy()));
+            copy.add(new HourBucket(bucket.hour, totals));
+        }
+        return new Image(journalGeneration, copy);
+    }
+
+    /** The captured image was not written; capture again next save even if nothing else changes. */
+    public void markUnsaved() {
+        changed = true;
+    }
+
+    /** Runs on the save thread, after the stats snapshot with the same journal generation is on disk. */
+    public long write(Image image) throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(image.journalGeneration);
+            out.writeInt(image.buckets.size());
+            for (HourBucket bucket : image.buckets) {
+                out.writeLong(bucket.hour);
+                out.writeInt(bucket.totals.size());
+                for (Totals hour : bucket.totals.values()) {
+                    UUID playerUUID = hour.player.getPlayerUUID();
+                    out.writeLong(playerUUID.getMostSignificantBits());
+                    out.writeLong(playerUUID.getLeastSignificantBits());
+                    out.writeInt(hour.kills);
+                    out.writeInt(hour.deaths);
+                    out.writeInt(hour.assists);
+                    out.writeInt(hour.wins);
+                    out.writeInt(hour.losses);
+                    out.writeDouble(hour.damage);
+                    out.writeDouble(hour.captureTime);
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        long bytes = tempFile.length();
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return bytes;
+    }
+
+    /**
+     * Replaces everything with the saved buckets. A file from a later journal generation than the loaded stats
+     * (stats restored from an older backup) would count the replayed journal twice, so it is ignored.
+     * @param players the loaded player records; buckets of unknown players are skipped.
+     */
+    public void load(long loadedJournalGeneration, Function<UUID, PlayerStats> players, long nowMillis) {
+        currentHour = Math.max(currentHour, nowMillis / HOUR_MS);
+        clear();
+        if (!file.exists()) return;
+        long oldestKept = currentHour - RETAINED_HOURS + 1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("not a version " + FILE_VERSION + " stat windows file");
+            }
+            long generation = in.readLong();
+            if (generation > loadedJournalGeneration) {
+                log.warn(StatsLog.Category.STORAGE, "Ignoring " + file.getName() + ": saved at journal generation " + generation
+                        + ", after the loaded stats (" + loadedJournalGeneration + "). Time-windowed leaderboards start empty.");
+                return;
+            }
+            int bucketCount = in.readInt();
+            for (int i = 0; i < bucketCount; i++) {
+                long hour = in.readLong();
+                int entries = in.readInt();
+                Map<UUID, Totals> totals = new HashMap<>(entries * 2);
+                for (int j = 0; j < entries; j++) {
+                    PlayerStats player = players.apply(new UUID(in.readLong(), in.readLong()));
+                    Totals read = new Totals(player);
+                    read.kills = in.readInt();
+                    read.deaths = in.readInt();
+                    read.assists = in.readInt();
+                    read.wins = in.readInt();
+                    read.losses = in.readInt();
+                    read.damage = in.readDouble();
+                    read.captureTime = in.readDouble();
+                    if (player != null) totals.put(player.getPlayerUUID(), read);
+                }
+                if (hour >= oldestKept && !totals.isEmpty()) buckets.addLast(new HourBucket(hour, totals));
+            }
+        } catch (IOException e) {
+            log.error(StatsLog.Category.STORAGE, "Could not load " + file.getName() + "; time-windowed leaderboards start empty: " + e.getMessage());
+            clear();
+            return;
+        }
+        for (HourBucket bucket : buckets) {
+            for (Rollup rollup : rollups.values()) {
+                if (bucket.hour < rollup.firstHour) continue;
+                bucket.totals.forEach((playerUUID, hour) ->
+                        rollup.totals.computeIfAbsent(playerUUID, k -> new Totals(hour.player)).add(hour));
+            }
+        }
+        for (Rollup rollup : rollups.values()) {
+            for (Totals sum : rollup.totals.values()) rollup.leaderboards.update(sum.player, sum);
+        }
+        changed = false;
+        log.info(StatsLog.Category.STORAGE, "Loaded " + buckets.size() + " hourly stat bucket(s) for the day/week/month leaderboards.");
+    }
+
+    /** Runs on the save thread, like the other backup staging. */
+    public void copyTo(File targetDir) throws IOException {
+        if (file.exists()) BackupManager.linkOrCopy(file, new File(targetDir, file.getName()));
+    }
+
+    // --- Gauges (main thread) ---
+    public int getBucketCount() { return buckets.size(); }
+    public int getRankedCount(StatWindow window) { return rollups.get(window).totals.size(); }
+    public long getBucketsExpired() { return bucketsExpired; }
+}
@@ -0,0 +1,48 @@
+package com.mimsswstats;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Serialized form of one stats file (a full base or a delta segment). Selected by {@code storage.format}.
+ */
+public interface StatsCodec {
+
+    /** Receives decoded records in file order. Records replace any in-memory copy wholesale. */
+    interface Sink {
+        void player(PlayerStats stats);
+        /** The complete town counter map; every file carries all of it. */
+        void townSiegeCounters(Map<String, Integer> counters);
+        /** Goes to active or completed depending on {@link SiegeStats#isActive()}. */
+        void siege(SiegeStats stats);
+        void removedSiege(String siegeId);
+        void journalGeneration(long generation);
+    }
+
+    /** Short name used in config.yml and log lines, e.g. "json". */
+    String getName();
+
+    /** File extension including the dot, e.g. ".json". */
+    String getExtension();
+
+    void encode(StatsSnapshot snapshot, long segmentSequence, OutputStream out) throws IOException;
+
+    /**
+     * @return the file's segment sequence number (0 for legacy files without one).
+     * @throws IOException if the file is unreadable or fails its integrity checks.
+     */
+    long decode(InputStream in, Sink sink) throws IOException;
+
+    static StatsCodec forName(String name, Logger logger) {
+        if ("binary".equalsIgnoreCase(name)) {
+            return new BinaryStatsCodec();
+        }
+        if (!"json".equalsIgnoreCase(name)) {
+            logger.warning("Unknown storage.format '" + name + "', using json.");
+        }
+        return new JsonStatsCodec(logger);
+    }
+}
@@ -0,0 +1,126 @@
+package com.mimsswstats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Offline converter between the json and binary storage formats, with a timing comparison of both.
+ * Run with the server stopped, SiegeWar on the classpath (for the SiegeSide enum):
+ *
+ * <pre>
+ * java -cp SiegeStats.jar:SiegeWar.jar com.mimsswstats.StatsConverter plugins/SiegeStats binary [iterations]
+ * </pre>
+ *
+ * Reads whichever format is present (base + segments), writes a full base file in the target format and
+ * prints load/save times and file sizes for both formats on the same data. The source files are left in place.
+ */
+public final class StatsConverter {
+
+    private StatsConverter() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: StatsConverter <dataFolder> <json|binary> [benchmarkIterations]");
+            System.exit(1);
+        }
+        File dataFolder = new File(args[0]);
+        String targetFormat = args[1].toLowerCase();
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Logger logger = Logger.getLogger("SiegeStats");
+
+        if (!"json".equals(targetFormat) && !"binary".equals(targetFormat)) {
+            System.out.println("Target format must be json or binary.");
+            System.exit(1);
+        }
+        String sourceFormat = "json".equals(targetFormat) ? "binary" : "json";
+        SegmentedStatsStore source = new SegmentedStatsStore(dataFolder, logger, Integer.MAX_VALUE, StatsCodec.forName(sourceFormat, logger));
+        SegmentedStatsStore target = new SegmentedStatsStore(dataFolder, logger, Integer.MAX_VALUE, StatsCodec.forName(targetFormat, logger));
+        if (!source.exists()) {
+            System.out.println("No " + sourceFormat + " stats found in " + dataFolder.getPath());
+            System.exit(1);
+        }
+        if (target.exists()) {
+            System.out.println(target.describe() + " already exists in " + dataFolder.getPath() + "; remove it first.");
+            System.exit(1);
+        }
+
+        CollectingSink data = new CollectingSink();
+        long loadStart = System.nanoTime();
+        int files = source.load(data);
+        long loadMillis = (System.nanoTime() - loadStart) / 1_000_000L;
+        System.out.printf("Loaded %s: %d file(s), %d players, %d active + %d completed sieges in %d ms%n",
+                source.describe(), files, data.players.size(), data.active.size(), data.completed.size(), loadMillis);
+
+        StatsSnapshot snapshot = StatsSnapshot.captureFull(data.journalGeneration, data.players, data.counters, data.active, data.completed);
+        long writeStart = System.nanoTime();
+        long bytes = target.write(snapshot);
+        System.out.printf("Wrote %s: %d bytes in %d ms%n", target.getBaseFile().getPath(), bytes, (System.nanoTime() - writeStart) / 1_000_000L);
+
+        System.out.println();
+        System.out.printf("Benchmark (%d iterations, full snapshot, in memory):%n", iterations);
+        benchmark(new JsonStatsCodec(logger), snapshot, iterations);
+        benchmark(new BinaryStatsCodec(), snapshot, iterations);
+    }
+
+    private static void benchmark(StatsCodec codec, StatsSnapshot snapshot, int iterations) throws IOException {
+        byte[] encoded = null;
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int i = 0; i <= iterations; i++) { // Iteration 0 is warm-up
+            long start = System.nanoTime();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            codec.encode(snapshot, 0, out);
+            encoded = out.toByteArray();
+            long encodedAt = System.nanoTime();
+            codec.decode(new ByteArrayInputStream(encoded), new CollectingSink());
+            long decodedAt = System.nanoTime();
+            if (i > 0) {
+                encodeNanos += encodedAt - start;
+                decodeNanos += decodedAt - encodedAt;
+            }
+        }
+        int runs = Math.max(1, iterations);
+        System.out.printf("  %-6s size %,12d bytes   save %8.1f ms   load %8.1f ms%n", codec.getName(), encoded.length,
+                encodeNanos / 1e6 / runs, decodeNanos / 1e6 / runs);
+    }
+
+    /** Builds plain maps from decoded records, mirroring the plugin's own load rules. */
+    private static final class CollectingSink implements StatsCodec.Sink {
+        final Map<UUID, PlayerStats> players = new HashMap<>();
+        final Map<String, Integer> counters = new HashMap<>();
+        final Map<String, SiegeStats> active = new HashMap<>();
+        final Map<String, SiegeStats> completed = new HashMap<>();
+        long journalGeneration = 0;
+
+        @Override
+        public void player(PlayerStats stats) { players.put(stats.getPlayerUUID(), stats); }
+
+        @Override
+        public void townSiegeCounters(Map<String, Integer> townCounters) {
+            counters.clear();
+            counters.putAll(townCounters);
+        }
+
+        @Override
+        public void siege(SiegeStats stats) {
+            active.remove(stats.getSiegeId());
+            completed.remove(stats.getSiegeId());
+            (stats.isActive() ? active : completed).put(stats.getSiegeId(), stats);
+        }
+
+        @Override
+        public void removedSiege(String siegeId) {
+            active.remove(siegeId);
+            completed.remove(siegeId);
+        }
+
+        @Override
+        public void journalGeneration(long generation) { journalGeneration = Math.max(journalGeneration, generation); }
+    }
+}
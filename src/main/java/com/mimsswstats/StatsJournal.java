@@ -0,0 +1,596 @@
+package com.mimsswstats;
+
+import com.gmail.goosius.siegewar.enums.SiegeSide;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of every stat mutation, so anything recorded between snapshots survives a crash.
+ *
+ * Records are appended from the main thread into an in-memory buffer; {@link #commit()} (scheduled async every
+ * {@code storage.journal-flush-ticks}) flushes and fsyncs everything appended since the last commit in one go.
+ *
+ * The journal is split into numbered generations (journal/journal-N.bin). Each snapshot capture calls
+ * {@link #rotate()} and stores the returned generation in the snapshot; once that snapshot is on disk the
+ * generations it covers are deleted. On load, only generations newer than the one recorded in the loaded
+ * snapshot files are replayed.
+ *
+ * Record framing: [int payloadLength][payload][int crc32(payload)]. A torn record at the tail of a file
+ * (crash mid-write) fails the length or CRC check and ends replay of that file.
+ */
+public class StatsJournal {
+    private static final String FILE_PREFIX = "journal-";
+    private static final String FILE_SUFFIX = ".bin";
+
+    private static final byte SIEGE_START = 1;
+    private static final byte ACTION = 2;
+    private static final byte PARTICIPANT = 3;
+    private static final byte SIEGE_END = 4;
+    private static final byte SIEGE_RESULT = 5;
+    private static final byte WIN_LOSS = 6;
+    private static final byte SIEGE_DELETE = 7;
+    private static final byte SIEGE_SIDES = 8;
+    private static final byte SEASON_END = 9;
+
+    /** Receives replayed mutations in the order they were journaled. */
+    public interface ReplayHandler {
+        void onSiegeStart(String siegeId, String townName, int siegeNumber, long startTimeMillis);
+        void onAction(String siegeId, UUID playerUUID, String playerName, SiegeSide side,
+                      int kills, int deaths, double damage, double controlTimeMinutes, int assists);
+        void onParticipant(String siegeId, UUID playerUUID, String playerName, SiegeSide side);
+        void onSiegeEnd(String siegeId, long endTimeMillis);
+        void onSiegeResult(String siegeId, boolean attackersWon, boolean defendersWon);
+        void onWinLoss(String siegeId, UUID playerUUID, boolean win);
+        void onSiegeDelete(String siegeId);
+        void onSiegeSides(String siegeId, String attackerTown, String attackerNation, String defenderTown, String defenderNation);
+        void onSeasonEnd(String name, long startedAtMillis, long endedAtMillis);
+    }
+
+    private final File journalDir;
+    private final Logger logger;
+
+    // Guarded by this
+    private long generation;
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+    private final DataOutputStream record = new DataOutputStream(recordBuffer);
+    private final CRC32 crc = new CRC32();
+    private boolean uncommitted;
+    private final List<FileOutputStream> sealed = new ArrayList<>(); // Rotated-out generations awaiting their fsync
+
+    private final AtomicLong recordsAppended = new AtomicLong();
+    private final AtomicLong bytesAppended = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private volatile long lastCommitMicros = 0;
+
+    public StatsJournal(File dataFolder, Logger logger) {
+        this.journalDir = new File(dataFolder, "journal");
+        this.logger = logger;
+    }
+
+    /**
+     * Opens a fresh generation above every existing file and above the generation the loaded snapshot covers
+     * (a restored backup may cover more than the journal folder has seen). Existing files are left alone for replay.
+     */
+    public synchronized void open(long coveredGeneration) throws IOException {
+        if (!journalDir.exists() && !journalDir.mkdirs()) {
+            throw new IOException("Could not create journal folder: " + journalDir.getPath());
+        }
+        long highest = coveredGeneration;
+        for (File file : listGenerations()) {
+            highest = Math.max(highest, generationOf(file));
+        }
+        openGeneration(highest + 1);
+    }
+
+    /**
+     * Moves appending to a generation above {@code coveredGeneration} if the open one is not, so records written
+     * after loading a snapshot are never mistaken for ones it covers. Does nothing before {@link #open(long)}.
+     */
+    public synchronized void moveAbove(long coveredGeneration) {
+        if (out == null || generation > coveredGeneration) return;
+        try {
+            closeCurrent();
+            openGeneration(coveredGeneration + 1);
+        } catch (IOException e) {
+            logger.severe("Could not advance stats journal: " + e.getMessage());
+        }
+    }
+
+    // --- Appending (main thread) ---
+
+    public void appendSiegeStart(String siegeId, String townName, int siegeNumber, long startTimeMillis) {
+        synchronized (this) {
+            try {
+                beginRecord(SIEGE_START);
+                record.writeUTF(siegeId);
+                record.writeUTF(townName);
+                record.writeInt(siegeNumber);
+                record.writeLong(startTimeMillis);
+                endRecord();
+            } catch (IOException e) {
+                appendFailed(e);
+            }
+        }
+    }
+
+    public void appendAction(String siegeId, UUID playerUUID, String playerName, SiegeSide side,
+                             int kills, int deaths, double damage, double controlTimeMinutes, int assists) {
+        synchronized (this) {
+            try {
+                beginRecord(ACTION);
+                record.writeUTF(siegeId);
+                writeUUID(playerUUID);
+                record.writeUTF(playerName != null ? playerName : "");
+                record.writeByte(sideCode(side));
+                record.writeInt(kills);
+                record.writeInt(deaths);
+                record.writeDouble(damage);
+                record.writeDouble(controlTimeMinutes);
+                record.writeInt(assists);
+                endRecord();
+            } catch (IOException e) {
+                appendFailed(e);
+            }
+        }
+    }
+
+    public void appendParticipant(String siegeId, UUID playerUUID, String playerName, SiegeSide side) {
+        synchronized (this) {
+            try {
+                beginRecord(PARTICIPANT);
+                record.writeUTF(siegeId);
+                writeUUID(playerUUID);
+                record.writeUTF(playerName != null ? playerName : "");
+                record.writeByte(sideCode(side));
+                endRecord();
+            } catch (IOException e) {
+                appendFailed(e);
+            }
+        }
+    }
+
+    public void appendSiegeEnd(String siegeId, long endTimeMillis) {
+        synchronized (this) {
+            try {
+                beginRecord(SIEGE_END);
+                record.writeUTF(siegeId);
+                record.writeLong(endTimeMillis);
+                endRecord();
+            } catch (IOException e) {
+                appendFailed(e);
+            }
+        }
+    }
+
+    public void appendSiegeResult(String siegeId, boolean attackersWon, boolean defendersWon) {
+        synchronized (this) {
+            try {
+                beginRecord(SIEGE_RESULT);
+                record.writeUTF(siegeId);
+                record.writeBoolean(attackersWon);
+                record.writeBoolean(defendersWon);
+                endRecord();
+            } catch (IOException e) {
+                appendFailed(e);
+            }
+        }
+    }
+
+    public void appendWinLoss(String siegeId, UUID playerUUID, boolean win) {
+        synchronized (this) {
+            try {
+                beginRecord(WIN_LOSS);
+                record.writeUTF(siegeId);
+                writeUUID(playerUUID);
+                record.writeBoolean(win);
+                endRecord();
+            } catch (IOException e) {
+                appendFailed(e);
+            }
+        }
+    }
+
+    public void appendSiegeDelete(String siegeId) {
+        synchronized (this) {
+            try {
+                beginRecord(SIEGE_DELETE);
+                record.writeUTF(siegeId);
+                endRecord();
+            } catch (IOException e) {
+                appendFailed(e);
+            }
+        }
+    }
+
+    /** The towns and nations on each side of a siege, as resolved from Towny when it was first tracked. */
+    public void appendSiegeSides(String siegeId, String attackerTown, String attackerNation, String defenderTown, String defenderNation) {
+        synchronized (this) {
+            try {
+                beginRecord(SIEGE_SIDES);
+                record.writeUTF(siegeId);
+                record.writeUTF(attackerTown != null ? attackerTown : "");
+                record.writeUTF(attackerNation != null ? attackerNation : "");
+                record.writeUTF(defenderTown != null ? defenderTown : "");
+                record.writeUTF(defenderNation != null ? defenderNation : "");
+                endRecord();
+            } catch (IOException e) {
+                appendFailed(e);
+            }
+        }
+    }
+
+    /** Every record before this one belongs to the named season, every record after it to the next. */
+    public void appendSeasonEnd(String name, long startedAtMillis, long endedAtMillis) {
+        synchronized (this) {
+            try {
+                beginRecord(SEASON_END);
+                record.writeUTF(name);
+                record.writeLong(startedAtMillis);
+                record.writeLong(endedAtMillis);
+                endRecord();
+            } catch (IOException e) {
+                appendFailed(e);
+            }
+        }
+    }
+
+    // --- Group Commit (async) ---
+
+    /**
+     * Flushes and fsyncs everything appended since the last commit, including generations sealed by
+     * {@link #rotate()} since then. Cheap when nothing was appended. Only the flush holds the lock; the fsync
+     * runs outside it, so appends on the main thread never wait for the disk.
+     */
+    public void commit() {
+        long start = System.nanoTime();
+        FileOutputStream current = null;
+        List<FileOutputStream> sealedFiles;
+        synchronized (this) {
+            sealedFiles = new ArrayList<>(sealed);
+            sealed.clear();
+            if (uncommitted && out != null) {
+                try {
+                    out.flush();
+                    current = fileOut;
+                    uncommitted = false;
+                } catch (IOException e) {
+                    logger.severe("Could not commit stats journal: " + e.getMessage());
+                }
+            }
+        }
+        if (current == null && sealedFiles.isEmpty()) return;
+        for (FileOutputStream file : sealedFiles) {
+            try {
+                file.getChannel().force(false);
+            } catch (IOException e) {
+                logger.severe("Could not commit sealed stats journal generation: " + e.getMessage());
+            }
+            closeQuietly(file);
+        }
+        if (current != null) {
+            try {
+                current.getChannel().force(false);
+            } catch (IOException e) {
+                logger.severe("Could not commit stats journal: " + e.getMessage());
+                synchronized (this) {
+                    if (fileOut == current) uncommitted = true; // Try again next commit
+                }
+                return;
+            }
+        }
+        commits.incrementAndGet();
+        lastCommitMicros = (System.nanoTime() - start) / 1000L;
+    }
+
+    // --- Generations ---
+
+    /**
+     * Seals the current generation and starts a new one. Called on the main thread while capturing a snapshot,
+     * so every record in the returned generation (and below) is reflected in that snapshot.
+     * @return the generation that was just sealed.
+     */
+    public synchronized long rotate() {
+        long sealed = generation;
+        try {
+            closeCurrent();
+            openGeneration(sealed + 1);
+        } catch (IOException e) {
+            logger.severe("Could not rotate stats journal: " + e.getMessage());
+        }
+        return sealed;
+    }
+
+    /** Deletes every sealed generation up to and including the given one. Called once a snapshot covering them is on disk. */
+    public void truncateThrough(long coveredGeneration) {
+        commit(); // Closes the sealed files first (an open file cannot be deleted everywhere)
+        synchronized (this) {
+            for (File file : listGenerations()) {
+                long fileGeneration = generationOf(file);
+                if (fileGeneration <= coveredGeneration && fileGeneration != generation && !file.delete()) {
+                    logger.warning("Could not delete stats journal file: " + file.getPath());
+                }
+            }
+        }
+    }
+
+    /** Drops every generation, including the open one (used by a full reset). */
+    public synchronized void deleteAll() {
+        long next = generation + 1;
+        try {
+            closeCurrent();
+        } catch (IOException e) {
+            logger.warning("Could not close stats journal: " + e.getMessage());
+        }
+        for (FileOutputStream file : sealed) closeQuietly(file); // Being discarded; no fsync needed
+        sealed.clear();
+        for (File file : listGenerations()) {
+            if (!file.delete()) {
+                logger.warning("Could not delete stats journal file: " + file.getPath());
+            }
+        }
+        try {
+            openGeneration(next);
+        } catch (IOException e) {
+            logger.severe("Could not reopen stats journal: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            if (out != null) {
+                out.flush();
+                fileOut.getChannel().force(false);
+            }
+            closeCurrent();
+            for (FileOutputStream file : sealed) {
+                file.getChannel().force(false);
+                closeQuietly(file);
+            }
+            sealed.clear();
+        } catch (IOException e) {
+            logger.severe("Could not close stats journal: " + e.getMessage());
+        }
+    }
+
+    // --- Replay ---
+
+    /**
+     * Replays every generation newer than {@code coveredGeneration}, oldest first.
+     * Must run before {@link #open()} creates the new generation.
+     * @return number of records replayed.
+     */
+    public int replay(long coveredGeneration, ReplayHandler handler) {
+        int replayed = 0;
+        for (File file : listGenerations()) {
+            if (generationOf(file) <= coveredGeneration) continue;
+            replayed += replayFile(file, handler);
+        }
+        return replayed;
+    }
+
+    private int replayFile(File file, ReplayHandler handler) {
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break; // Clean end of file
+                }
+                if (length <= 0 || length > 1 << 20) {
+                    logger.warning("Stats journal " + file.getName() + " has a corrupt record header after " + replayed + " records; ignoring the rest.");
+                    break;
+                }
+                byte[] payload = new byte[length];
+                int storedCrc;
+                try {
+                    in.readFully(payload);
+                    storedCrc = in.readInt();
+                } catch (EOFException e) {
+                    logger.warning("Stats journal " + file.getName() + " ends with a torn record (crash mid-write); ignoring it.");
+                    break;
+                }
+                CRC32 check = new CRC32();
+                check.update(payload);
+                if ((int) check.getValue() != storedCrc) {
+                    logger.warning("Stats journal " + file.getName() + " has a record with a bad checksum after " + replayed + " records; ignoring the rest.");
+                    break;
+                }
+                applyRecord(new DataInputStream(new ByteArrayInputStream(payload)), handler);
+                replayed++;
+            }
+        } catch (IOException e) {
+            logger.severe("Could not replay stats journal " + file.getName() + ": " + e.getMessage());
+        }
+        return replayed;
+    }
+
+    private void applyRecord(DataInputStream in, ReplayHandler handler) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case SIEGE_START:
+                handler.onSiegeStart(in.readUTF(), in.readUTF(), in.readInt(), in.readLong());
+                break;
+            case ACTION: {
+                String siegeId = in.readUTF();
+                UUID playerUUID = readUUID(in);
+                String name = in.readUTF();
+                SiegeSide side = sideFromCode(in.readByte());
+                handler.onAction(siegeId, playerUUID, name.isEmpty() ? null : name, side,
+                        in.readInt(), in.readInt(), in.readDouble(), in.readDouble(), in.readInt());
+                break;
+            }
+            case PARTICIPANT: {
+                String siegeId = in.readUTF();
+                UUID playerUUID = readUUID(in);
+                String name = in.readUTF();
+                handler.onParticipant(siegeId, playerUUID, name.isEmpty() ? null : name, sideFromCode(in.readByte()));
+                break;
+            }
+            case SIEGE_END:
+                handler.onSiegeEnd(in.readUTF(), in.readLong());
+                break;
+            case SIEGE_RESULT:
+                handler.onSiegeResult(in.readUTF(), in.readBoolean(), in.readBoolean());
+                break;
+            case WIN_LOSS:
+                handler.onWinLoss(in.readUTF(), readUUID(in), in.readBoolean());
+                break;
+            case SIEGE_DELETE:
+                handler.onSiegeDelete(in.readUTF());
+                break;
+            case SIEGE_SIDES:
+                handler.onSiegeSides(in.readUTF(), nameOrNull(in.readUTF()), nameOrNull(in.readUTF()),
+                        nameOrNull(in.readUTF()), nameOrNull(in.readUTF()));
+                break;
+            case SEASON_END:
+                handler.onSeasonEnd(in.readUTF(), in.readLong(), in.readLong());
+                break;
+            default:
+                logger.warning("Skipping unknown stats journal record type " + type);
+        }
+    }
+
+    private static String nameOrNull(String name) {
+        return name.isEmpty() ? null : name;
+    }
+
+    // --- Metrics ---
+
+    public long getRecordsAppended() { return recordsAppended.get(); }
+    public long getBytesAppended() { return bytesAppended.get(); }
+    public long getCommits() { return commits.get(); }
+    public long getLastCommitMicros() { return lastCommitMicros; }
+    public synchronized long getGeneration() { return generation; }
+
+    // --- Internals ---
+
+    private void beginRecord(byte type) throws IOException {
+        recordBuffer.reset();
+        record.writeByte(type);
+    }
+
+    private void endRecord() throws IOException {
+        if (out == null) return; // Journal failed to open; snapshots still work
+        record.flush();
+        byte[] payload = recordBuffer.toByteArray();
+        crc.reset();
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+        uncommitted = true;
+        recordsAppended.incrementAndGet();
+        bytesAppended.addAndGet(payload.length + 8L);
+    }
+
+    private void appendFailed(IOException e) {
+        logger.severe("Could not append to stats journal: " + e.getMessage());
+    }
+
+    private void writeUUID(UUID uuid) throws IOException {
+        record.writeLong(uuid.getMostSignificantBits());
+        record.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUUID(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    // Stable codes rather than ordinals, so a SiegeWar enum reorder cannot corrupt old journals.
+    static byte sideCode(SiegeSide side) {
+        if (side == SiegeSide.ATTACKERS) return 1;
+        if (side == SiegeSide.DEFENDERS) return 2;
+        return 0;
+    }
+
+    static SiegeSide sideFromCode(byte code) {
+        switch (code) {
+            case 1: return SiegeSide.ATTACKERS;
+            case 2: return SiegeSide.DEFENDERS;
+            default: return SiegeSide.NOBODY;
+        }
+    }
+
+    private void openGeneration(long newGeneration) throws IOException {
+        this.generation = newGeneration;
+        this.fileOut = new FileOutputStream(generationFile(newGeneration), true);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+        this.uncommitted = false;
+    }
+
+    /**
+     * Seals the open generation: its buffer is flushed and the file handed to the next {@link #commit()} to fsync and
+     * close. Its records are not safe until then; the snapshot that supersedes them is not on disk yet either.
+     */
+    private void closeCurrent() throws IOException {
+        if (out != null) {
+            DataOutputStream closing = out;
+            FileOutputStream closingFile = fileOut;
+            out = null;
+            fileOut = null;
+            try {
+                closing.flush();
+            } finally {
+                if (uncommitted) {
+                    sealed.add(closingFile);
+                } else {
+                    closeQuietly(closingFile); // Everything in it was already committed
+                }
+                uncommitted = false;
+            }
+        }
+    }
+
+    private void closeQuietly(FileOutputStream file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.warning("Could not close stats journal file: " + e.getMessage());
+        }
+    }
+
+    private File generationFile(long gen) {
+        return new File(journalDir, String.format("%s%012d%s", FILE_PREFIX, gen, FILE_SUFFIX));
+    }
+
+    private List<File> listGenerations() {
+        File[] files = journalDir.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null) return new ArrayList<>();
+        List<File> generations = new ArrayList<>(Arrays.asList(files));
+        generations.removeIf(f -> generationOf(f) < 0);
+        generations.sort(Comparator.comparingLong(StatsJournal::generationOf));
+        return generations;
+    }
+
+    private static long generationOf(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.mimsswstats;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Leveled logging for listeners, commands and the stats manager, with a level per {@link Category}.
+ * <p>
+ * A disabled call costs one array read: pass constant strings directly, and build anything else in a
+ * {@link Supplier} (or behind {@link #isDebug}) so formatting only happens when the line is written.
+ * Levels come from logging.levels, and debug-mode: true raises every category to at least debug. Debug and
+ * trace lines can go through a ring buffer drained by a background thread (logging.async-buffer-size), so
+ * tracing a busy fight does not block the main thread on console output.
+ */
+public final class StatsLog {
+    public enum Category { COMBAT, BANNER, SIEGE, STATS, STORAGE, COMMAND, WEB }
+
+    public enum Severity { OFF, ERROR, WARN, INFO, DEBUG, TRACE }
+
+    private final Logger logger;
+    private volatile Severity[] levels;
+    private volatile DebugRing ring;
+
+    public StatsLog(Logger logger) {
+        this.logger = logger;
+        Severity[] defaults = new Severity[Category.values().length];
+        Arrays.fill(defaults, Severity.INFO);
+        this.levels = defaults;
+    }
+
+    /** (Re)reads levels and the async buffer from config.yml. */
+    public void configure(FileConfiguration config) {
+        boolean debugMode = config.getBoolean("debug-mode", false);
+        ConfigurationSection section = config.getConfigurationSection("logging.levels");
+        Severity[] configured = new Severity[Category.values().length];
+        for (Category category : Category.values()) {
+            String name = category.name().toLowerCase(Locale.ROOT);
+            Severity level = Severity.INFO;
+            String value = section != null ? section.getString(name) : null;
+            if (value != null) {
+                try {
+                    level = Severity.valueOf(value.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Unknown log level '" + value + "' for logging.levels." + name + "; using info.");
+                }
+            }
+            if (debugMode && level.compareTo(Severity.DEBUG) < 0) level = Severity.DEBUG;
+            configured[category.ordinal()] = level;
+        }
+        levels = configured;
+
+        int bufferSize = config.getInt("logging.async-buffer-size", 0);
+        DebugRing previous = ring;
+        ring = bufferSize > 0 ? new DebugRing(bufferSize) : null;
+        if (previous != null) previous.close();
+    }
+
+    /** Writes out anything still buffered and stops the background writer. */
+    public void shutdown() {
+        DebugRing previous = ring;
+        ring = null;
+        if (previous != null) previous.close();
+    }
+
+    public boolean isEnabled(Category category, Severity severity) {
+        return severity.compareTo(levels[category.ordinal()]) <= 0;
+    }
+
+    public boolean isDebug(Category category) { return isEnabled(category, Severity.DEBUG); }
+
+    public boolean isTrace(Category category) { return isEnabled(category, Severity.TRACE); }
+
+    public void error(Category category, String message) {
+        if (isEnabled(category, Severity.ERROR)) logger.severe(message);
+    }
+
+    public void error(Category category, String message, Throwable error) {
+        if (isEnabled(category, Severity.ERROR)) logger.log(Level.SEVERE, message, error);
+    }
+
+    public void warn(Category category, String message) {
+        if (isEnabled(category, Severity.WARN)) logger.warning(message);
+    }
+
+    public void info(Category category, String message) {
+        if (isEnabled(category, Severity.INFO)) logger.info(message);
+    }
+
+    public void debug(Category category, String message) {
+        if (isDebug(category)) emit("[DEBUG] ", message);
+    }
+
+    public void debug(Category category, Supplier<String> message) {
+        if (isDebug(category)) emit("[DEBUG] ", message.get());
+    }
+
+    public void trace(Category category, String message) {
+        if (isTrace(category)) emit("[TRACE] ", message);
+    }
+
+    public void trace(Category category, Supplier<String> message) {
+        if (isTrace(category)) emit("[TRACE] ", message.get());
+    }
+
+    public long getDroppedLines() {
+        DebugRing current = ring;
+        return current != null ? current.getDropped() : 0;
+    }
+
+    private void emit(String prefix, String message) {
+        DebugRing current = ring;
+        if (current == null || !current.offer(prefix + message)) {
+            logger.info(prefix + message);
+        }
+    }
+
+    /** Fixed-size ring of pending lines; when the writer falls behind the oldest lines are overwritten. */
+    private final class DebugRing implements Runnable {
+        private final String[] lines;
+        private final Thread writer;
+        private long head; // Next slot to write
+        private long tail; // Next slot to drain
+        private long dropped;
+        private boolean closed;
+
+        DebugRing(int capacity) {
+            this.lines = new String[capacity];
+            this.writer = new Thread(this, "SiegeStats-Log");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+
+        synchronized boolean offer(String line) {
+            if (closed) return false;
+            if (head - tail == lines.length) {
+                tail++; // Overwrite the oldest
+                dropped++;
+            }
+            lines[(int) (head++ % lines.length)] = line;
+            notify();
+            return true;
+        }
+
+        @Override
+        public void run() {
+            String[] batch = new String[lines.length];
+            while (true) {
+                int count = 0;
+                synchronized (this) {
+                    while (head == tail && !closed) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            closed = true;
+                        }
+                    }
+                    if (head == tail) return; // Closed and drained
+                    while (tail < head) {
+                        int slot = (int) (tail++ % lines.length);
+                        batch[count++] = lines[slot];
+                        lines[slot] = null;
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    logger.info(batch[i]);
+                    batch[i] = null;
+                }
+            }
+        }
+
+        synchronized long getDropped() { return dropped; }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                notify();
+            }
+            try {
+                writer.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.mimsswstats;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Read-only lookups behind /ss top and the history commands. {@link SqlStatsStore} answers them with
+ * indexed queries against what was last saved; {@link MemoryStatsQueries} scans the live data.
+ */
+public interface StatsQueries {
+
+    /** One leaderboard row. */
+    final class RankedPlayer {
+        public final UUID playerUUID;
+        public final String name;
+        public final double value;
+
+        public RankedPlayer(UUID playerUUID, String name, double value) {
+            this.playerUUID = playerUUID;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    /** @return up to {@code limit} players who took part in at least one siege, best first. */
+    List<RankedPlayer> topPlayers(LeaderboardStat stat, int limit) throws IOException;
+
+    /** @return the player's most recently ended sieges, newest first. */
+    List<SiegeArchive.Summary> playerSiegeHistory(UUID playerUUID, int limit) throws IOException;
+
+    /** @return the town's most recently ended sieges, newest first. */
+    List<SiegeArchive.Summary> townSiegeHistory(String townName, int limit) throws IOException;
+
+    /** True if lookups do I/O and should be run off the main thread. */
+    boolean isBlocking();
+}
@@ -0,0 +1,212 @@
+package com.mimsswstats;
+
+import com.gmail.goosius.siegewar.enums.SiegeSide;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A detached, point-in-time copy of everything that gets persisted.
+ * Captured on the main thread (cheap field copies only) so that serialization
+ * and disk I/O can happen on a background thread without touching live objects.
+ */
+public final class StatsSnapshot {
+
+    public static final class PlayerRecord {
+        public final UUID uuid;
+        public final String lastKnownName;
+        public final int kills;
+        public final int deaths;
+        public final int assists;
+        public final double damage;
+        public final double captureTime;
+        public final int siegesParticipated;
+        public final int wins;
+        public final int losses;
+        public final List<String> siegeParticipations;
+
+        PlayerRecord(PlayerStats stats) {
+            this.uuid = stats.getPlayerUUID();
+            this.lastKnownName = stats.getLastKnownName();
+            PlayerStats.Snapshot totals = stats.snapshot();
+            this.kills = totals.kills;
+            this.deaths = totals.deaths;
+            this.assists = totals.assists;
+            this.damage = totals.damage;
+            this.captureTime = totals.captureTime;
+            this.siegesParticipated = totals.siegesParticipated;
+            this.wins = totals.wins;
+            this.losses = totals.losses;
+            this.siegeParticipations = new ArrayList<>(stats.getSiegeParticipations());
+        }
+    }
+
+    public static final class ParticipantRecord {
+        public final int kills;
+        public final int deaths;
+        public final int assists;
+        public final double damage;
+        public final double controlTime;
+        public final SiegeSide side;
+
+        ParticipantRecord(SiegeStats.ParticipantMetrics live) {
+            SiegeStats.ParticipantMetrics.Snapshot metrics = live.snapshot();
+            this.kills = metrics.kills;
+            this.deaths = metrics.deaths;
+            this.assists = metrics.assists;
+            this.damage = metrics.damage;
+            this.controlTime = metrics.controlTime;
+            this.side = metrics.side;
+        }
+    }
+
+    public static final class SiegeRecord {
+        public final String siegeId;
+        public final String townName;
+        public final int siegeNumber;
+        public final long startTimeMillis;
+        public final long endTimeMillis;
+        public final boolean active;
+        public final boolean attackersWon;
+        public final boolean defendersWon;
+        public final Map<UUID, ParticipantRecord> participants;
+
+        SiegeRecord(SiegeStats stats) {
+            this.siegeId = stats.getSiegeId();
+            this.townName = stats.getTownName();
+            this.siegeNumber = stats.getSiegeNumber();
+            this.startTimeMillis = stats.getStartTime();
+            this.endTimeMillis = stats.getEndTime();
+            this.active = stats.isActive();
+            this.attackersWon = stats.getAttackersWon();
+            this.defendersWon = stats.getDefendersWon();
+            Map<UUID, ParticipantRecord> copy = new HashMap<>();
+            stats.getParticipantMetrics().forEach((uuid, metrics) -> copy.put(uuid, new ParticipantRecord(metrics)));
+            this.participants = Collections.unmodifiableMap(copy);
+        }
+    }
+
+    private final long capturedAtMillis;
+    private final boolean full;
+    private final List<PlayerRecord> players;
+    private final Map<String, Integer> townSiegeCounter;
+    private final List<SiegeRecord> activeSieges;
+    private final List<SiegeRecord> completedSieges;
+    private final Set<String> removedSiegeIds;
+    private final long journalGeneration; // Every journal record up to this generation is reflected here
+
+    private StatsSnapshot(boolean full, long journalGeneration, List<PlayerRecord> players, Map<String, Integer> townSiegeCounter,
+                          List<SiegeRecord> activeSieges, List<SiegeRecord> completedSieges, Set<String> removedSiegeIds) {
+        this.capturedAtMillis = System.currentTimeMillis();
+        this.full = full;
+        this.journalGeneration = journalGeneration;
+        this.players = Collections.unmodifiableList(players);
+        this.townSiegeCounter = Collections.unmodifiableMap(townSiegeCounter);
+        this.activeSieges = Collections.unmodifiableList(activeSieges);
+        this.completedSieges = Collections.unmodifiableList(completedSieges);
+        this.removedSiegeIds = Collections.unmodifiableSet(removedSiegeIds);
+    }
+
+    /**
+     * Copies every record in the given live maps and clears their dirty flags.
+     * Must be called from the thread that mutates them (the main thread).
+     */
+    static StatsSnapshot captureFull(long journalGeneration, Map<UUID, PlayerStats> playerStats,
+                                     Map<String, Integer> townSiegeCounter,
+                                     Map<String, SiegeStats> activeSieges,
+                                     Map<String, SiegeStats> completedSieges) {
+        List<PlayerRecord> players = new ArrayList<>(playerStats.size());
+        playerStats.values().forEach(stats -> {
+            stats.clearDirty();
+            players.add(new PlayerRecord(stats));
+        });
+
+        List<SiegeRecord> active = new ArrayList<>(activeSieges.size());
+        activeSieges.values().forEach(stats -> {
+            stats.clearDirty();
+            active.add(new SiegeRecord(stats));
+        });
+
+        List<SiegeRecord> completed = new ArrayList<>(completedSieges.size());
+        completedSieges.values().forEach(stats -> {
+            stats.clearDirty();
+            completed.add(new SiegeRecord(stats));
+        });
+
+        return new StatsSnapshot(true, journalGeneration, players, new HashMap<>(townSiegeCounter), active, completed, Collections.emptySet());
+    }
+
+    /**
+     * Copies only the records named in the dirty sets (which are drained) plus the small town counter map.
+     * Cost is proportional to what changed since the previous capture, not to total history.
+     */
+    static StatsSnapshot captureDelta(long journalGeneration, Map<UUID, PlayerStats> playerStats, Set<UUID> dirtyPlayers,
+                                      Map<String, Integer> townSiegeCounter,
+                                      Map<String, SiegeStats> activeSieges,
+                                      Map<String, SiegeStats> completedSieges, Set<String> dirtySieges,
+                                      Set<String> removedSieges) {
+        List<PlayerRecord> players = new ArrayList<>(dirtyPlayers.size());
+        for (Iterator<UUID> it = dirtyPlayers.iterator(); it.hasNext(); ) {
+            PlayerStats stats = playerStats.get(it.next());
+            it.remove();
+            if (stats != null) {
+                stats.clearDirty();
+                players.add(new PlayerRecord(stats));
+            }
+        }
+
+        List<SiegeRecord> active = new ArrayList<>();
+        List<SiegeRecord> completed = new ArrayList<>();
+        for (Iterator<String> it = dirtySieges.iterator(); it.hasNext(); ) {
+            String siegeId = it.next();
+            it.remove();
+            SiegeStats stats = activeSieges.get(siegeId);
+            List<SiegeRecord> target = active;
+            if (stats == null) {
+                stats = completedSieges.get(siegeId);
+                target = completed;
+            }
+            if (stats != null) {
+                stats.clearDirty();
+                target.add(new SiegeRecord(stats));
+            }
+        }
+
+        Set<String> removed = new HashSet<>(removedSieges);
+        removedSieges.clear();
+
+        return new StatsSnapshot(false, journalGeneration, players, new HashMap<>(townSiegeCounter), active, completed, removed);
+    }
+
+    /** A single completed siege, for its own file in the siege archive. */
+    static StatsSnapshot captureSiege(SiegeStats stats) {
+        List<SiegeRecord> completed = new ArrayList<>(1);
+        completed.add(new SiegeRecord(stats));
+        return new StatsSnapshot(false, 0, new ArrayList<>(), new HashMap<>(), new ArrayList<>(), completed, Collections.emptySet());
+    }
+
+    /** True if there is nothing in this delta worth writing. */
+    public boolean isEmptyDelta() {
+        return !full && players.isEmpty() && activeSieges.isEmpty() && completedSieges.isEmpty() && removedSiegeIds.isEmpty();
+    }
+
+    public int getRecordCount() {
+        return players.size() + activeSieges.size() + completedSieges.size() + removedSiegeIds.size();
+    }
+
+    public long getCapturedAtMillis() { return capturedAtMillis; }
+    public List<PlayerRecord> getPlayers() { return players; }
+    public Map<String, Integer> getTownSiegeCounter() { return townSiegeCounter; }
+    public List<SiegeRecord> getActiveSieges() { return activeSieges; }
+    public List<SiegeRecord> getCompletedSieges() { return completedSieges; }
+    public Set<String> getRemovedSiegeIds() { return removedSiegeIds; }
+    public boolean isFull() { return full; }
+    public long getJournalGeneration() { return journalGeneration; }
+}
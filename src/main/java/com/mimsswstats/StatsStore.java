@@ -0,0 +1,46 @@
+package com.mimsswstats;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Where snapshots are persisted. All writes happen on the save thread, strictly in capture order.
+ */
+public interface StatsStore {
+
+    /**
+     * Persists a full or delta snapshot.
+     * @return number of bytes written.
+     */
+    long write(StatsSnapshot snapshot) throws IOException;
+
+    /**
+     * Feeds everything stored into the sink, oldest first.
+     * @return number of files (or equivalent units) applied.
+     * @throws IOException if the base data is unreadable; damaged deltas are logged and skipped instead.
+     */
+    int load(StatsCodec.Sink sink) throws IOException;
+
+    /** True if this store holds any data at all. */
+    boolean exists();
+
+    /** True once enough deltas exist that the next save should be a full compaction. */
+    boolean needsCompaction();
+
+    int getSegmentCount();
+
+    /** Removes all stored data (used by a full reset). */
+    void deleteAll();
+
+    /**
+     * Copies a consistent image of everything stored into {@code targetDir}, using the same relative paths as
+     * in the data folder. Runs on the save thread, so no snapshot is being written meanwhile.
+     */
+    void copyTo(File targetDir) throws IOException;
+
+    /** Short human-readable description for debug output, e.g. "json (stats.json + segments)". */
+    String describe();
+
+    /** Releases anything held open (connections, handles). Called after the last write on shutdown. */
+    default void close() {}
+}
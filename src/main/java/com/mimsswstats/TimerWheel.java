@@ -0,0 +1,94 @@
+package com.mimsswstats;
+
+/**
+ * Hashed timer wheel for expiring in-memory combat state. Timeouts hash into one of SLOTS buckets by deadline;
+ * each {@link #advance} visits only the buckets whose time has come, so scheduling and expiry are O(1) however
+ * many entries are live. Deadlines further out than one turn of the wheel stay in their bucket until a later lap.
+ * <p>
+ * Main thread only: scheduled from event handlers and advanced by a repeating task.
+ */
+public class TimerWheel {
+    private static final int SLOTS = 64; // Power of two
+
+    /** Called when a timeout is due. */
+    public interface Timeout {
+        /** @return milliseconds until this should run again, or a negative value when it is done. */
+        long expire(long nowMillis);
+    }
+
+    private static final class Node {
+        final Timeout timeout;
+        long deadlineTick;
+        Node next;
+
+        Node(Timeout timeout, long deadlineTick) {
+            this.timeout = timeout;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final long tickMillis;
+    private final Node[] slots = new Node[SLOTS];
+    private long currentTick;
+    private int size;
+    private long fired;
+
+    public TimerWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    public void schedule(long delayMillis, Timeout timeout) {
+        insert(new Node(timeout, 0), delayMillis);
+        size++;
+    }
+
+    /** Runs every timeout due up to nowMillis. */
+    public void advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        // After a stall longer than a lap every slot is due at most once
+        long last = Math.min(targetTick, currentTick + SLOTS);
+        while (currentTick < last) {
+            currentTick++;
+            runSlot((int) (currentTick & (SLOTS - 1)), targetTick, nowMillis);
+        }
+        currentTick = Math.max(currentTick, targetTick);
+    }
+
+    private void runSlot(int slot, long dueTick, long nowMillis) {
+        Node node = slots[slot];
+        slots[slot] = null;
+        while (node != null) {
+            Node next = node.next;
+            node.next = null;
+            if (node.deadlineTick > dueTick) {
+                relink(node, slot); // Due on a later lap
+            } else {
+                fired++;
+                long again = node.timeout.expire(nowMillis);
+                if (again >= 0) {
+                    insert(node, again);
+                } else {
+                    size--;
+                }
+            }
+            node = next;
+        }
+    }
+
+    private void insert(Node node, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        node.deadlineTick = currentTick + ticks;
+        relink(node, (int) (node.deadlineTick & (SLOTS - 1)));
+    }
+
+    private void relink(Node node, int slot) {
+        node.next = slots[slot];
+        slots[slot] = node;
+    }
+
+    /** Timeouts currently scheduled. */
+    public int size() { return size; }
+
+    public long getFired() { return fired; }
+}
@@ -7,11 +7,11 @@ import com.palmergames.bukkit.towny.TownyAPI;
 import com.palmergames.bukkit.towny.object.Town;
 import fi.iki.elonen.NanoHTTPD;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer; // Added import
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File; // Added
 import java.io.FileInputStream; // Added
 import java.io.IOException;
@@ -19,19 +19,38 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection; // For type hint if Siege object provided direct collections
-import java.util.Map;
+import java.util.List;
 import java.util.UUID;
-import java.util.logging.Level;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class WebServerManager extends NanoHTTPD {
 
     private final SiegeStatsPlugin plugin;
+    private final StatsLog log;
     private final SiegeStatsManager statsManager;
 
+    /** An endpoint's serialized body and the data version it was built from. */
+    private static final class CachedBody {
+        final long version;
+        final byte[] json;
+        final String etag;
+
+        CachedBody(long version, byte[] json, String etag) {
+            this.version = version;
+            this.json = json;
+            this.etag = etag;
+        }
+    }
+
+    private final ConcurrentHashMap<String, CachedBody> cachedBodies = new ConcurrentHashMap<>();
+    private final String etagPrefix = Long.toHexString(System.currentTimeMillis()); // Data versions restart with the server
+
     public WebServerManager(SiegeStatsPlugin plugin, int port) {
         super(port);
         this.plugin = plugin;
+        this.log = plugin.getStatsLog();
         this.statsManager = plugin.getStatsManager();
         // Removed the info log from here, as it's in SiegeStatsPlugin
     }
@@ -39,7 +58,7 @@ public class WebServerManager extends NanoHTTPD {
     @Override
     public Response serve(IHTTPSession session) {
         String uri = session.getUri();
-        // plugin.getLogger().info("Web server request: " + uri); // Optional: for verbose logging
+        // log.info(StatsLog.Category.WEB, "Web server request: " + uri); // Optional: for verbose logging
 
         try {
             if (uri.equals("/") || uri.equals("/index.html")) {
@@ -49,25 +68,75 @@ public class WebServerManager extends NanoHTTPD {
             } else if (uri.equals("/script.js")) {
                 return newFixedLengthResponse(Response.Status.OK, "application/javascript", loadResource("web/script.js"));
             } else if (uri.equals("/api/playerstats")) {
-                return newFixedLengthResponse(Response.Status.OK, "application/json", getPlayerStatsJson());
+                return cachedJsonResponse(session, uri, this::getPlayerStatsJson);
             } else if (uri.equals("/api/siegestats/completed")) {
-                return newFixedLengthResponse(Response.Status.OK, "application/json", getCompletedSiegeStatsJson());
+                return cachedJsonResponse(session, uri, this::getCompletedSiegeStatsJson);
+            } else if (uri.equals("/api/siegestats/siege")) {
+                return getSiegeByIdResponse(session);
             } else if (uri.equals("/api/siegestats/active")) {
                 return newFixedLengthResponse(Response.Status.OK, "application/json", getActiveSiegeStatsJson());
+            } else if (uri.equals("/api/top")) {
+                return getTopResponse(session);
+            } else if (uri.equals("/api/rank")) {
+                return getRankResponse(session);
+            } else if (uri.equals("/api/towns")) {
+                return getGovernmentsResponse(session, GovernmentStats.Kind.TOWN);
+            } else if (uri.equals("/api/nations")) {
+                return getGovernmentsResponse(session, GovernmentStats.Kind.NATION);
+            } else if (uri.equals("/api/seasons")) {
+                return newFixedLengthResponse(Response.Status.OK, "application/json", getSeasonsJson());
+            } else if (uri.equals("/api/season/top")) {
+                return getSeasonTopResponse(session);
+            } else if (uri.equals("/api/season/player")) {
+                return getSeasonPlayerResponse(session);
+            } else if (uri.equals("/api/season/sieges")) {
+                return getSeasonSiegesResponse(session);
             } else if (uri.equals("/api/livesiegeinfo")) {
                 return newFixedLengthResponse(Response.Status.OK, "application/json", getLiveSiegeInfoJson());
             }
-            plugin.getLogger().warning("Web server: 404 Not Found for URI: " + uri);
+            log.warn(StatsLog.Category.WEB, "Web server: 404 Not Found for URI: " + uri);
             return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "Error 404: File not found");
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error loading web resource for URI: " + uri, e);
+            log.error(StatsLog.Category.WEB, "Error loading web resource for URI: " + uri, e);
             return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, MIME_PLAINTEXT, "Error 500: Internal Server Error");
         } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Unexpected error serving request for URI: " + uri, e);
+            log.error(StatsLog.Category.WEB, "Unexpected error serving request for URI: " + uri, e);
             return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, MIME_PLAINTEXT, "Error 500: Internal Server Error");
         }
     }
 
+    /**
+     * Serves a body that only changes with the stats. It is serialized at most once per data version however many
+     * dashboards poll it, and carries an ETag, so a browser that already has this version gets 304 Not Modified.
+     * (Active sieges are not cached: their durations grow without any data changing.)
+     */
+    private Response cachedJsonResponse(IHTTPSession session, String key, Supplier<String> serializer) {
+        long version = statsManager.getDataVersion();
+        // compute() holds the entry while serializing, so concurrent pollers of a stale body wait for one rebuild
+        CachedBody body = cachedBodies.compute(key, (k, cached) -> cached != null && cached.version >= version ? cached
+                : new CachedBody(version, serializer.get().getBytes(StandardCharsets.UTF_8), "\"" + etagPrefix + "-" + version + "\""));
+        Response response;
+        if (matchesETag(session.getHeaders().get("if-none-match"), body.etag)) {
+            response = newFixedLengthResponse(Response.Status.NOT_MODIFIED, "application/json", "");
+        } else {
+            response = newFixedLengthResponse(Response.Status.OK, "application/json; charset=UTF-8",
+                    new ByteArrayInputStream(body.json), body.json.length);
+        }
+        response.addHeader("ETag", body.etag);
+        response.addHeader("Cache-Control", "no-cache"); // Browsers revalidate on every poll instead of reusing blindly
+        return response;
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(etag) || tag.equals("*")) return true;
+        }
+        return false;
+    }
+
     /**
      * Loads a resource, prioritizing the external plugin data folder, then falling back to JAR.
      * @param resourceJarPath The path of the resource as it is in the JAR (e.g., "web/index.html")
@@ -79,16 +148,16 @@ public class WebServerManager extends NanoHTTPD {
         File externalFile = new File(plugin.getDataFolder(), resourceJarPath);
 
         if (externalFile.exists() && externalFile.isFile()) {
-            plugin.getLogger().fine("Serving from external file: " + externalFile.getAbsolutePath());
+            log.trace(StatsLog.Category.WEB, () -> "Serving from external file: " + externalFile.getAbsolutePath());
             try (InputStream inputStream = new FileInputStream(externalFile);
                  BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
                 return reader.lines().collect(Collectors.joining("\n"));
             }
         } else {
-            plugin.getLogger().fine("External file " + externalFile.getAbsolutePath() + " not found. Serving from JAR: " + resourceJarPath);
+            log.trace(StatsLog.Category.WEB, () -> "External file " + externalFile.getAbsolutePath() + " not found. Serving from JAR: " + resourceJarPath);
             InputStream inputStream = plugin.getResource(resourceJarPath);
             if (inputStream == null) {
-                plugin.getLogger().warning("Web resource not found in JAR: " + resourceJarPath);
+                log.warn(StatsLog.Category.WEB, "Web resource not found in JAR: " + resourceJarPath);
                 throw new IOException("Resource not found in JAR: " + resourceJarPath);
             }
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
@@ -100,18 +169,19 @@ public class WebServerManager extends NanoHTTPD {
     @SuppressWarnings("unchecked")
     private String getPlayerStatsJson() {
         JSONArray playersArray = new JSONArray();
-        statsManager.getAllPlayerStats().forEach((uuid, stats) -> {
+        statsManager.getAllPlayerStats().forEach((uuid, player) -> {
+            PlayerStats.Snapshot stats = player.snapshot(); // Recorded concurrently on the main thread
             JSONObject pData = new JSONObject();
             pData.put("uuid", uuid.toString());
-            pData.put("lastKnownName", stats.getLastKnownName());
-            pData.put("totalKills", stats.getTotalKills());
-            pData.put("totalDeaths", stats.getTotalDeaths());
-            pData.put("totalAssists", stats.getTotalAssists());
-            pData.put("totalDamage", stats.getTotalDamage());
-            pData.put("totalCaptureTime", stats.getTotalCaptureTime());
-            pData.put("totalSiegesParticipated", stats.getTotalSiegesParticipated());
-            pData.put("totalWins", stats.getTotalWins());
-            pData.put("totalLosses", stats.getTotalLosses());
+            pData.put("lastKnownName", player.getLastKnownName());
+            pData.put("totalKills", stats.kills);
+            pData.put("totalDeaths", stats.deaths);
+            pData.put("totalAssists", stats.assists);
+            pData.put("totalDamage", stats.damage);
+            pData.put("totalCaptureTime", stats.captureTime);
+            pData.put("totalSiegesParticipated", stats.siegesParticipated);
+            pData.put("totalWins", stats.wins);
+            pData.put("totalLosses", stats.losses);
             pData.put("kdr", stats.getKillDeathRatio());
             pData.put("kda", stats.getKdaRatio());
             pData.put("winLossRatio", stats.getWinLossRatio());
@@ -120,13 +190,349 @@ public class WebServerManager extends NanoHTTPD {
         return playersArray.toJSONString();
     }
 
+    /**
+     * Completed sieges come from the resident archive index only (no participants, which would mean reading
+     * every siege file); fetch one siege's participants with /api/siegestats/siege?id=.
+     */
     @SuppressWarnings("unchecked")
     private String getCompletedSiegeStatsJson() {
         JSONArray siegesArray = new JSONArray();
-        statsManager.getCompletedSieges().forEach((id, stats) -> siegesArray.add(serializeSiegeStatsToJson(stats)));
+        for (SiegeArchive.Summary summary : statsManager.getSiegeArchive().getSummaries()) {
+            JSONObject sData = new JSONObject();
+            sData.put("siegeId", summary.siegeId);
+            sData.put("townName", summary.townName);
+            sData.put("siegeNumber", summary.siegeNumber);
+            sData.put("startTimeMillis", summary.startTimeMillis);
+            sData.put("endTimeMillis", summary.endTimeMillis);
+            sData.put("isActive", false);
+            sData.put("attackersWon", summary.attackersWon());
+            sData.put("defendersWon", summary.defendersWon());
+            sData.put("durationMinutes", summary.getDurationMinutes());
+            sData.put("participantCount", summary.participantCount);
+            siegesArray.add(sData);
+        }
         return siegesArray.toJSONString();
     }
+
+    private Response getSiegeByIdResponse(IHTTPSession session) {
+        List<String> ids = session.getParameters().get("id");
+        if (ids == null || ids.isEmpty()) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Missing id parameter");
+        }
+        SiegeStats stats = statsManager.getSiegeStatsById(ids.get(0)); // Completed sieges load through the archive's LRU cache
+        if (stats == null) {
+            return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "Siege not found");
+        }
+        return newFixedLengthResponse(Response.Status.OK, "application/json", serializeSiegeStatsToJson(stats).toJSONString());
+    }
     
+    private static final int DEFAULT_TOP_LIMIT = 10;
+    private static final int MAX_TOP_LIMIT = 100;
+
+    /** /api/top?[stat=][&window=][&limit=]: the best players for a stat, all-time or over a day/week/month window. */
+    @SuppressWarnings("unchecked")
+    private Response getTopResponse(IHTTPSession session) {
+        String statParameter = firstParameter(session, "stat");
+        LeaderboardStat stat = statParameter != null ? LeaderboardStat.fromName(statParameter) : LeaderboardStat.KILLS;
+        if (stat == null) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Unknown stat");
+        }
+        String windowParameter = firstParameter(session, "window");
+        StatWindow window = windowParameter != null ? StatWindow.fromName(windowParameter) : StatWindow.ALL;
+        if (window == null) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Unknown window");
+        }
+        int limit = DEFAULT_TOP_LIMIT;
+        String limitParameter = firstParameter(session, "limit");
+        if (limitParameter != null) {
+            try {
+                limit = Math.max(1, Math.min(MAX_TOP_LIMIT, Integer.parseInt(limitParameter)));
+            } catch (NumberFormatException e) {
+                return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Invalid limit parameter");
+            }
+        }
+
+        List<StatsQueries.RankedPlayer> ranked = statsManager.getLeaderboards(window).top(stat, limit);
+        JSONArray rows = new JSONArray();
+        for (int i = 0; i < ranked.size(); i++) {
+            StatsQueries.RankedPlayer entry = ranked.get(i);
+            JSONObject rowData = new JSONObject();
+            rowData.put("position", i + 1);
+            rowData.put("uuid", entry.playerUUID.toString());
+            rowData.put("name", entry.name);
+            rowData.put("value", entry.value);
+            rows.add(rowData);
+        }
+        JSONObject top = new JSONObject();
+        top.put("stat", stat.name().toLowerCase());
+        top.put("window", window.name().toLowerCase());
+        top.put("players", rows);
+        return newFixedLengthResponse(Response.Status.OK, "application/json", top.toJSONString());
+    }
+
+    private static final int DEFAULT_RANK_NEIGHBOURS = 5;
+    private static final int MAX_RANK_NEIGHBOURS = 25;
+
+    /** /api/rank?uuid=&stat=[&window=][&neighbours=]: rank, percentile and neighbouring rows from the live leaderboards. */
+    @SuppressWarnings("unchecked")
+    private Response getRankResponse(IHTTPSession session) {
+        String uuidParameter = firstParameter(session, "uuid");
+        if (uuidParameter == null) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Missing uuid parameter");
+        }
+        UUID playerUUID;
+        try {
+            playerUUID = UUID.fromString(uuidParameter);
+        } catch (IllegalArgumentException e) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Invalid uuid parameter");
+        }
+        String statParameter = firstParameter(session, "stat");
+        LeaderboardStat stat = statParameter != null ? LeaderboardStat.fromName(statParameter) : LeaderboardStat.KILLS;
+        if (stat == null) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Unknown stat");
+        }
+        String windowParameter = firstParameter(session, "window");
+        StatWindow window = windowParameter != null ? StatWindow.fromName(windowParameter) : StatWindow.ALL;
+        if (window == null) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Unknown window");
+        }
+        int neighbours = DEFAULT_RANK_NEIGHBOURS;
+        String neighboursParameter = firstParameter(session, "neighbours");
+        if (neighboursParameter != null) {
+            try {
+                neighbours = Math.max(0, Math.min(MAX_RANK_NEIGHBOURS, Integer.parseInt(neighboursParameter)));
+            } catch (NumberFormatException e) {
+                return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Invalid neighbours parameter");
+            }
+        }
+
+        Leaderboards.Standing standing = statsManager.getLeaderboards(window).standing(stat, playerUUID, neighbours);
+        if (standing == null) {
+            return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "Player not ranked");
+        }
+        JSONObject rank = new JSONObject();
+        rank.put("uuid", playerUUID.toString());
+        rank.put("name", standing.player.name);
+        rank.put("stat", stat.name().toLowerCase());
+        rank.put("window", window.name().toLowerCase());
+        rank.put("value", standing.player.value);
+        rank.put("rank", standing.player.rank);
+        rank.put("total", standing.total);
+        rank.put("percentile", standing.percentile);
+        JSONArray rows = new JSONArray();
+        for (Leaderboards.Row row : standing.rows) {
+            JSONObject rowData = new JSONObject();
+            rowData.put("rank", row.rank);
+            rowData.put("uuid", row.playerUUID.toString());
+            rowData.put("name", row.name);
+            rowData.put("value", row.value);
+            rows.add(rowData);
+        }
+        rank.put("neighbours", rows);
+        return newFixedLengthResponse(Response.Status.OK, "application/json", rank.toJSONString());
+    }
+
+    /** /api/towns and /api/nations [?name=]: every siege record of the current season, or one by name. */
+    @SuppressWarnings("unchecked")
+    private Response getGovernmentsResponse(IHTTPSession session, GovernmentStats.Kind kind) {
+        GovernmentStats governments = statsManager.getGovernmentStats();
+        String nameParameter = firstParameter(session, "name");
+        if (nameParameter != null) {
+            GovernmentStats.Totals totals = governments.get(kind, nameParameter);
+            if (totals == null) {
+                return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "No siege record for that name");
+            }
+            return newFixedLengthResponse(Response.Status.OK, "application/json", serializeGovernment(totals.snapshot()).toJSONString());
+        }
+        return cachedJsonResponse(session, session.getUri(), () -> {
+            JSONArray records = new JSONArray();
+            for (GovernmentStats.Totals totals : governments.getAll(kind)) {
+                records.add(serializeGovernment(totals.snapshot()));
+            }
+            return records.toJSONString();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject serializeGovernment(GovernmentStats.Snapshot record) {
+        JSONObject gData = new JSONObject();
+        gData.put("name", record.name);
+        gData.put("siegesAttacked", record.siegesAttacked);
+        gData.put("siegesDefended", record.siegesDefended);
+        gData.put("wins", record.wins);
+        gData.put("losses", record.losses);
+        gData.put("winRate", record.getWinRate());
+        gData.put("kills", record.kills);
+        gData.put("deaths", record.deaths);
+        gData.put("assists", record.assists);
+        gData.put("kda", record.getKdaRatio());
+        gData.put("damage", record.damage);
+        gData.put("captureTime", record.captureTime);
+        return gData;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String getSeasonsJson() {
+        JSONArray seasonsArray = new JSONArray();
+        for (SeasonArchive.Season season : statsManager.getSeasonArchive().getSeasons()) {
+            JSONObject seasonData = new JSONObject();
+            seasonData.put("name", season.name);
+            seasonData.put("startedAtMillis", season.startedAtMillis);
+            seasonData.put("endedAtMillis", season.endedAtMillis);
+            seasonData.put("playerCount", season.playerCount);
+            seasonData.put("siegeCount", season.siegeCount);
+            seasonData.put("saved", season.isSaved());
+            seasonsArray.add(seasonData);
+        }
+        return seasonsArray.toJSONString();
+    }
+
+    /** @return the error response for a missing, unknown or not yet written season, or null if it can be queried. */
+    private Response seasonError(String name, SeasonArchive.Season season) {
+        if (name == null) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Missing season parameter");
+        }
+        if (season == null) {
+            return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "Season not found");
+        }
+        if (!season.isSaved()) {
+            return newFixedLengthResponse(Response.Status.SERVICE_UNAVAILABLE, MIME_PLAINTEXT, "Season is still being archived");
+        }
+        return null;
+    }
+
+    /** /api/season/top?season=[&stat=][&limit=]: the best players for a stat in an archived season. */
+    @SuppressWarnings("unchecked")
+    private Response getSeasonTopResponse(IHTTPSession session) throws IOException {
+        String seasonParameter = firstParameter(session, "season");
+        SeasonArchive seasons = statsManager.getSeasonArchive();
+        SeasonArchive.Season season = seasonParameter != null ? seasons.get(seasonParameter) : null;
+        Response error = seasonError(seasonParameter, season);
+        if (error != null) return error;
+        String statParameter = firstParameter(session, "stat");
+        LeaderboardStat stat = statParameter != null ? LeaderboardStat.fromName(statParameter) : LeaderboardStat.KILLS;
+        if (stat == null) {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Unknown stat");
+        }
+        int limit = DEFAULT_TOP_LIMIT;
+        String limitParameter = firstParameter(session, "limit");
+        if (limitParameter != null) {
+            try {
+                limit = Math.max(1, Math.min(MAX_TOP_LIMIT, Integer.parseInt(limitParameter)));
+            } catch (NumberFormatException e) {
+                return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Invalid limit parameter");
+            }
+        }
+
+        List<StatsQueries.RankedPlayer> ranked = seasons.top(season, stat, limit);
+        JSONArray rows = new JSONArray();
+        for (int i = 0; i < ranked.size(); i++) {
+            StatsQueries.RankedPlayer entry = ranked.get(i);
+            JSONObject rowData = new JSONObject();
+            rowData.put("position", i + 1);
+            rowData.put("uuid", entry.playerUUID.toString());
+            rowData.put("name", entry.name);
+            rowData.put("value", entry.value);
+            rows.add(rowData);
+        }
+        JSONObject top = new JSONObject();
+        top.put("season", season.name);
+        top.put("stat", stat.name().toLowerCase());
+        top.put("players", rows);
+        return newFixedLengthResponse(Response.Status.OK, "application/json", top.toJSONString());
+    }
+
+    /** /api/season/player?season=&(uuid=|name=): a player's totals and per-stat ranks in an archived season. */
+    @SuppressWarnings("unchecked")
+    private Response getSeasonPlayerResponse(IHTTPSession session) throws IOException {
+        String seasonParameter = firstParameter(session, "season");
+        SeasonArchive seasons = statsManager.getSeasonArchive();
+        SeasonArchive.Season season = seasonParameter != null ? seasons.get(seasonParameter) : null;
+        Response error = seasonError(seasonParameter, season);
+        if (error != null) return error;
+        String uuidParameter = firstParameter(session, "uuid");
+        String nameParameter = firstParameter(session, "name");
+        SeasonArchive.PlayerRecord record;
+        if (uuidParameter != null) {
+            try {
+                record = seasons.findPlayer(season, UUID.fromString(uuidParameter));
+            } catch (IllegalArgumentException e) {
+                return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Invalid uuid parameter");
+            }
+        } else if (nameParameter != null) {
+            record = seasons.findPlayer(season, nameParameter);
+        } else {
+            return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Missing uuid or name parameter");
+        }
+        if (record == null) {
+            return newFixedLengthResponse(Response.Status.NOT_FOUND, MIME_PLAINTEXT, "Player not found in season");
+        }
+
+        PlayerStats.Snapshot stats = record.totals;
+        JSONObject pData = new JSONObject();
+        pData.put("season", season.name);
+        pData.put("uuid", record.playerUUID.toString());
+        pData.put("lastKnownName", record.name);
+        pData.put("totalKills", stats.kills);
+        pData.put("totalDeaths", stats.deaths);
+        pData.put("totalAssists", stats.assists);
+        pData.put("totalDamage", stats.damage);
+        pData.put("totalCaptureTime", stats.captureTime);
+        pData.put("totalSiegesParticipated", stats.siegesParticipated);
+        pData.put("totalWins", stats.wins);
+        pData.put("totalLosses", stats.losses);
+        pData.put("kdr", stats.getKillDeathRatio());
+        pData.put("kda", stats.getKdaRatio());
+        pData.put("winLossRatio", stats.getWinLossRatio());
+        JSONObject ranks = new JSONObject();
+        for (LeaderboardStat stat : LeaderboardStat.values()) {
+            ranks.put(stat.name().toLowerCase(), record.getRank(stat));
+        }
+        pData.put("ranks", ranks);
+        pData.put("rankedCount", record.rankedCount);
+        return newFixedLengthResponse(Response.Status.OK, "application/json", pData.toJSONString());
+    }
+
+    /** /api/season/sieges?season=[&limit=]: an archived season's sieges, newest first. */
+    @SuppressWarnings("unchecked")
+    private Response getSeasonSiegesResponse(IHTTPSession session) throws IOException {
+        String seasonParameter = firstParameter(session, "season");
+        SeasonArchive seasons = statsManager.getSeasonArchive();
+        SeasonArchive.Season season = seasonParameter != null ? seasons.get(seasonParameter) : null;
+        Response error = seasonError(seasonParameter, season);
+        if (error != null) return error;
+        int limit = season.siegeCount;
+        String limitParameter = firstParameter(session, "limit");
+        if (limitParameter != null) {
+            try {
+                limit = Math.max(1, Integer.parseInt(limitParameter));
+            } catch (NumberFormatException e) {
+                return newFixedLengthResponse(Response.Status.BAD_REQUEST, MIME_PLAINTEXT, "Invalid limit parameter");
+            }
+        }
+
+        JSONArray siegesArray = new JSONArray();
+        for (SiegeArchive.Summary summary : seasons.sieges(season, limit)) {
+            JSONObject sData = new JSONObject();
+            sData.put("siegeId", summary.siegeId);
+            sData.put("townName", summary.townName);
+            sData.put("siegeNumber", summary.siegeNumber);
+            sData.put("startTimeMillis", summary.startTimeMillis);
+            sData.put("endTimeMillis", summary.endTimeMillis);
+            sData.put("attackersWon", summary.attackersWon());
+            sData.put("defendersWon", summary.defendersWon());
+            sData.put("durationMinutes", summary.getDurationMinutes());
+            sData.put("participantCount", summary.participantCount);
+            siegesArray.add(sData);
+        }
+        return newFixedLengthResponse(Response.Status.OK, "application/json", siegesArray.toJSONString());
+    }
+
+    private static String firstParameter(IHTTPSession session, String name) {
+        List<String> values = session.getParameters().get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
     @SuppressWarnings("unchecked")
     private String getActiveSiegeStatsJson() {
         JSONArray siegesArray = new JSONArray();
@@ -150,17 +556,17 @@ public class WebServerManager extends NanoHTTPD {
         sData.put("durationMinutes", stats.getDurationMinutes());
 
         JSONArray participantsArray = new JSONArray();
-        stats.getParticipantMetrics().forEach((uuid, metrics) -> {
+        stats.getParticipantMetrics().forEach((uuid, live) -> {
+            SiegeStats.ParticipantMetrics.Snapshot metrics = live.snapshot();
             JSONObject pMetrics = new JSONObject();
             pMetrics.put("uuid", uuid.toString());
-            OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
-            pMetrics.put("playerName", offlinePlayer.getName() != null ? offlinePlayer.getName() : "Unknown (" + uuid.toString().substring(0,6) + ")");
-            pMetrics.put("kills", metrics.getKills());
-            pMetrics.put("deaths", metrics.getDeaths());
-            pMetrics.put("assists", metrics.getAssists());
-            pMetrics.put("damage", metrics.getDamage());
-            pMetrics.put("controlTime", metrics.getControlTime());
-            pMetrics.put("side", metrics.getSide().name());
+            pMetrics.put("playerName", plugin.getNameCache().getName(uuid, "Unknown (" + uuid.toString().substring(0,6) + ")"));
+            pMetrics.put("kills", metrics.kills);
+            pMetrics.put("deaths", metrics.deaths);
+            pMetrics.put("assists", metrics.assists);
+            pMetrics.put("damage", metrics.damage);
+            pMetrics.put("controlTime", metrics.controlTime);
+            pMetrics.put("side", metrics.side.name());
             participantsArray.add(pMetrics);
         });
         sData.put("participants", participantsArray);
@@ -172,7 +578,7 @@ public class WebServerManager extends NanoHTTPD {
         JSONArray liveSiegesArray = new JSONArray();
 
         if (TownyAPI.getInstance() == null || plugin.getServer().getPluginManager().getPlugin("SiegeWar") == null) {
-            // plugin.getLogger().warning("TownyAPI or SiegeWar not available for live siege info. Returning empty array.");
+            // log.warn(StatsLog.Category.WEB, "TownyAPI or SiegeWar not available for live siege info. Returning empty array.");
             return liveSiegesArray.toJSONString();
         }
 
@@ -180,11 +586,11 @@ public class WebServerManager extends NanoHTTPD {
         try {
             currentSiegesFromAPI = SiegeWarAPI.getSieges();
              if (currentSiegesFromAPI == null) {
-                // plugin.getLogger().warning("SiegeWarAPI.getSieges() returned null. No live siege info available.");
+                // log.warn(StatsLog.Category.WEB, "SiegeWarAPI.getSieges() returned null. No live siege info available.");
                 return liveSiegesArray.toJSONString();
             }
         } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Error calling SiegeWarAPI.getSieges()", e);
+            log.error(StatsLog.Category.WEB, "Error calling SiegeWarAPI.getSieges()", e);
             return liveSiegesArray.toJSONString();
         }
 
@@ -197,12 +603,8 @@ public class WebServerManager extends NanoHTTPD {
                 
                 String internalSiegeId = plugin.getSiegeListener().getActiveSiegeId(currentSiege);
                 if (internalSiegeId == null) {
-                    for(Map.Entry<String, SiegeStats> entry : statsManager.getActiveSiegesMap().entrySet()){
-                        if(entry.getValue().getTownName().equalsIgnoreCase(townName)){
-                            internalSiegeId = entry.getKey();
-                            break;
-                        }
-                    }
+                    SiegeStats tracked = statsManager.findActiveSiegeStats(townName);
+                    if (tracked != null) internalSiegeId = tracked.getSiegeId();
                 }
 
                 siegeInfo.put("id", internalSiegeId != null ? internalSiegeId : "sw-" + townName.toLowerCase().replaceAll("[^a-z0-9_]", "") + "-" + (System.currentTimeMillis()%10000));
@@ -222,7 +624,7 @@ public class WebServerManager extends NanoHTTPD {
                 for (org.bukkit.entity.Player player : Bukkit.getOnlinePlayers()) {
                     if (player == null || !player.isOnline()) continue;
                     
-                    SiegeSide side = SiegeSide.getPlayerSiegeSide(currentSiege, player);
+                    SiegeSide side = plugin.getSideCache().getSide(currentSiege, player);
                     if (side == SiegeSide.ATTACKERS) {
                         attackersCount++;
                     } else if (side == SiegeSide.DEFENDERS) {